@@ -0,0 +1,32 @@
+package api;
+
+import data.SQLConnector;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * Provides the connection pool of the application and the SQLConnector that queries it. The pool connects to the
+ * database of the spring.datasource properties and is configured by SQLConnector.configurePool, unless the
+ * spring.datasource.tomcat properties override its settings.
+ */
+@Configuration
+public class DataSourceConfiguration {
+
+    @Bean(destroyMethod = "close")
+    @ConfigurationProperties("spring.datasource.tomcat")
+    public org.apache.tomcat.jdbc.pool.DataSource dataSource(DataSourceProperties properties) {
+        org.apache.tomcat.jdbc.pool.DataSource dataSource = (org.apache.tomcat.jdbc.pool.DataSource) properties
+                .initializeDataSourceBuilder().type(org.apache.tomcat.jdbc.pool.DataSource.class).build();
+        SQLConnector.configurePool(dataSource);
+        return dataSource;
+    }
+
+    @Bean
+    public SQLConnector sqlConnector(DataSource dataSource) {
+        return new SQLConnector(dataSource);
+    }
+}
@@ -1,23 +1,52 @@
 package api;
 
 import data.SQLConnector;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import planning.PlanCache;
+import planning.PlanningExecutor;
 import planning.PlanningManager;
 import planning.PlanningResult;
 import planning.config.Config;
 import planning.elements.TupleCollection;
+import planning.planners.linear.CplexPool;
 import planning.planners.naive.NaiveVoicePlanner;
 
 @RestController
 public class MainController {
+    private final SQLConnector sqlConnector;
+
+    @Autowired
+    public MainController(SQLConnector sqlConnector) {
+        this.sqlConnector = sqlConnector;
+    }
 
     @RequestMapping("/naive")
     public PlanningResult naive() throws Exception {
-        PlanningManager planningManager = new PlanningManager();
+        PlanningManager planningManager = new PlanningManager(PlanningExecutor.shared(), PlanCache.shared());
         NaiveVoicePlanner planner = new NaiveVoicePlanner();
-        SQLConnector sqlConnector = new SQLConnector();
         TupleCollection tuples = sqlConnector.buildTupleCollectionFromQuery("select restaurant, price from restaurants limit 10", "Restaurants");
         return planningManager.buildPlan(planner, tuples, new Config());
     }
+
+    @RequestMapping("/planners")
+    public PlanningExecutor.Statistics planners() {
+        return PlanningExecutor.shared().getStatistics();
+    }
+
+    @RequestMapping("/plans")
+    public PlanCache.Statistics plans() {
+        return PlanCache.shared().getStatistics();
+    }
+
+    @RequestMapping("/connections")
+    public SQLConnector.PoolStatistics connections() {
+        return sqlConnector.getPoolStatistics();
+    }
+
+    @RequestMapping("/solvers")
+    public CplexPool.Occupancy solvers() {
+        return CplexPool.shared().getOccupancy();
+    }
 }
@@ -1,5 +1,7 @@
 package api;
 
+import data.SQLConnector;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 import planning.PlanningManager;
 import planning.PlanningResult;
@@ -10,10 +12,16 @@ import java.util.concurrent.atomic.AtomicLong;
 public class TestController {
     private final AtomicLong counter = new AtomicLong();
     private final PlanningManager planningManager = new PlanningManager();
+    private final SQLConnector sqlConnector;
+
+    @Autowired
+    public TestController(SQLConnector sqlConnector) {
+        this.sqlConnector = sqlConnector;
+    }
 
     @RequestMapping(value = "/test", method = RequestMethod.POST)
     public TestResult newTest(@RequestBody TestInstance testInstance) throws Exception {
-        PlanningResult result = planningManager.buildPlan(testInstance.getPlanner(), testInstance.getData(), testInstance.getConfig());
+        PlanningResult result = planningManager.buildPlan(testInstance.getPlanner(), testInstance.getData(sqlConnector), testInstance.getConfig());
         return new TestResult(counter.incrementAndGet(), result);
     }
 
@@ -10,12 +10,16 @@ import planning.planners.hybrid.HybridPlanner;
 import planning.planners.hybrid.TupleCoveringPruner;
 import planning.planners.linear.LinearProgrammingPlanner;
 import planning.planners.naive.NaiveVoicePlanner;
+import planning.planners.portfolio.PortfolioPlanner;
+
+import java.util.Collections;
+import java.util.List;
 
 public class TestInstance {
     final static CSVConnector csvConnector = new CSVConnector();
-    final static SQLConnector sqlConnector = new SQLConnector();
 
     String sqlQuery;
+    List<Object> sqlParameters;
     String csvHeader;
     String csvBody;
     String algorithm;
@@ -30,6 +34,17 @@ public class TestInstance {
         this.sqlQuery = sqlQuery;
     }
 
+    /**
+     * Returns the values of the parameters of the SQL query, in order, or null if the query has none
+     */
+    public List<Object> getSqlParameters() {
+        return sqlParameters;
+    }
+
+    public void setSqlParameters(List<Object> sqlParameters) {
+        this.sqlParameters = sqlParameters;
+    }
+
     public String getTuplesClassName() {
         return tuplesClassName;
     }
@@ -70,9 +85,10 @@ public class TestInstance {
         this.config = config;
     }
 
-    public TupleCollection getData() throws Exception {
+    public TupleCollection getData(SQLConnector sqlConnector) throws Exception {
         if (sqlQuery != null) {
-            return sqlConnector.buildTupleCollectionFromQuery(sqlQuery, tuplesClassName);
+            List<Object> parameters = sqlParameters == null ? Collections.emptyList() : sqlParameters;
+            return sqlConnector.buildTupleCollectionFromQuery(sqlQuery, parameters, tuplesClassName);
         } else {
             return csvConnector.buildTupleCollectionFromCSV(tuplesClassName, csvBody, csvHeader.split(","));
         }
@@ -88,6 +104,10 @@ public class TestInstance {
                 return new GreedyPlanner();
             case "linear":
                 return new LinearProgrammingPlanner();
+            case "linear-greedy":
+                return new LinearProgrammingPlanner(new GreedyPlanner());
+            case "portfolio":
+                return new PortfolioPlanner(new TupleCoveringPruner(10));
         }
         throw new InvalidAlgorithmException(algorithm);
     }
@@ -3,62 +3,361 @@ package data;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
-import planning.elements.Tuple;
+import planning.ParallelTasks;
+import planning.config.Config;
 import planning.elements.TupleCollection;
 import planning.elements.Value;
+import planning.elements.ValuePool;
 
-import java.io.IOException;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
- * Implements parsing of CSV data to a TupleCollection.
+ * Implements parsing of CSV data to a TupleCollection. Records are parsed one at a time with one parser per column
+ * and stored directly in the TupleCollection, so the CSV is never held in memory as records.
+ *
+ * Files are memory-mapped and split into chunks at line ends, which are parsed in parallel into TupleCollections of
+ * their own and then merged in order. A field in quotes may contain a line end, so a chunk only starts at a line end
+ * that is preceded by an even number of quotes, as quotes within a quoted field are doubled.
  */
 public class CSVConnector {
+    /**
+     * The smallest chunk of a file that is parsed on its own thread
+     */
+    static final int MIN_CHUNK_BYTES = 1 << 20;
 
-    private Value parseValue(String v, String type) throws Exception {
-        switch (type.toUpperCase()) {
-            case "INT":
-            case "INTEGER":
-                return new Value(Integer.parseInt(v));
-            case "DOUBLE":
-                return new Value(Double.parseDouble(v));
-            case "FLOAT":
-                return new Value(Float.parseFloat(v));
-            default:
-                return new Value(v);
+    private final ExecutorService executor;
+
+    /**
+     * Constructs a CSVConnector that parses files on the executor shared by the planners
+     */
+    public CSVConnector() {
+        this(ParallelTasks.shared());
+    }
+
+    public CSVConnector(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Parses the fields of one column of a CSV to Values of the type given in the header. Strings are interned in
+     * a ValuePool, so repeated fields share one Value.
+     */
+    abstract static class ColumnParser {
+        abstract Value parse(String v) throws Exception;
+
+        static ColumnParser forType(String type, final ValuePool pool) {
+            switch (type.toUpperCase()) {
+                case "INT":
+                case "INTEGER":
+                    return new ColumnParser() {
+                        @Override
+                        Value parse(String v) {
+                            return new Value(Integer.parseInt(v));
+                        }
+                    };
+                case "DOUBLE":
+                    return new ColumnParser() {
+                        @Override
+                        Value parse(String v) {
+                            return new Value(Double.parseDouble(v));
+                        }
+                    };
+                case "FLOAT":
+                    return new ColumnParser() {
+                        @Override
+                        Value parse(String v) {
+                            return new Value(Float.parseFloat(v));
+                        }
+                    };
+                default:
+                    return new ColumnParser() {
+                        @Override
+                        Value parse(String v) {
+                            return pool.intern(v);
+                        }
+                    };
+            }
+        }
+    }
+
+    /**
+     * The attributes and column parsers of a header like {"name:STRING", "age:INTEGER", "hometown"}. Columns
+     * without a type are STRING columns.
+     */
+    private static class Header {
+        final List<String> attributes = new ArrayList<>();
+        final ColumnParser[] parsers;
+        final ValuePool pool = new ValuePool();
+
+        Header(String... header) {
+            parsers = new ColumnParser[header.length];
+            for (int i = 0; i < header.length; i++) {
+                String h = header[i]; // 'name:INTEGER'
+                int idx = h.indexOf(':');
+                if (idx != -1) {
+                    attributes.add(h.substring(0, idx));
+                    parsers[i] = ColumnParser.forType(h.substring(idx + 1), pool);
+                } else {
+                    // default to STRING value if no type specified
+                    attributes.add(h);
+                    parsers[i] = ColumnParser.forType("STRING", pool);
+                }
+            }
         }
     }
 
     public TupleCollection buildTupleCollectionFromCSV(String tuplesClassName, String csv, String... header) throws Exception {
-        String[] attributes = new String[header.length];
-        Map<String, String> typeMap = new HashMap<>();
-
-        for (int i = 0; i < header.length; i++) {
-            String h = header[i]; // 'name:INTEGER'
-            int idx = h.indexOf(':');
-            if (idx != -1) {
-                String att = h.substring(0, idx);
-                String type = h.substring(idx + 1);
-                attributes[i] = att;
-                typeMap.put(att, type);
-            } else {
-                // default to STRING value if no type specified
-                attributes[i] = h;
-                typeMap.put(h, "STRING");
+        return buildTupleCollectionFromCSV(tuplesClassName, new StringReader(csv), header);
+    }
+
+    /**
+     * Parses CSV records from reader as they are read
+     * @param header the attributes of the columns, with optional types, e.g. "age:INTEGER"
+     */
+    public TupleCollection buildTupleCollectionFromCSV(String tuplesClassName, Reader reader, String... header) throws Exception {
+        Header parsedHeader = new Header(header);
+        TupleCollection tupleCollection = new TupleCollection(parsedHeader.attributes, tuplesClassName);
+        addRecords(tupleCollection, parsedHeader, reader);
+        return tupleCollection;
+    }
+
+    /**
+     * Parses a UTF-8 CSV file in up to config.getParallelism() chunks in parallel
+     * @param header the attributes of the columns, with optional types, e.g. "age:INTEGER". If there are none, they
+     *               are read from the first line of the file.
+     */
+    public TupleCollection buildTupleCollectionFromCSVFile(String tuplesClassName, Path file, Config config,
+                                                           String... header) throws Exception {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long start = 0;
+            if (header.length == 0) {
+                String firstLine;
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                        new FileInputStream(file.toFile()), StandardCharsets.UTF_8))) {
+                    firstLine = reader.readLine();
+                }
+                if (firstLine == null) {
+                    throw new IOException("Missing header in empty file " + file);
+                }
+                List<String> fields = new ArrayList<>();
+                for (String field : CSVParser.parse(firstLine, CSVFormat.DEFAULT).getRecords().get(0)) {
+                    fields.add(field);
+                }
+                header = fields.toArray(new String[0]);
+                start = lineEnd(channel, 0);
+            }
+            final Header parsedHeader = new Header(header);
+
+            List<Long> chunkStarts = chunkStarts(channel, start, config.getParallelism());
+            if (chunkStarts.size() > 1) {
+                chunkStarts = recordStarts(channel, chunkStarts);
             }
+            if (chunkStarts.size() == 1) {
+                TupleCollection tupleCollection = new TupleCollection(parsedHeader.attributes, tuplesClassName);
+                addRecords(tupleCollection, parsedHeader, new BufferedReader(new InputStreamReader(
+                        Channels.newInputStream(channel.position(start)), StandardCharsets.UTF_8)));
+                return tupleCollection;
+            }
+            return parseChunks(channel, chunkStarts, parsedHeader, tuplesClassName);
         }
+    }
 
-        CSVParser parser = CSVParser.parse(csv, CSVFormat.DEFAULT.withHeader(attributes));
-        TupleCollection tupleCollection = new TupleCollection(Arrays.asList(attributes), tuplesClassName);
+    private TupleCollection parseChunks(final FileChannel channel, final List<Long> chunkStarts, final Header header,
+                                        final String tuplesClassName) throws Exception {
+        List<Future<TupleCollection>> chunks = new ArrayList<>();
+        try {
+            for (int c = 0; c < chunkStarts.size(); c++) {
+                final long start = chunkStarts.get(c);
+                final long end = c + 1 < chunkStarts.size() ? chunkStarts.get(c + 1) : channel.size();
+                chunks.add(executor.submit(new Callable<TupleCollection>() {
+                    @Override
+                    public TupleCollection call() throws Exception {
+                        TupleCollection chunk = new TupleCollection(header.attributes, tuplesClassName);
+                        addRecords(chunk, header, reader(channel, start, end));
+                        return chunk;
+                    }
+                }));
+            }
 
-        for (CSVRecord record : parser.getRecords()) {
-            Tuple t = new Tuple(Arrays.asList(attributes));
-            for (String att : attributes) {
-                t.addValueAssignment(att, parseValue(record.get(att), typeMap.get(att)));
+            TupleCollection tupleCollection = new TupleCollection(header.attributes, tuplesClassName);
+            for (Future<TupleCollection> chunk : chunks) {
+                tupleCollection.addAll(get(chunk));
             }
-            tupleCollection.addTuple(t);
+            return tupleCollection;
+        } finally {
+            cancelAll(chunks);
         }
+    }
 
-        return tupleCollection;
+    /**
+     * Moves every chunk start but the first to the first line end at or after it that is not within a quoted field,
+     * and returns the chunk starts that are left. The quotes in every chunk are counted in parallel, so that it is
+     * known for each chunk start whether it is within quotes without parsing the file up to it.
+     */
+    private List<Long> recordStarts(final FileChannel channel, List<Long> chunkStarts) throws Exception {
+        List<Future<Long>> quoteCounts = new ArrayList<>();
+        List<Long> starts = new ArrayList<>();
+        try {
+            for (int c = 0; c + 1 < chunkStarts.size(); c++) {
+                final long start = chunkStarts.get(c);
+                final long end = chunkStarts.get(c + 1);
+                quoteCounts.add(executor.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws Exception {
+                        return countQuotes(channel, start, end);
+                    }
+                }));
+            }
+
+            starts.add(chunkStarts.get(0));
+            long quotes = 0;
+            for (int c = 1; c < chunkStarts.size(); c++) {
+                quotes += get(quoteCounts.get(c - 1));
+                long start = quotes % 2 == 0 ? chunkStarts.get(c) : lineEndAfterQuote(channel, chunkStarts.get(c));
+                if (start < channel.size() && start > starts.get(starts.size() - 1)) {
+                    starts.add(start);
+                }
+            }
+        } finally {
+            cancelAll(quoteCounts);
+        }
+        return starts;
+    }
+
+    private static <T> T get(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    private static void cancelAll(List<? extends Future<?>> futures) {
+        for (Future<?> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    private void addRecords(TupleCollection tupleCollection, Header header, Reader reader) throws Exception {
+        Value[] row = new Value[header.parsers.length];
+        try (CSVParser parser = new CSVParser(reader, CSVFormat.DEFAULT)) {
+            for (CSVRecord record : parser) {
+                if (record.size() != row.length) {
+                    throw new IOException(String.format("Record %d has %d fields instead of %d",
+                            record.getRecordNumber(), record.size(), row.length));
+                }
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = header.parsers[i].parse(record.get(i));
+                }
+                tupleCollection.addRow(row);
+            }
+        }
+    }
+
+    /**
+     * Returns a Reader of the UTF-8 text in bytes start to end of channel, which are mapped into memory
+     */
+    private static Reader reader(FileChannel channel, long start, long end) throws IOException {
+        final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        InputStream in = new InputStream() {
+            @Override
+            public int read() {
+                return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (!buffer.hasRemaining()) {
+                    return -1;
+                }
+                int n = Math.min(len, buffer.remaining());
+                buffer.get(b, off, n);
+                return n;
+            }
+        };
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Splits the bytes from start to the end of channel into at most parallelism chunks of about the same size,
+     * which start after a line end, and returns the offsets at which they start
+     */
+    private static List<Long> chunkStarts(FileChannel channel, long start, int parallelism) throws IOException {
+        long size = channel.size() - start;
+        // a mapped chunk must be smaller than 2 GB
+        int chunkCount = (int) Math.max(Math.min(parallelism, size / MIN_CHUNK_BYTES), size / Integer.MAX_VALUE + 1);
+        List<Long> starts = new ArrayList<>();
+        starts.add(start);
+        for (int c = 1; c < chunkCount; c++) {
+            long chunkStart = lineEnd(channel, Math.max(start + c * (size / chunkCount), starts.get(starts.size() - 1)));
+            if (chunkStart < channel.size() && chunkStart > starts.get(starts.size() - 1)) {
+                starts.add(chunkStart);
+            }
+        }
+        return starts;
+    }
+
+    /**
+     * Returns the offset after the first '\n' at or after offset position of channel, or the size of channel
+     */
+    private static long lineEnd(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        while (position < channel.size()) {
+            buffer.clear();
+            int n = channel.read(buffer, position);
+            for (int i = 0; i < n; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += n;
+        }
+        return channel.size();
+    }
+
+    /**
+     * Returns the number of quotes in bytes start to end of channel
+     */
+    private static long countQuotes(FileChannel channel, long start, long end) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        long quotes = 0;
+        while (buffer.hasRemaining()) {
+            if (buffer.get() == '"') {
+                quotes++;
+            }
+        }
+        return quotes;
+    }
+
+    /**
+     * Returns the offset after the first '\n' at or after offset position of channel that is not within quotes, or
+     * the size of channel, if position is within a quoted field
+     */
+    private static long lineEndAfterQuote(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        boolean quoted = true;
+        while (position < channel.size()) {
+            buffer.clear();
+            int n = channel.read(buffer, position);
+            for (int i = 0; i < n; i++) {
+                byte b = buffer.get(i);
+                if (b == '"') {
+                    quoted = !quoted;
+                } else if (b == '\n' && !quoted) {
+                    return position + i + 1;
+                }
+            }
+            position += n;
+        }
+        return channel.size();
     }
 }
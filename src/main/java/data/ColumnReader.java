@@ -0,0 +1,70 @@
+package data;
+
+import planning.elements.Value;
+import planning.elements.ValuePool;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Reads the Value of one column of the current row of a ResultSet with the typed getter for its SQL type, so that
+ * cells are not boxed through getObject. Readers are chosen once per column from the ResultSetMetaData.
+ *
+ * Integer columns up to INTEGER become INTEGER Values. BIGINT columns, whose values need not fit in an int, and exact
+ * and approximate numerics become DOUBLE Values, REAL becomes FLOAT, and all other types, e.g. dates, are read as
+ * Strings, which are interned in a ValuePool.
+ */
+abstract class ColumnReader {
+
+    /**
+     * Returns the Value of the column in the current row of resultSet, or null if it is SQL NULL
+     */
+    abstract Value read(ResultSet resultSet) throws SQLException;
+
+    static ColumnReader forColumn(ResultSetMetaData metaData, final int column, final ValuePool pool)
+            throws SQLException {
+        switch (metaData.getColumnType(column)) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+                return new ColumnReader() {
+                    @Override
+                    Value read(ResultSet resultSet) throws SQLException {
+                        int value = resultSet.getInt(column);
+                        return resultSet.wasNull() ? null : new Value(value);
+                    }
+                };
+            case Types.REAL:
+                return new ColumnReader() {
+                    @Override
+                    Value read(ResultSet resultSet) throws SQLException {
+                        float value = resultSet.getFloat(column);
+                        return resultSet.wasNull() ? null : new Value(value);
+                    }
+                };
+            case Types.BIGINT:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+                return new ColumnReader() {
+                    @Override
+                    Value read(ResultSet resultSet) throws SQLException {
+                        // BIGINT is read as a double too, so that all Values of a column have the same type
+                        double value = resultSet.getDouble(column);
+                        return resultSet.wasNull() ? null : new Value(value);
+                    }
+                };
+            default:
+                return new ColumnReader() {
+                    @Override
+                    Value read(ResultSet resultSet) throws SQLException {
+                        String value = resultSet.getString(column);
+                        return value == null ? null : pool.intern(value);
+                    }
+                };
+        }
+    }
+}
@@ -1,59 +1,162 @@
 package data;
 
+import org.apache.tomcat.jdbc.pool.DataSourceProxy;
+import org.apache.tomcat.jdbc.pool.PoolConfiguration;
+import org.apache.tomcat.jdbc.pool.PoolProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import planning.elements.Tuple;
 import planning.elements.TupleCollection;
 import planning.elements.Value;
+import planning.elements.ValuePool;
 
+import javax.sql.DataSource;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Runs queries against a DataSource, usually a connection pool configured by configurePool, and reads their results
+ * into TupleCollections.
+ */
 public class SQLConnector {
 
     final static Logger logger = LoggerFactory.getLogger(SQLConnector.class);
 
-    private static Connection getConnection() throws SQLException {
-        String dbUrl = System.getenv("JDBC_DATABASE_URL");
-        String userName = System.getenv("JDBC_DATABASE_USERNAME");
-        String password = System.getenv("JDBC_DATABASE_PASSWORD");
-        return DriverManager.getConnection(dbUrl, userName, password);
+    /**
+     * The number of rows fetched from the database at a time. PostgreSQL only fetches rows in batches through a
+     * cursor if the statement is forward only and runs in a transaction, otherwise it loads the whole result.
+     */
+    static final int FETCH_SIZE = 1000;
+
+    /**
+     * The number of prepared statements that are kept open per pooled connection, so that queries of the same
+     * shape are not prepared again
+     */
+    static final int CACHED_STATEMENTS_PER_CONNECTION = 50;
+    static final int MAX_WAIT_MILLIS = 10000;
+
+    private final DataSource dataSource;
+    private final AtomicLong borrowedConnections = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public SQLConnector(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Creates a pool of connections to the given database, configured as by configurePool
+     */
+    public static org.apache.tomcat.jdbc.pool.DataSource createPooledDataSource(String url, String userName, String password) {
+        PoolProperties properties = new PoolProperties();
+        properties.setUrl(url);
+        properties.setUsername(userName);
+        properties.setPassword(password);
+        configurePool(properties);
+        return new org.apache.tomcat.jdbc.pool.DataSource(properties);
+    }
+
+    /**
+     * Configures a pool of up to two connections per processor, which validates connections before lending them and
+     * caches the prepared statements of every connection
+     */
+    public static void configurePool(PoolConfiguration properties) {
+        properties.setMaxActive(2 * Runtime.getRuntime().availableProcessors());
+        properties.setMaxIdle(properties.getMaxActive());
+        properties.setMinIdle(1);
+        properties.setInitialSize(0);
+        properties.setMaxWait(MAX_WAIT_MILLIS);
+        properties.setTestOnBorrow(true);
+        properties.setValidationQuery("SELECT 1");
+        properties.setValidationInterval(30000);
+        properties.setJdbcInterceptors(String.format("StatementCache(prepared=true,callable=false,max=%d)",
+                CACHED_STATEMENTS_PER_CONNECTION));
+    }
+
+    private Connection getConnection() throws SQLException {
+        long startTime = System.nanoTime();
+        Connection connection = dataSource.getConnection();
+        long waitNanos = System.nanoTime() - startTime;
+        borrowedConnections.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        long max;
+        while (waitNanos > (max = maxWaitNanos.get()) && !maxWaitNanos.compareAndSet(max, waitNanos)) {
+            // retry until the maximum is at least waitNanos
+        }
+        return connection;
     }
 
+    /**
+     * Reads resultSet row by row into a TupleCollection. Every column is read with a ColumnReader for its SQL type,
+     * and rows go straight into the columns of the TupleCollection, so no Tuple is built per row. Rows with a NULL
+     * cell are skipped, since Values cannot be null, and counted in the skipped row count of the TupleCollection.
+     */
     private TupleCollection buildTupleCollectionFromResultSet(ResultSet resultSet, String tuplesClassName) throws SQLException {
         ResultSetMetaData metaData = resultSet.getMetaData();
+        int columnCount = metaData.getColumnCount();
 
         List<String> attributes = new ArrayList<>();
-        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+        ColumnReader[] readers = new ColumnReader[columnCount];
+        ValuePool pool = new ValuePool();
+        for (int i = 1; i <= columnCount; i++) {
             attributes.add(metaData.getColumnName(i));
+            readers[i - 1] = ColumnReader.forColumn(metaData, i, pool);
         }
 
         TupleCollection tupleCollection = new TupleCollection(attributes, tuplesClassName);
 
+        int skippedRows = 0;
+        Value[] row = new Value[columnCount];
         while (resultSet.next()) {
-            Tuple tuple = new Tuple(attributes);
-            for (int i = 1; i <= metaData.getColumnCount(); i++) {
-                tuple.addValueAssignment(metaData.getColumnName(i), Value.createValueObject(resultSet.getObject(i)));
+            boolean complete = true;
+            for (int i = 0; i < columnCount && complete; i++) {
+                row[i] = readers[i].read(resultSet);
+                complete = row[i] != null;
             }
-            tupleCollection.addTuple(tuple);
+            if (complete) {
+                tupleCollection.addRow(row);
+            } else {
+                skippedRows++;
+            }
+        }
+        if (skippedRows > 0) {
+            logger.warn(String.format("Skipped %d rows with NULL values", skippedRows));
         }
+        tupleCollection.setSkippedRowCount(skippedRows);
 
         return  tupleCollection;
     }
 
     public TupleCollection buildTupleCollectionFromQuery(String sql, String tuplesClassName) throws SQLException {
+        return buildTupleCollectionFromQuery(sql, Collections.emptyList(), tuplesClassName);
+    }
+
+    /**
+     * Runs a parameterised query, e.g. "select * from restaurants where price = ? limit ?", and reads its result
+     * into a TupleCollection. The query is run as a PreparedStatement, which the connection pool keeps open for
+     * the next query with the same SQL.
+     * @param parameters the values of the parameters of the query, in order
+     */
+    public TupleCollection buildTupleCollectionFromQuery(String sql, List<?> parameters, String tuplesClassName) throws SQLException {
         Connection connection = null;
         ResultSet resultSet = null;
-        Statement statement = null;
+        PreparedStatement statement = null;
         SQLException exception = null;
         TupleCollection tupleCollection = null;
 
         try {
             connection = getConnection();
-            statement = connection.createStatement();
-            resultSet = statement.executeQuery(sql);
+            connection.setAutoCommit(false);
+            statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(FETCH_SIZE);
+            for (int i = 0; i < parameters.size(); i++) {
+                statement.setObject(i + 1, parameters.get(i));
+            }
+            resultSet = statement.executeQuery();
             tupleCollection = buildTupleCollectionFromResultSet(resultSet, tuplesClassName);
+            connection.commit();
         } catch (SQLException sqlException) {
             logger.error("Exception while executing query");
             exception = sqlException;
@@ -74,6 +177,10 @@ public class SQLConnector {
             }
             if (connection != null) {
                 try {
+                    if (!connection.getAutoCommit()) {
+                        connection.rollback();
+                        connection.setAutoCommit(true);
+                    }
                     connection.close();
                 } catch (SQLException e) {
                     logger.error("Unexpected exception while closing Connection", e);
@@ -91,4 +198,75 @@ public class SQLConnector {
     public TupleCollection buildTupleCollectionFromQuery(String sql) throws SQLException {
         return buildTupleCollectionFromQuery(sql, null);
     }
+
+    public PoolStatistics getPoolStatistics() {
+        long borrowed = borrowedConnections.get();
+        double averageWaitMillis = borrowed == 0 ? 0 : totalWaitNanos.get() / 1e6 / borrowed;
+        double maxWaitMillis = maxWaitNanos.get() / 1e6;
+        if (dataSource instanceof DataSourceProxy) {
+            DataSourceProxy pool = (DataSourceProxy) dataSource;
+            return new PoolStatistics(pool.getMaxActive(), pool.getActive(), pool.getIdle(), pool.getWaitCount(),
+                    borrowed, averageWaitMillis, maxWaitMillis);
+        }
+        return new PoolStatistics(-1, -1, -1, -1, borrowed, averageWaitMillis, maxWaitMillis);
+    }
+
+    /**
+     * A snapshot of the connections of the pool of a SQLConnector, and of the time the connector waited for
+     * connections so far. The counts of the pool are -1 if the DataSource is not a connection pool.
+     */
+    public static class PoolStatistics {
+        final int maxConnections;
+        final int activeConnections;
+        final int idleConnections;
+        final int waitingRequests;
+        final long borrowedConnections;
+        final double averageWaitMillis;
+        final double maxWaitMillis;
+
+        PoolStatistics(int maxConnections, int activeConnections, int idleConnections, int waitingRequests,
+                       long borrowedConnections, double averageWaitMillis, double maxWaitMillis) {
+            this.maxConnections = maxConnections;
+            this.activeConnections = activeConnections;
+            this.idleConnections = idleConnections;
+            this.waitingRequests = waitingRequests;
+            this.borrowedConnections = borrowedConnections;
+            this.averageWaitMillis = averageWaitMillis;
+            this.maxWaitMillis = maxWaitMillis;
+        }
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public int getActiveConnections() {
+            return activeConnections;
+        }
+
+        public int getIdleConnections() {
+            return idleConnections;
+        }
+
+        public int getWaitingRequests() {
+            return waitingRequests;
+        }
+
+        public long getBorrowedConnections() {
+            return borrowedConnections;
+        }
+
+        public double getAverageWaitMillis() {
+            return averageWaitMillis;
+        }
+
+        public double getMaxWaitMillis() {
+            return maxWaitMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d of %d connections active, %d idle, %d waiting", activeConnections,
+                    maxConnections, idleConnections, waitingRequests);
+        }
+    }
 }
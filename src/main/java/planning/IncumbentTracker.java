@@ -0,0 +1,128 @@
+package planning;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the cheapest VoiceOutputPlan that a VoicePlanner has found so far, together with the stage of the planner
+ * that found it. Planners offer improving plans as they go, so that a PlanningManager can return the best of them
+ * if the planner does not finish in time. Plans are compared by their speech cost. Offers may come from several
+ * threads at once.
+ *
+ * A tracker can have a parent, to which every offer is passed on, so that each planner of a portfolio can have its
+ * own tracker while the PlanningManager tracks the best plan of all of them.
+ */
+public class IncumbentTracker {
+    private final IncumbentTracker parent;
+    private VoiceOutputPlan best;
+    private int bestCost = Integer.MAX_VALUE;
+    private String stage;
+    private int offers;
+    private boolean optimal;
+    private boolean truncated;
+    private final List<PlannerRun> plannerRuns = new ArrayList<>();
+
+    public IncumbentTracker() {
+        this(null);
+    }
+
+    public IncumbentTracker(IncumbentTracker parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Offers a plan found at the given stage of a planner, e.g. "greedy-FANTOM: 2 contexts"
+     * @return true if the plan is cheaper than every plan offered before, and is now the incumbent
+     */
+    public boolean offer(VoiceOutputPlan plan, String stage) {
+        if (plan == null) {
+            return false;
+        }
+        return offer(plan, plan.getSpeechCost(), stage);
+    }
+
+    /**
+     * Offers a plan whose speech cost the planner already knows, so that the plan is not rendered to compare it
+     * @return true if the plan is cheaper than every plan offered before, and is now the incumbent
+     */
+    public boolean offer(VoiceOutputPlan plan, int cost, String stage) {
+        if (plan == null) {
+            return false;
+        }
+        if (parent != null) {
+            parent.offer(plan, cost, stage);
+        }
+        return offerToThis(plan, cost, stage);
+    }
+
+    private synchronized boolean offerToThis(VoiceOutputPlan plan, int cost, String stage) {
+        offers++;
+        if (cost >= bestCost) {
+            return false;
+        }
+        this.best = plan;
+        this.bestCost = cost;
+        this.stage = stage;
+        return true;
+    }
+
+    /**
+     * Returns the cheapest plan offered so far, or null if there was none
+     */
+    public synchronized VoiceOutputPlan getBest() {
+        return best;
+    }
+
+    /**
+     * Returns the speech cost of the cheapest plan offered so far, or Integer.MAX_VALUE if there was none
+     */
+    public synchronized int getBestCost() {
+        return bestCost;
+    }
+
+    /**
+     * Returns the stage that found the cheapest plan offered so far, or null if there was none
+     */
+    public synchronized String getStage() {
+        return stage;
+    }
+
+    public synchronized int getOfferCount() {
+        return offers;
+    }
+
+    /**
+     * Records that the planner proved that no plan has a lower speech cost than the incumbent. A model that only
+     * approximates speech costs, like the integer program of the LinearProgrammingPlanner, proves nothing.
+     */
+    public synchronized void markOptimal() {
+        optimal = true;
+    }
+
+    public synchronized boolean isOptimal() {
+        return optimal;
+    }
+
+    /**
+     * Records that the planner stopped before it finished its search, e.g. on a time limit, so that its plan may be
+     * worse than the plan it finds when given more time, and is not cached
+     */
+    public synchronized void markTruncated() {
+        truncated = true;
+    }
+
+    public synchronized boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * Records the outcome of a planner that contributed to the plan, e.g. one planner of a portfolio
+     */
+    public synchronized void addPlannerRun(PlannerRun run) {
+        plannerRuns.add(run);
+    }
+
+    public synchronized List<PlannerRun> getPlannerRuns() {
+        return new ArrayList<>(plannerRuns);
+    }
+}
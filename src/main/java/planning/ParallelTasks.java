@@ -0,0 +1,107 @@
+package planning;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * Splits loops of planners among tasks on an ExecutorService, e.g. the density sweep of the greedy planner and the
+ * scoring of candidate contexts. The planner thread waits for the tasks, and cancels them if it is interrupted.
+ *
+ * A PlanningManager cancels a planner by interrupting its thread, which the tasks must notice as well. Cancelling a
+ * task of a ForkJoinPool does not interrupt it, so by default tasks run on a shared pool of threads whose tasks
+ * are interrupted when they are cancelled. Tasks also stop before the next index once the planner thread is
+ * interrupted, whatever executor they run on.
+ */
+public class ParallelTasks {
+    private static final ExecutorService shared = newExecutor(Runtime.getRuntime().availableProcessors());
+
+    private ParallelTasks() {
+
+    }
+
+    /**
+     * Returns the executor that planners share for their tasks by default, with one thread per processor
+     */
+    public static ExecutorService shared() {
+        return shared;
+    }
+
+    /**
+     * Creates an executor with threadCount daemon threads, which end when they are idle for a minute
+     */
+    public static ExecutorService newExecutor(int threadCount) {
+        final AtomicInteger threadNumber = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "planner-task-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Runs action for every index from 0 to n - 1. The indices are split among taskCount tasks on executor, each
+     * handling every taskCount'th index, and the calling thread waits for all of them. If taskCount is at most 1,
+     * the calling thread runs all indices itself. The action must be safe to run concurrently for different indices.
+     * If a task fails or the calling thread is interrupted, the other tasks are cancelled.
+     * @param description What the tasks do, for the message of exceptions they throw
+     * @throws CancellationException if the calling thread is interrupted
+     */
+    public static void forEachIndex(ExecutorService executor, final int n, final int taskCount,
+                                    final IntConsumer action, String description) {
+        if (taskCount <= 1) {
+            for (int i = 0; i < n; i++) {
+                VoicePlanner.checkForCancellation();
+                action.accept(i);
+            }
+            return;
+        }
+
+        final Thread planner = Thread.currentThread();
+        CompletionService<Void> completionService = new ExecutorCompletionService<>(executor);
+        List<Future<Void>> futures = new ArrayList<>();
+        try {
+            for (int task = 0; task < taskCount; task++) {
+                final int first = task;
+                futures.add(completionService.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int i = first; i < n; i += taskCount) {
+                            if (planner.isInterrupted()) {
+                                throw new CancellationException("Planning was cancelled");
+                            }
+                            VoicePlanner.checkForCancellation();
+                            action.accept(i);
+                        }
+                    }
+                }, null));
+            }
+
+            // wait for the tasks in the order they finish, so that the first failure stops the others at once
+            for (int finished = 0; finished < futures.size(); finished++) {
+                completionService.take().get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Planning was cancelled");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CancellationException) {
+                throw (CancellationException) e.getCause();
+            }
+            throw new RuntimeException(description + " failed", e.getCause());
+        } finally {
+            // the planner was cancelled or a task failed, stop the other tasks
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+}
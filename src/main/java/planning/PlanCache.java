@@ -0,0 +1,565 @@
+package planning;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import planning.config.Config;
+import planning.elements.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of complete plans for a PlanningManager, keyed on a SHA-256 fingerprint of the contents of the
+ * TupleCollection, the Config and the planner identifier, so that repeated queries are neither planned nor rendered
+ * to speech text again.
+ *
+ * Up to maxEntries plans are kept in memory and the least recently used plan is evicted beyond that. Entries expire
+ * ttlMillis after they were planned. If a directory is given, every plan is also written to a file in it, so that
+ * plans outlive the cache. A cached plan refers to tuples and distinct values by their index in the TupleCollection,
+ * which is the same for every collection with the same fingerprint, and is rebuilt on the collection of the request.
+ * This holds in memory as on disk, so that cached plans do not keep the TupleCollections they were planned for.
+ */
+public class PlanCache {
+    private static final Logger logger = LoggerFactory.getLogger(PlanCache.class);
+    private static final int FILE_FORMAT_VERSION = 1;
+    private static final String FILE_SUFFIX = ".plan";
+
+    static final int SHARED_MAX_ENTRIES = 1024;
+    static final long SHARED_TTL_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    /**
+     * The system property that names the directory of the disk tier of the shared cache
+     */
+    public static final String SHARED_DIRECTORY_PROPERTY = "planning.cache.dir";
+
+    private static PlanCache shared;
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final File directory;
+    private final LinkedHashMap<String, EncodedEntry> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    public PlanCache(int maxEntries, long ttlMillis) {
+        this(maxEntries, ttlMillis, null);
+    }
+
+    /**
+     * @param directory the directory of the disk tier, or null to keep plans in memory only
+     */
+    public PlanCache(int maxEntries, long ttlMillis, File directory) {
+        if (maxEntries <= 0 || ttlMillis <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid cache size %d with ttl %d ms", maxEntries, ttlMillis));
+        }
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("Cannot create plan cache directory " + directory);
+        }
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.directory = directory;
+        this.entries = new LinkedHashMap<String, EncodedEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, EncodedEntry> eldest) {
+                if (size() > PlanCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cache that is shared by all PlanningManagers that serve requests. It keeps plans on disk in the
+     * directory named by the system property planning.cache.dir, if it is set.
+     */
+    public static synchronized PlanCache shared() {
+        if (shared == null) {
+            String directory = System.getProperty(SHARED_DIRECTORY_PROPERTY);
+            shared = new PlanCache(SHARED_MAX_ENTRIES, SHARED_TTL_MILLIS, directory == null ? null : new File(directory));
+        }
+        return shared;
+    }
+
+    /**
+     * Returns the SHA-256 fingerprint of a planning request, in hex. Two requests have the same fingerprint if their
+     * TupleCollections hold the same values in the same order and their planners and Configs agree. The parallelism
+     * of the Config only changes how fast a plan is found, so it is not part of the fingerprint.
+     */
+    public static String fingerprint(VoicePlanner planner, TupleCollection tuples, Config config) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+
+        update(digest, planner.getPlannerIdentifier());
+        update(digest, String.valueOf(config.getMaxAllowableContextSize()));
+        update(digest, String.valueOf(config.getMaxAllowableNumericalDomainWidth()));
+        update(digest, String.valueOf(config.getMaxAllowableCategoricalDomainSize()));
+        update(digest, String.valueOf(config.getTimeout()));
+        update(digest, String.valueOf(config.getEpsilon()));
+
+        update(digest, tuples.getTuplesClassName());
+        update(digest, String.valueOf(tuples.attributeCount()));
+        for (String attribute : tuples.getAttributes()) {
+            update(digest, attribute);
+        }
+        update(digest, String.valueOf(tuples.tupleCount()));
+        for (int t = 0; t < tuples.tupleCount(); t++) {
+            for (int a = 0; a < tuples.attributeCount(); a++) {
+                Value value = tuples.getValueForAttributeAndTuple(a, t);
+                update(digest, value.getValue().getClass().getSimpleName());
+                update(digest, value.toString());
+            }
+        }
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static void update(MessageDigest digest, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        digest.update((byte) (bytes.length >>> 24));
+        digest.update((byte) (bytes.length >>> 16));
+        digest.update((byte) (bytes.length >>> 8));
+        digest.update((byte) bytes.length);
+        digest.update(bytes);
+    }
+
+    /**
+     * Returns the cached plan with the given fingerprint, rebuilt on TupleCollection tuples, or null if there is none
+     * that has not expired
+     */
+    public Entry get(String fingerprint, TupleCollection tuples) {
+        long now = currentTimeMillis();
+        EncodedEntry encoded;
+        synchronized (entries) {
+            encoded = entries.get(fingerprint);
+            if (encoded != null && encoded.isExpired(now, ttlMillis)) {
+                entries.remove(fingerprint);
+                expirations.incrementAndGet();
+                encoded = null;
+            }
+        }
+        if (encoded != null) {
+            Entry entry = decode(encoded.bytes, tuples);
+            if (entry != null) {
+                hits.incrementAndGet();
+                return entry;
+            }
+            synchronized (entries) {
+                entries.remove(fingerprint);
+            }
+        }
+
+        encoded = directory == null ? null : read(fingerprint, now);
+        Entry entry = encoded == null ? null : decode(encoded.bytes, tuples);
+        if (entry == null) {
+            if (encoded != null) {
+                delete(file(fingerprint));
+            }
+            misses.incrementAndGet();
+            return null;
+        }
+        diskHits.incrementAndGet();
+        synchronized (entries) {
+            entries.put(fingerprint, encoded);
+        }
+        return entry;
+    }
+
+    /**
+     * Caches a complete plan. Its speech text is rendered now, so that hits do not render it again. Plans whose
+     * contexts use values that are not distinct values of tuples are not cached.
+     */
+    public void put(String fingerprint, TupleCollection tuples, PlanningResult result) {
+        EncodedEntry encoded = encode(tuples, new Entry(result.getPlan(), result.getPlanStage(),
+                result.getPlannerRuns(), currentTimeMillis()));
+        if (encoded == null) {
+            logger.debug("Plan uses values outside of its TupleCollection, not caching it");
+            return;
+        }
+        synchronized (entries) {
+            entries.put(fingerprint, encoded);
+        }
+        if (directory != null) {
+            write(fingerprint, encoded);
+        }
+    }
+
+    /**
+     * Removes all plans from memory and from disk
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+        if (directory != null) {
+            File[] files = directory.listFiles();
+            for (File file : files == null ? new File[0] : files) {
+                if (file.getName().endsWith(FILE_SUFFIX)) {
+                    delete(file);
+                }
+            }
+        }
+    }
+
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private File file(String fingerprint) {
+        return new File(directory, fingerprint + FILE_SUFFIX);
+    }
+
+    private void delete(File file) {
+        if (!file.delete()) {
+            logger.warn("Could not delete cached plan " + file);
+        }
+    }
+
+    /**
+     * Encodes entry in the format of the disk tier, or returns null if its plan uses values that are not distinct
+     * values of tuples
+     */
+    private static EncodedEntry encode(TupleCollection tuples, Entry entry) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            if (!writeEntry(out, tuples, entry)) {
+                return null;
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot encode plan", e);
+        }
+        return new EncodedEntry(bytes.toByteArray(), entry.createdAt);
+    }
+
+    /**
+     * Rebuilds an encoded entry on tuples, or returns null if it cannot be read
+     */
+    private static Entry decode(byte[] bytes, TupleCollection tuples) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            return readEntry(in, tuples);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not read cached plan", e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes an encoded entry to a temporary file that is then moved to the file of the fingerprint, so that readers
+     * never see a partially written plan
+     */
+    private void write(String fingerprint, EncodedEntry encoded) {
+        File file = file(fingerprint);
+        File temporary = new File(directory, fingerprint + ".tmp" + Thread.currentThread().getId());
+        try {
+            Files.write(temporary.toPath(), encoded.bytes);
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.warn("Could not write cached plan " + file, e);
+        } finally {
+            if (temporary.exists() && !temporary.delete()) {
+                logger.warn("Could not delete " + temporary);
+            }
+        }
+    }
+
+    private static boolean writeEntry(DataOutputStream out, TupleCollection tuples, Entry entry) throws IOException {
+        VoiceOutputPlan plan = entry.getPlan();
+        out.writeInt(FILE_FORMAT_VERSION);
+        out.writeLong(entry.createdAt);
+        out.writeUTF(entry.getPlanStage());
+        writeString(out, plan.toSpeechText(true));
+        writeString(out, plan.toSpeechText(false));
+
+        out.writeInt(entry.getPlannerRuns().size());
+        for (PlannerRun run : entry.getPlannerRuns()) {
+            out.writeUTF(run.getPlannerIdentifier());
+            out.writeLong(run.getExecutionTime());
+            out.writeInt(run.getSpeechCost() == null ? -1 : run.getSpeechCost());
+            out.writeUTF(run.getOutcome());
+        }
+
+        out.writeInt(plan.getScopes().size());
+        for (Scope scope : plan.getScopes()) {
+            Context context = scope.getContext();
+            out.writeInt(context == null ? -1 : context.getValueDomains().size());
+            if (context != null) {
+                for (ValueDomain domain : context.getValueDomains().values()) {
+                    if (!writeDomain(out, tuples, domain)) {
+                        return false;
+                    }
+                }
+            }
+            out.writeInt(scope.getTuples().size());
+            for (Tuple tuple : scope.getTuples()) {
+                int t = tuples.indexOfTuple(tuple);
+                if (t < 0) {
+                    return false;
+                }
+                out.writeInt(t);
+            }
+        }
+        return true;
+    }
+
+    private static boolean writeDomain(DataOutputStream out, TupleCollection tuples, ValueDomain domain) throws IOException {
+        int a = tuples.indexOfAttribute(domain.getAttribute());
+        List<Value> values = new ArrayList<>();
+        if (domain instanceof CategoricalValueDomain) {
+            values.addAll(((CategoricalValueDomain) domain).getDomainValues());
+        } else if (domain instanceof NumericalValueDomain) {
+            values.add(((NumericalValueDomain) domain).getLowerBound());
+            values.add(((NumericalValueDomain) domain).getUpperBound());
+        } else {
+            return false;
+        }
+        if (a < 0) {
+            return false;
+        }
+
+        out.writeInt(a);
+        out.writeBoolean(domain instanceof NumericalValueDomain);
+        out.writeInt(values.size());
+        for (Value value : values) {
+            int v = tuples.getIndexOfDistinctValue(a, value);
+            if (v < 0) {
+                return false;
+            }
+            out.writeInt(v);
+        }
+        return true;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads the encoded plan with the given fingerprint from disk, or returns null if there is none. Expired and
+     * unreadable files are deleted.
+     */
+    private EncodedEntry read(String fingerprint, long now) {
+        File file = file(fingerprint);
+        if (!file.isFile()) {
+            return null;
+        }
+        EncodedEntry encoded = null;
+        try {
+            byte[] bytes = Files.readAllBytes(file.toPath());
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            if (in.readInt() == FILE_FORMAT_VERSION) {
+                encoded = new EncodedEntry(bytes, in.readLong());
+            }
+        } catch (IOException e) {
+            logger.warn("Could not read cached plan " + file, e);
+        }
+        if (encoded != null && encoded.isExpired(now, ttlMillis)) {
+            expirations.incrementAndGet();
+            encoded = null;
+        }
+        if (encoded == null) {
+            delete(file);
+        }
+        return encoded;
+    }
+
+    private static Entry readEntry(DataInputStream in, TupleCollection tuples) throws IOException {
+        if (in.readInt() != FILE_FORMAT_VERSION) {
+            return null;
+        }
+        long createdAt = in.readLong();
+        String planStage = in.readUTF();
+        String longForm = readString(in);
+        String shortForm = readString(in);
+
+        int runCount = in.readInt();
+        List<PlannerRun> plannerRuns = new ArrayList<>();
+        for (int r = 0; r < runCount; r++) {
+            String plannerIdentifier = in.readUTF();
+            long executionTime = in.readLong();
+            int speechCost = in.readInt();
+            plannerRuns.add(new PlannerRun(plannerIdentifier, executionTime, speechCost < 0 ? null : speechCost,
+                    in.readUTF()));
+        }
+
+        int scopeCount = in.readInt();
+        VoiceOutputPlan plan = new VoiceOutputPlan();
+        for (int s = 0; s < scopeCount; s++) {
+            int domainCount = in.readInt();
+            Context context = null;
+            if (domainCount >= 0) {
+                context = new Context();
+                for (int d = 0; d < domainCount; d++) {
+                    context.addDomainAssignment(readDomain(in, tuples));
+                }
+            }
+            int tupleCount = in.readInt();
+            List<Tuple> scopeTuples = new ArrayList<>(tupleCount);
+            for (int i = 0; i < tupleCount; i++) {
+                Tuple tuple = tuples.getTuple(in.readInt());
+                if (tuple == null) {
+                    throw new IOException("Cached plan refers to a tuple that does not exist");
+                }
+                scopeTuples.add(tuple);
+            }
+            plan.addScope(new Scope(context, scopeTuples, tuples.getTuplesClassName()));
+        }
+        plan.longFormCachedResult = longForm;
+        plan.shortFormCachedResult = shortForm;
+        return new Entry(plan, planStage, plannerRuns, createdAt);
+    }
+
+    private static ValueDomain readDomain(DataInputStream in, TupleCollection tuples) throws IOException {
+        int a = in.readInt();
+        boolean numerical = in.readBoolean();
+        int valueCount = in.readInt();
+        List<Value> values = new ArrayList<>(valueCount);
+        for (int i = 0; i < valueCount; i++) {
+            values.add(tuples.getDistinctValue(a, in.readInt()));
+        }
+        String attribute = tuples.attributeForIndex(a);
+        if (numerical) {
+            return new NumericalValueDomain(attribute, values.get(0), values.get(1));
+        }
+        return new CategoricalValueDomain(attribute, values);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public Statistics getStatistics() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new Statistics(maxEntries, size, hits.get(), diskHits.get(), misses.get(), evictions.get(),
+                expirations.get());
+    }
+
+    /**
+     * A cached plan in the format of the disk tier, which refers to tuples and values by their index
+     */
+    private static class EncodedEntry {
+        final byte[] bytes;
+        final long createdAt;
+
+        EncodedEntry(byte[] bytes, long createdAt) {
+            this.bytes = bytes;
+            this.createdAt = createdAt;
+        }
+
+        boolean isExpired(long now, long ttlMillis) {
+            return now - createdAt >= ttlMillis;
+        }
+    }
+
+    /**
+     * A cached plan, together with the stage and planner runs of the PlanningResult it was planned for
+     */
+    public static class Entry {
+        final VoiceOutputPlan plan;
+        final String planStage;
+        final List<PlannerRun> plannerRuns;
+        final long createdAt;
+
+        Entry(VoiceOutputPlan plan, String planStage, List<PlannerRun> plannerRuns, long createdAt) {
+            this.plan = plan;
+            this.planStage = planStage;
+            this.plannerRuns = plannerRuns;
+            this.createdAt = createdAt;
+        }
+
+        public VoiceOutputPlan getPlan() {
+            return plan;
+        }
+
+        public String getPlanStage() {
+            return planStage;
+        }
+
+        public List<PlannerRun> getPlannerRuns() {
+            return plannerRuns;
+        }
+    }
+
+    /**
+     * A snapshot of the size of a PlanCache and of its hits, misses and evictions so far. Hits count plans found in
+     * memory, disk hits count plans read from disk.
+     */
+    public static class Statistics {
+        final int maxEntries;
+        final int entries;
+        final long hits;
+        final long diskHits;
+        final long misses;
+        final long evictions;
+        final long expirations;
+
+        Statistics(int maxEntries, int entries, long hits, long diskHits, long misses, long evictions,
+                   long expirations) {
+            this.maxEntries = maxEntries;
+            this.entries = entries;
+            this.hits = hits;
+            this.diskHits = diskHits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.expirations = expirations;
+        }
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public int getEntries() {
+            return entries;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getDiskHits() {
+            return diskHits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public long getExpirations() {
+            return expirations;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d of %d plans cached, %d hits, %d disk hits, %d misses", entries, maxEntries, hits,
+                    diskHits, misses);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package planning;
+
+/**
+ * The outcome of one planner of a PortfolioPlanner: how long it ran, the speech cost of its best plan, and whether
+ * it completed, proved its plan optimal, failed, or was cancelled
+ */
+public class PlannerRun {
+    public static final String COMPLETE = "complete";
+    public static final String OPTIMAL = "optimal";
+    public static final String FAILED = "failed";
+    public static final String CANCELLED = "cancelled";
+
+    final String plannerIdentifier;
+    final long executionTime;
+    final Integer speechCost;
+    final String outcome;
+
+    public PlannerRun(String plannerIdentifier, long executionTime, Integer speechCost, String outcome) {
+        this.plannerIdentifier = plannerIdentifier;
+        this.executionTime = executionTime;
+        this.speechCost = speechCost;
+        this.outcome = outcome;
+    }
+
+    public String getPlannerIdentifier() {
+        return plannerIdentifier;
+    }
+
+    public long getExecutionTime() {
+        return executionTime;
+    }
+
+    /**
+     * Returns the speech cost of the best plan of the planner, or null if it found none
+     */
+    public Integer getSpeechCost() {
+        return speechCost;
+    }
+
+    public String getOutcome() {
+        return outcome;
+    }
+}
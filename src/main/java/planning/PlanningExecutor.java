@@ -0,0 +1,125 @@
+package planning;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of worker threads that run VoicePlanners for a PlanningManager. At most threadCount planners run
+ * at the same time and at most queueCapacity further plans wait for a thread. Plans beyond that are rejected, so
+ * that requests under load fall back to a naive plan instead of piling up threads. Plans that time out are
+ * cancelled, which interrupts their worker thread.
+ */
+public class PlanningExecutor {
+    static final int QUEUED_PLANS_PER_THREAD = 4;
+
+    private static final PlanningExecutor shared = new PlanningExecutor(Runtime.getRuntime().availableProcessors(),
+            QUEUED_PLANS_PER_THREAD * Runtime.getRuntime().availableProcessors());
+
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+
+    public PlanningExecutor(int threadCount, int queueCapacity) {
+        final AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "planner-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Returns the executor that is shared by all PlanningManagers, with one thread per processor
+     */
+    public static PlanningExecutor shared() {
+        return shared;
+    }
+
+    /**
+     * Queues a plan to be built
+     * @throws RejectedExecutionException if all threads are busy and the queue is full
+     */
+    public Future<VoiceOutputPlan> submit(Callable<VoiceOutputPlan> plan) {
+        try {
+            return executor.submit(plan);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Cancels a plan that took too long, interrupting the thread that builds it
+     */
+    public void cancelTimedOut(Future<VoiceOutputPlan> plan) {
+        timedOut.incrementAndGet();
+        plan.cancel(true);
+    }
+
+    public void shutdownNow() {
+        executor.shutdownNow();
+    }
+
+    public Statistics getStatistics() {
+        return new Statistics(executor.getMaximumPoolSize(), executor.getActiveCount(), executor.getQueue().size(),
+                executor.getQueue().remainingCapacity(), executor.getCompletedTaskCount(), rejected.get(), timedOut.get());
+    }
+
+    /**
+     * A snapshot of the load of a PlanningExecutor and of the number of plans it has completed, rejected and
+     * cancelled after a timeout so far
+     */
+    public static class Statistics {
+        final int threadCount;
+        final int activeThreads;
+        final int queueDepth;
+        final int remainingQueueCapacity;
+        final long completedPlans;
+        final long rejectedPlans;
+        final long timedOutPlans;
+
+        Statistics(int threadCount, int activeThreads, int queueDepth, int remainingQueueCapacity,
+                   long completedPlans, long rejectedPlans, long timedOutPlans) {
+            this.threadCount = threadCount;
+            this.activeThreads = activeThreads;
+            this.queueDepth = queueDepth;
+            this.remainingQueueCapacity = remainingQueueCapacity;
+            this.completedPlans = completedPlans;
+            this.rejectedPlans = rejectedPlans;
+            this.timedOutPlans = timedOutPlans;
+        }
+
+        public int getThreadCount() {
+            return threadCount;
+        }
+
+        public int getActiveThreads() {
+            return activeThreads;
+        }
+
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        public int getRemainingQueueCapacity() {
+            return remainingQueueCapacity;
+        }
+
+        public long getCompletedPlans() {
+            return completedPlans;
+        }
+
+        public long getRejectedPlans() {
+            return rejectedPlans;
+        }
+
+        public long getTimedOutPlans() {
+            return timedOutPlans;
+        }
+    }
+}
@@ -11,59 +11,127 @@ import java.util.concurrent.*;
 public class PlanningManager {
     private Logger logger = LoggerFactory.getLogger(PlanningManager.class);
     VoicePlanner defaultPlanner;
+    PlanningExecutor executor;
+    PlanCache cache;
 
     /**
      * Lightweight class to manage execution of arbitrary planning algorithms for
      * arbitrary configurations. Manages the execution process and records any
-     * metadata necessary for producing a PlanningResult.
+     * metadata necessary for producing a PlanningResult. Planners run on the
+     * shared PlanningExecutor.
      */
     public PlanningManager() {
-        defaultPlanner = new NaiveVoicePlanner();
+        this(PlanningExecutor.shared());
+    }
+
+    public PlanningManager(PlanningExecutor executor) {
+        this(executor, null);
+    }
+
+    /**
+     * Constructs a PlanningManager that returns complete plans from PlanCache cache when the same request is
+     * planned again. Cached results are not timed, so managers that measure planners should not have a cache.
+     * @param cache the cache of plans, or null to plan every request
+     */
+    public PlanningManager(PlanningExecutor executor, PlanCache cache) {
+        this.defaultPlanner = new NaiveVoicePlanner();
+        this.executor = executor;
+        this.cache = cache;
     }
 
     /**
-     *
+     * Runs planner on the PlanningExecutor. If the planner does not finish within the timeout of config, it is
+     * cancelled and the best plan it offered so far is returned, or a naive plan if it offered none. If the
+     * manager has a PlanCache, a cached plan for the same tuples, planner and config is returned instead of planning,
+     * and complete plans are cached.
      * @param planner
      * @param tuples
      * @param config
      * @return
      */
     public PlanningResult buildPlan(VoicePlanner planner, TupleCollection tuples, Config config) {
-        ExecutorService executor = Executors.newSingleThreadExecutor();
-        AlgorithmCaller algorithmCaller = new AlgorithmCaller(tuples, planner, config);
-        Future<VoiceOutputPlan> future = executor.submit(algorithmCaller);
+        long lookupStartTime = System.currentTimeMillis();
+        String fingerprint = null;
+        if (cache != null) {
+            fingerprint = PlanCache.fingerprint(planner, tuples, config);
+            PlanCache.Entry cached = cache.get(fingerprint, tuples);
+            if (cached != null) {
+                logger.debug(String.format("Using cached plan of %s", planner.getPlannerIdentifier()));
+                return new PlanningResult(cached.getPlan(), tuples, config, planner.getPlannerIdentifier(),
+                        System.currentTimeMillis() - lookupStartTime, PlanningResult.CACHED_STAGE,
+                        cached.getPlannerRuns());
+            }
+        }
+
+        IncumbentTracker incumbents = new IncumbentTracker();
+        AlgorithmCaller algorithmCaller = new AlgorithmCaller(tuples, planner, config, incumbents);
 
         logger.debug("Beginning planning");
-        VoiceOutputPlan plan;
+        VoiceOutputPlan plan = null;
+        String planStage = PlanningResult.COMPLETE_STAGE;
         long startTime = System.currentTimeMillis();
 
+        Future<VoiceOutputPlan> future = null;
         try {
+            future = executor.submit(algorithmCaller);
             plan = future.get(config.getTimeout(), TimeUnit.SECONDS);
-        } catch (TimeoutException | InterruptedException | ExecutionException e) {
-            logger.debug(String.format("%s timed out, defaulting to %s", planner.getPlannerIdentifier(), defaultPlanner.getPlannerIdentifier()));
-            plan = defaultPlanner.plan(tuples, config);
+        } catch (RejectedExecutionException e) {
+            logger.warn(String.format("Too many plans queued, defaulting to %s", defaultPlanner.getPlannerIdentifier()));
+        } catch (TimeoutException e) {
+            // stop the planner, it keeps running otherwise
+            executor.cancelTimedOut(future);
+            logger.debug(String.format("%s timed out", planner.getPlannerIdentifier()));
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.debug(String.format("%s failed", planner.getPlannerIdentifier()));
+        }
+
+        if (plan == null) {
+            // return the best plan the planner offered before it stopped
+            plan = incumbents.getBest();
+            planStage = incumbents.getStage();
+            if (plan == null) {
+                logger.debug(String.format("No plan from %s, defaulting to %s", planner.getPlannerIdentifier(), defaultPlanner.getPlannerIdentifier()));
+                plan = defaultPlanner.plan(tuples, config);
+                planStage = PlanningResult.NAIVE_FALLBACK_STAGE;
+            }
         }
 
         long endTime = System.currentTimeMillis();
         logger.debug("Finished planning");
 
-        return new PlanningResult(plan, tuples, config, planner.getPlannerIdentifier(), endTime - startTime);
+        PlanningResult result = new PlanningResult(plan, tuples, config, planner.getPlannerIdentifier(),
+                endTime - startTime, planStage, incumbents.getPlannerRuns());
+        // a plan that the planner found before a time limit cut its search short may be improved on the next request
+        if (cache != null && PlanningResult.COMPLETE_STAGE.equals(planStage) && !incumbents.isTruncated()) {
+            cache.put(fingerprint, tuples, result);
+        }
+        return result;
     }
 
     public class AlgorithmCaller implements Callable<VoiceOutputPlan> {
         final TupleCollection tupleCollection;
         final VoicePlanner planner;
         final Config config;
+        final IncumbentTracker incumbents;
 
         public AlgorithmCaller(TupleCollection tupleCollection, VoicePlanner planner, Config config) {
+            this(tupleCollection, planner, config, new IncumbentTracker());
+        }
+
+        public AlgorithmCaller(TupleCollection tupleCollection, VoicePlanner planner, Config config,
+                               IncumbentTracker incumbents) {
             this.tupleCollection = tupleCollection;
             this.planner = planner;
             this.config = config;
+            this.incumbents = incumbents;
         }
 
         @Override
         public VoiceOutputPlan call() throws Exception {
-            VoiceOutputPlan plan = planner.plan(tupleCollection, config);
+            VoiceOutputPlan plan = planner.plan(tupleCollection, config, incumbents);
             if (plan == null) {
                 throw new TimeoutException();
             }
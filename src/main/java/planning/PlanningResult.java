@@ -3,26 +3,59 @@ package planning;
 import planning.config.Config;
 import planning.elements.TupleCollection;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
- * Contains information about the execution results of a VoicePlanner
+ * Contains information about the execution results of a VoicePlanner, including the stage of the planner that
+ * produced the plan: COMPLETE_STAGE if the planner finished, the stage of its best incumbent if it timed out,
+ * NAIVE_FALLBACK_STAGE if it timed out without an incumbent, or CACHED_STAGE if the plan came from a PlanCache. For
+ * planners that run other planners, such as a PortfolioPlanner, the outcome of each of them is recorded as well.
  */
 public class PlanningResult {
+    public static final String COMPLETE_STAGE = "complete";
+    public static final String NAIVE_FALLBACK_STAGE = "naive-fallback";
+    public static final String CACHED_STAGE = "cached";
+
     VoiceOutputPlan plan;
     long executionTime;
     TupleCollection tuples;
     Config config;
     String plannerIdentifier;
+    String planStage;
+    List<PlannerRun> plannerRuns;
 
     public PlanningResult(VoiceOutputPlan plan,
                           TupleCollection tuples,
                           Config config,
                           String plannerIdentifier,
                           long executionTime) {
+        this(plan, tuples, config, plannerIdentifier, executionTime, COMPLETE_STAGE);
+    }
+
+    public PlanningResult(VoiceOutputPlan plan,
+                          TupleCollection tuples,
+                          Config config,
+                          String plannerIdentifier,
+                          long executionTime,
+                          String planStage) {
+        this(plan, tuples, config, plannerIdentifier, executionTime, planStage, Collections.<PlannerRun>emptyList());
+    }
+
+    public PlanningResult(VoiceOutputPlan plan,
+                          TupleCollection tuples,
+                          Config config,
+                          String plannerIdentifier,
+                          long executionTime,
+                          String planStage,
+                          List<PlannerRun> plannerRuns) {
         this.plan = plan;
         this.tuples = tuples;
         this.config = config;
         this.plannerIdentifier = plannerIdentifier;
         this.executionTime = executionTime;
+        this.planStage = planStage;
+        this.plannerRuns = plannerRuns;
     }
 
     public VoiceOutputPlan getPlan() {
@@ -45,4 +78,12 @@ public class PlanningResult {
         return plannerIdentifier;
     }
 
+    public String getPlanStage() {
+        return planStage;
+    }
+
+    public List<PlannerRun> getPlannerRuns() {
+        return plannerRuns;
+    }
+
 }
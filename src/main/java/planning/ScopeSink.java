@@ -0,0 +1,19 @@
+package planning;
+
+import planning.elements.Scope;
+
+import java.io.IOException;
+
+/**
+ * Receives the speech text of the scopes of a VoiceOutputPlan as they are rendered
+ * @see VoiceOutputPlan#renderScopes(ScopeSink, boolean)
+ */
+public interface ScopeSink {
+
+    /**
+     * Called once per scope, in the order in which the scopes are spoken
+     * @param scope The rendered Scope
+     * @param speechText The speech text of scope, without the space that separates it from the scope before it
+     */
+    void scopeRendered(Scope scope, String speechText) throws IOException;
+}
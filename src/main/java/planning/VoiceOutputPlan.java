@@ -2,6 +2,8 @@ package planning;
 
 import planning.elements.Scope;
 
+import java.io.Flushable;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -40,21 +42,12 @@ public class VoiceOutputPlan implements Speakable {
 
         boolean firstScope = true;
 
-        for (Scope scope : scopes) {
-            if (scope.getContext() == null) {
-                builder.append(scope.toSpeechText(inLongForm));
-                firstScope = false;
-            }
-        }
-
-        for (Scope scope : scopes) {
-            if (scope.getContext() != null) {
-                if (!firstScope) {
-                    builder.append(" ");
-                }
-                builder.append(scope.toSpeechText(inLongForm));
-                firstScope = false;
+        for (Scope scope : speechOrder()) {
+            if (!firstScope && scope.getContext() != null) {
+                builder.append(" ");
             }
+            builder.append(scope.toSpeechText(inLongForm));
+            firstScope = false;
         }
 
         if (inLongForm) {
@@ -66,6 +59,66 @@ public class VoiceOutputPlan implements Speakable {
         }
     }
 
+    /**
+     * Writes the speech text of this VoiceOutputPlan to out scope by scope, so that e.g. a VoiceGenerator can start
+     * on the first scopes while the others are rendered. If out is Flushable, it is flushed after every scope. The
+     * speech text is not cached, so large plans are never held as a whole.
+     */
+    public void writeSpeechText(Appendable out, boolean inLongForm) throws IOException {
+        String cachedResult = inLongForm ? longFormCachedResult : shortFormCachedResult;
+        if (cachedResult != null) {
+            out.append(cachedResult);
+            flush(out);
+            return;
+        }
+
+        boolean firstScope = true;
+        for (Scope scope : speechOrder()) {
+            if (!firstScope && scope.getContext() != null) {
+                out.append(" ");
+            }
+            scope.writeSpeechText(out, inLongForm);
+            flush(out);
+            firstScope = false;
+        }
+    }
+
+    /**
+     * Renders the scopes of this VoiceOutputPlan one at a time in the order of toSpeechText and passes each to
+     * sink as soon as it is rendered
+     */
+    public void renderScopes(ScopeSink sink, boolean inLongForm) throws IOException {
+        for (Scope scope : speechOrder()) {
+            StringBuilder builder = new StringBuilder();
+            scope.writeSpeechText(builder, inLongForm);
+            sink.scopeRendered(scope, builder.toString());
+        }
+    }
+
+    /**
+     * Returns the scopes in the order they are spoken: scopes without a Context come first
+     */
+    private List<Scope> speechOrder() {
+        List<Scope> ordered = new ArrayList<>(scopes.size());
+        for (Scope scope : scopes) {
+            if (scope.getContext() == null) {
+                ordered.add(scope);
+            }
+        }
+        for (Scope scope : scopes) {
+            if (scope.getContext() != null) {
+                ordered.add(scope);
+            }
+        }
+        return ordered;
+    }
+
+    private static void flush(Appendable out) throws IOException {
+        if (out instanceof Flushable) {
+            ((Flushable) out).flush();
+        }
+    }
+
     public int getSpeechCost() {
         return toSpeechText(true).length();
     }
@@ -3,10 +3,38 @@ package planning;
 import planning.config.Config;
 import planning.elements.TupleCollection;
 
+import java.util.concurrent.CancellationException;
+
 /**
  * Abstract representation of VoicePlanners
+ *
+ * A PlanningManager interrupts the thread of a planner that times out. Long running planners should call
+ * checkForCancellation() regularly, so that they stop instead of computing a plan that is no longer needed.
+ *
+ * Planners are anytime planners: while planning they offer each improving plan to an IncumbentTracker, and the
+ * PlanningManager returns the best of them if the planner does not finish in time.
  */
 public abstract class VoicePlanner {
     protected abstract VoiceOutputPlan plan(TupleCollection tupleCollection, Config config);
     public abstract String getPlannerIdentifier();
+
+    /**
+     * Constructs a VoiceOutputPlan like plan(tupleCollection, config) and offers improving plans to incumbents along
+     * the way. Planners that find intermediate plans should override this. By default, only the final plan is
+     * offered.
+     */
+    public VoiceOutputPlan plan(TupleCollection tupleCollection, Config config, IncumbentTracker incumbents) {
+        VoiceOutputPlan plan = plan(tupleCollection, config);
+        incumbents.offer(plan, getPlannerIdentifier());
+        return plan;
+    }
+
+    /**
+     * Throws a CancellationException if the current thread was interrupted
+     */
+    public static void checkForCancellation() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Planning was cancelled");
+        }
+    }
 }
@@ -12,12 +12,14 @@ public class Config {
     Integer maxAllowableCategoricalDomainSize; // mC
     Integer timeout; // timeout before defaulting to a naive result, seconds
     Double epsilon; // approximation value for the FANTOM algorithm
+    Integer parallelism; // maximal number of threads a planner may use for independent work
 
     static final Integer DEFAULT_MAX_ALLOWABLE_CONTEXT_SIZE = 2;
     static final Double DEFAULT_MAX_ALLOWABLE_NUMERICAL_DOMAIN_WIDTH = 2.0;
     static final Integer DEFAULT_MAX_ALLOWABLE_CATEGORICAL_DOMAIN_SIZE = 2;
     static final Integer DEFAULT_TIMEOUT = 120;
     static final Double DEFAULT_EPSILON = 0.1;
+    static final Integer DEFAULT_PARALLELISM = Runtime.getRuntime().availableProcessors();
 
     public Config() {
 
@@ -106,6 +108,21 @@ public class Config {
         this.epsilon = epsilon;
     }
 
+    public Integer getParallelism() {
+        if (parallelism == null) {
+            logger.warn(String.format("Using default value %d for parallelism", DEFAULT_PARALLELISM));
+            return DEFAULT_PARALLELISM;
+        }
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) throws InvalidConfigValueException {
+        if (parallelism <= 0) {
+            throw new InvalidConfigValueException(String.format("Parallelism must be positive. Received value: %d", parallelism));
+        }
+        this.parallelism = parallelism;
+    }
+
     /**
      * Exception class representing that an invalid configuration value was set
      */
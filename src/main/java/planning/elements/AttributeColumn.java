@@ -0,0 +1,192 @@
+package planning.elements;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.*;
+
+/**
+ * Columnar, dictionary-encoded storage for the Values of a single attribute in a TupleCollection. Every
+ * distinct Value is assigned an integer code in the order in which it is first added to the dictionary, and
+ * each tuple only stores the code of its Value. Numerical attributes additionally keep the value of every
+ * tuple in a primitive double column so that planners can read them without unboxing.
+ *
+ * The codes and numerical values of a column loaded from a TupleCollectionSnapshot stay in the mapped file until
+ * tuples are appended to the column, at which point they are copied into arrays.
+ */
+class AttributeColumn {
+    private static final int INITIAL_CAPACITY = 16;
+
+    List<Value> dictionary;
+    Map<Value, Integer> dictionaryCodes;
+    int[] codes;
+    double[] numericalValues;
+    IntBuffer mappedCodes;
+    DoubleBuffer mappedNumericalValues;
+    int size;
+    boolean categorical;
+
+    AttributeColumn() {
+        this.dictionary = new ArrayList<>();
+        this.dictionaryCodes = new HashMap<>();
+        this.codes = new int[INITIAL_CAPACITY];
+        this.numericalValues = null;
+        this.size = 0;
+        this.categorical = true;
+    }
+
+    /**
+     * Constructs a column of size tuples whose codes, and numerical values unless it is categorical, are read from
+     * the given buffers
+     */
+    AttributeColumn(List<Value> dictionary, boolean categorical, int size, IntBuffer codes, DoubleBuffer numericalValues) {
+        this.dictionary = new ArrayList<>(dictionary);
+        this.dictionaryCodes = new HashMap<>();
+        for (int code = 0; code < dictionary.size(); code++) {
+            dictionaryCodes.put(dictionary.get(code), code);
+        }
+        this.mappedCodes = codes;
+        this.mappedNumericalValues = categorical ? null : numericalValues;
+        this.size = size;
+        this.categorical = categorical;
+    }
+
+    /**
+     * Copies mapped codes and numerical values into arrays, so that tuples can be appended
+     */
+    private void copyMappedColumns() {
+        if (mappedCodes == null) {
+            return;
+        }
+        codes = new int[Math.max(INITIAL_CAPACITY, size)];
+        mappedCodes.duplicate().get(codes, 0, size);
+        if (mappedNumericalValues != null) {
+            numericalValues = new double[codes.length];
+            mappedNumericalValues.duplicate().get(numericalValues, 0, size);
+        }
+        mappedCodes = null;
+        mappedNumericalValues = null;
+    }
+
+    /**
+     * Adds Value v to the dictionary of this column if it is not present yet.
+     * @return The code of Value v in the dictionary
+     */
+    int addDistinctValue(Value v) {
+        Integer code = dictionaryCodes.get(v);
+        if (code == null) {
+            code = dictionary.size();
+            dictionary.add(v);
+            dictionaryCodes.put(v, code);
+        }
+        return code;
+    }
+
+    /**
+     * Appends a tuple whose Value is the dictionary entry with the given code. The type of the first appended
+     * Value determines whether this column is categorical or numerical.
+     */
+    void append(int code) {
+        copyMappedColumns();
+        Value v = dictionary.get(code);
+        if (size == 0) {
+            categorical = v.isCategorical();
+        }
+        if (size == codes.length) {
+            codes = Arrays.copyOf(codes, 2 * size);
+        }
+        codes[size] = code;
+
+        if (!categorical) {
+            if (numericalValues == null) {
+                numericalValues = new double[codes.length];
+            } else if (numericalValues.length < codes.length) {
+                numericalValues = Arrays.copyOf(numericalValues, codes.length);
+            }
+            numericalValues[size] = v.linearProgrammingCoefficient();
+        }
+        size++;
+    }
+
+    /**
+     * Appends all tuples of column other, whose dictionary codes are translated to codes of this column by codeMap
+     */
+    void appendAll(AttributeColumn other, int[] codeMap) {
+        if (other.size == 0) {
+            return;
+        }
+        copyMappedColumns();
+        if (size == 0) {
+            categorical = other.categorical;
+        }
+        if (size + other.size > codes.length) {
+            codes = Arrays.copyOf(codes, Math.max(2 * codes.length, size + other.size));
+        }
+        if (!categorical) {
+            numericalValues = numericalValues == null ? new double[codes.length]
+                    : Arrays.copyOf(numericalValues, codes.length);
+        }
+        for (int t = 0; t < other.size; t++) {
+            int code = codeMap[other.code(t)];
+            codes[size + t] = code;
+            if (!categorical) {
+                numericalValues[size + t] = dictionary.get(code).linearProgrammingCoefficient();
+            }
+        }
+        size += other.size;
+    }
+
+    /**
+     * Returns the dictionary code of the Value stored for tuple t
+     */
+    int code(int t) {
+        return mappedCodes != null ? mappedCodes.get(t) : codes[t];
+    }
+
+    /**
+     * Returns the dictionary code of Value v, or -1 if v is not in the dictionary
+     */
+    int codeOf(Value v) {
+        Integer code = dictionaryCodes.get(v);
+        return code == null ? -1 : code;
+    }
+
+    Value value(int t) {
+        return dictionary.get(code(t));
+    }
+
+    double numericalValue(int t) {
+        return mappedNumericalValues != null ? mappedNumericalValues.get(t) : numericalValues[t];
+    }
+
+    Value distinctValue(int code) {
+        return dictionary.get(code);
+    }
+
+    int distinctValueCount() {
+        return dictionary.size();
+    }
+
+    /**
+     * Returns the codes of all distinct Values of this numerical column in ascending order of their values
+     */
+    int[] codesSortedByValue() {
+        final double[] distinctValues = new double[dictionary.size()];
+        Integer[] sorted = new Integer[dictionary.size()];
+        for (int code = 0; code < sorted.length; code++) {
+            distinctValues[code] = dictionary.get(code).linearProgrammingCoefficient();
+            sorted[code] = code;
+        }
+        Arrays.sort(sorted, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Double.compare(distinctValues[o1], distinctValues[o2]);
+            }
+        });
+
+        int[] result = new int[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            result[i] = sorted[i];
+        }
+        return result;
+    }
+}
@@ -1,5 +1,6 @@
 package planning.elements;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import planning.Speakable;
 
 import java.util.*;
@@ -31,6 +32,14 @@ public class CategoricalValueDomain extends ValueDomain implements Speakable {
         domainValues.add(value);
     }
 
+    /**
+     * Returns the categorical Values that this domain fixes. The returned set must not be modified.
+     */
+    @JsonIgnore
+    public Set<Value> getDomainValues() {
+        return domainValues;
+    }
+
     /**
      * Determines if a Value is within this CategoricalValueDomain. A Value is within
      * this domain if it is equal to one of the categorical Values that this domain fixes.
@@ -0,0 +1,204 @@
+package planning.elements;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Answers which Tuples of a TupleCollection match a ValueDomain or a Context, using bitsets of tuple indices
+ * instead of comparing Values tuple by tuple. For every attribute the index keeps an inverted list of the
+ * tuples that hold each distinct Value. The match set of a ValueDomain is the union of the lists of the
+ * distinct Values it contains and is cached, and the match set of a Context is the intersection of the match
+ * sets of its domains. Counting matches is then a popcount.
+ *
+ * Numerical attributes are additionally sorted by value, so that a NumericalValueDomain resolves to a
+ * contiguous slice of the sorted tuples, found by binary search on primitive doubles.
+ *
+ * Match sets are cached separately for every attribute, since equal CategoricalValueDomains of different
+ * attributes match different tuples. The index is safe for concurrent use. Cached bitsets are shared and
+ * must not be modified by callers.
+ */
+public class MatchIndex {
+    final TupleCollection tuples;
+    final int tupleCount;
+    final int[][] postingOffsets;
+    final int[][] postings;
+    final int[][] sortedTuples;
+    final double[][] sortedValues;
+    final List<Map<ValueDomain, BitSet>> domainMatches;
+
+    MatchIndex(TupleCollection tuples) {
+        this.tuples = tuples;
+        this.tupleCount = tuples.tupleCount();
+        this.postingOffsets = new int[tuples.attributeCount()][];
+        this.postings = new int[tuples.attributeCount()][];
+        this.sortedTuples = new int[tuples.attributeCount()][];
+        this.sortedValues = new double[tuples.attributeCount()][];
+        this.domainMatches = new ArrayList<>();
+
+        for (int a = 0; a < tuples.attributeCount(); a++) {
+            // counting sort of the tuples by their distinct value code
+            int[] offsets = new int[tuples.distinctValueCountForAttribute(a) + 1];
+            for (int t = 0; t < tupleCount; t++) {
+                offsets[tuples.getIndexOfDistinctValue(a, t) + 1]++;
+            }
+            for (int v = 0; v < offsets.length - 1; v++) {
+                offsets[v + 1] += offsets[v];
+            }
+            int[] next = new int[offsets.length - 1];
+            System.arraycopy(offsets, 0, next, 0, next.length);
+            int[] tupleIndices = new int[tupleCount];
+            for (int t = 0; t < tupleCount; t++) {
+                tupleIndices[next[tuples.getIndexOfDistinctValue(a, t)]++] = t;
+            }
+            postingOffsets[a] = offsets;
+            postings[a] = tupleIndices;
+            domainMatches.add(new ConcurrentHashMap<ValueDomain, BitSet>());
+
+            if (tuples.attributeIsNumerical(a)) {
+                sortNumericalAttribute(a);
+            }
+        }
+    }
+
+    /**
+     * Lays out the inverted lists of the numerical attribute a in ascending order of their values, which
+     * yields all tuples sorted by their value for a
+     */
+    private void sortNumericalAttribute(int a) {
+        int[] tupleIndices = new int[tupleCount];
+        double[] values = new double[tupleCount];
+        int i = 0;
+        for (int code : tuples.columns.get(a).codesSortedByValue()) {
+            double value = tuples.getDistinctValue(a, code).linearProgrammingCoefficient();
+            for (int p = postingOffsets[a][code]; p < postingOffsets[a][code + 1]; p++) {
+                tupleIndices[i] = postings[a][p];
+                values[i] = value;
+                i++;
+            }
+        }
+        sortedTuples[a] = tupleIndices;
+        sortedValues[a] = values;
+    }
+
+    /**
+     * Returns the set of tuples that match ValueDomain d. The result is cached and must not be modified.
+     */
+    public BitSet matches(ValueDomain d) {
+        int a = tuples.indexOfAttribute(d.getAttribute());
+        if (a < 0) {
+            return new BitSet();
+        }
+        Map<ValueDomain, BitSet> cache = domainMatches.get(a);
+        BitSet matches = cache.get(d);
+        if (matches == null) {
+            matches = computeMatches(a, d);
+            cache.put(d, matches);
+        }
+        return matches;
+    }
+
+    private BitSet computeMatches(int a, ValueDomain d) {
+        BitSet matches = new BitSet(tupleCount);
+        if (d instanceof CategoricalValueDomain) {
+            for (Value v : ((CategoricalValueDomain) d).domainValues) {
+                int code = tuples.getIndexOfDistinctValue(a, v);
+                if (code >= 0 && d.contains(tuples.getDistinctValue(a, code))) {
+                    addPostings(matches, a, code);
+                }
+            }
+        } else if (d instanceof NumericalValueDomain && sortedValues[a] != null) {
+            NumericalValueDomain numericalDomain = (NumericalValueDomain) d;
+            int from = firstIndexAbove(sortedValues[a], numericalDomain.lowerBound.linearProgrammingCoefficient(), false);
+            int to = firstIndexAbove(sortedValues[a], numericalDomain.upperBound.linearProgrammingCoefficient(), true);
+            for (int i = from; i < to; i++) {
+                matches.set(sortedTuples[a][i]);
+            }
+        } else {
+            for (int code = 0; code < tuples.distinctValueCountForAttribute(a); code++) {
+                if (d.contains(tuples.getDistinctValue(a, code))) {
+                    addPostings(matches, a, code);
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Binary search for the first index in ascending values whose value is greater than bound, or greater than or
+     * equal to bound if inclusive is false
+     */
+    static int firstIndexAbove(double[] values, double bound, boolean inclusive) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < bound || (inclusive && values[mid] == bound)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void addPostings(BitSet matches, int a, int code) {
+        for (int i = postingOffsets[a][code]; i < postingOffsets[a][code + 1]; i++) {
+            matches.set(postings[a][i]);
+        }
+    }
+
+    /**
+     * Returns a new set of the tuples that match all domains of Context c
+     */
+    public BitSet matches(Context c) {
+        BitSet matches = allTuples();
+        for (ValueDomain d : c.valueDomains.values()) {
+            matches.and(matches(d));
+        }
+        return matches;
+    }
+
+    /**
+     * Determines if the t'th Tuple matches Context c
+     */
+    public boolean matches(Context c, int t) {
+        for (ValueDomain d : c.valueDomains.values()) {
+            if (!matches(d).get(t)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of tuples that match Context c
+     */
+    public int matchCount(Context c) {
+        return matches(c).cardinality();
+    }
+
+    /**
+     * Returns the number of tuples among the given set of tuples that match Context c
+     */
+    public int matchCount(Context c, BitSet among) {
+        BitSet matches = matches(c);
+        matches.and(among);
+        return matches.cardinality();
+    }
+
+    /**
+     * Returns a new set containing every tuple
+     */
+    public BitSet allTuples() {
+        BitSet all = new BitSet(tupleCount);
+        all.set(0, tupleCount);
+        return all;
+    }
+
+    public int tupleCount() {
+        return tupleCount;
+    }
+}
@@ -1,5 +1,7 @@
 package planning.elements;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 /**
  * A representation of a domain of numerical Values. The lower and upper bounds are inclusive bounds.
  */
@@ -28,6 +30,16 @@ public class NumericalValueDomain extends ValueDomain {
         this(attribute, singularValue, singularValue);
     }
 
+    @JsonIgnore
+    public Value getLowerBound() {
+        return lowerBound;
+    }
+
+    @JsonIgnore
+    public Value getUpperBound() {
+        return upperBound;
+    }
+
     /**
      * Determines if a Value is within this NumericalValueDomain. This is equivalent to whether
      * a Value is both greater than or equal to the lower bound and less than or equal to the
@@ -2,6 +2,7 @@ package planning.elements;
 
 import planning.Speakable;
 
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -53,6 +54,13 @@ public class Scope implements Speakable {
         return tuplesClassName.length() + " with : ".length();
     }
 
+    /**
+     * Returns the speech cost of the separators between tupleCount tuples and of the end of a Scope
+     */
+    public static int separatorCost(int tupleCount) {
+        return (tupleCount - 1) * TUPLE_SEPARATOR_STRING.length() + SCOPE_END_STRING.length();
+    }
+
     /**
      * Returns the String representation of this Scope. Caches the result so later calls
      * do not recalculate the result
@@ -65,13 +73,12 @@ public class Scope implements Speakable {
             return cachedShortResult;
         }
 
-        StringBuilder result = new StringBuilder(context == null ? "" : preContextPhrase() + context.toSpeechText(inLongForm) + postContextPhrase());
-
-        int i = 0;
-        for (Tuple t : tuples) {
-            result.append(t.toSpeechText(context, inLongForm));
-            result.append(i == tuples.size()-1 ? SCOPE_END_STRING : TUPLE_SEPARATOR_STRING);
-            i++;
+        StringBuilder result = new StringBuilder();
+        try {
+            writeSpeechText(result, inLongForm);
+        } catch (IOException e) {
+            // StringBuilders do not throw IOExceptions
+            throw new IllegalStateException(e);
         }
 
         if (inLongForm) {
@@ -83,6 +90,29 @@ public class Scope implements Speakable {
         return (inLongForm ? cachedLongFormResult : cachedShortResult);
     }
 
+    /**
+     * Writes the String representation of this Scope to out tuple by tuple, without building it as a whole. The
+     * result is not cached.
+     */
+    public void writeSpeechText(Appendable out, boolean inLongForm) throws IOException {
+        String cachedResult = inLongForm ? cachedLongFormResult : cachedShortResult;
+        if (cachedResult != null) {
+            out.append(cachedResult);
+            return;
+        }
+
+        if (context != null) {
+            out.append(preContextPhrase()).append(context.toSpeechText(inLongForm)).append(postContextPhrase());
+        }
+
+        int i = 0;
+        for (Tuple t : tuples) {
+            out.append(t.toSpeechText(context, inLongForm));
+            out.append(i == tuples.size()-1 ? SCOPE_END_STRING : TUPLE_SEPARATOR_STRING);
+            i++;
+        }
+    }
+
     public String preContextPhrase() {
         return tuplesClassName + " with ";
     }
@@ -0,0 +1,155 @@
+package planning.elements;
+
+/**
+ * Precomputed speech costs for the Tuples of a TupleCollection. Costs are counted in characters of the long-form
+ * speech text, as produced by Tuple.toSpeechText(context, true). The model stores the cost of every tuple value,
+ * every distinct value, and every attribute name, so that the savings of outputting a Tuple within a Context can
+ * be computed as a sum over the attributes that the Context fixes, without building any speech text.
+ *
+ * A Tuple is spoken as its first attribute's value followed by ", <value> <attribute>" for every other attribute.
+ * Attributes that are fixed by a Context are left out.
+ */
+public class SpeechCostModel {
+    public static final int ATTRIBUTE_SEPARATOR_COST = ", ".length();
+    public static final int VALUE_SEPARATOR_COST = " ".length();
+
+    final TupleCollection tuples;
+    final int tupleCount;
+    final int attributeCount;
+    final int[][] valueCosts;
+    final int[][] distinctValueCosts;
+    final int[] attributeCosts;
+    final int[] tupleCosts;
+
+    SpeechCostModel(TupleCollection tuples) {
+        this.tuples = tuples;
+        this.tupleCount = tuples.tupleCount();
+        this.attributeCount = tuples.attributeCount();
+        this.valueCosts = new int[tupleCount][attributeCount];
+        this.distinctValueCosts = new int[attributeCount][];
+        this.attributeCosts = new int[attributeCount];
+        this.tupleCosts = new int[tupleCount];
+
+        for (int a = 0; a < attributeCount; a++) {
+            attributeCosts[a] = tuples.costForAttribute(a);
+            distinctValueCosts[a] = new int[tuples.distinctValueCountForAttribute(a)];
+            for (int v = 0; v < distinctValueCosts[a].length; v++) {
+                distinctValueCosts[a][v] = tuples.getDistinctValue(a, v).speechCost();
+            }
+            for (int t = 0; t < tupleCount; t++) {
+                valueCosts[t][a] = distinctValueCosts[a][tuples.getIndexOfDistinctValue(a, t)];
+            }
+        }
+
+        for (int t = 0; t < tupleCount; t++) {
+            tupleCosts[t] = tupleCost(t, new boolean[attributeCount]);
+        }
+    }
+
+    /**
+     * Returns the cost of the long-form Value of Tuple t for attribute a
+     */
+    public int valueCost(int t, int a) {
+        return valueCosts[t][a];
+    }
+
+    /**
+     * Returns the cost of the long-form v'th distinct Value of attribute a
+     */
+    public int distinctValueCost(int a, int v) {
+        return distinctValueCosts[a][v];
+    }
+
+    /**
+     * Returns the cost of speaking the name of attribute a
+     */
+    public int attributeCost(int a) {
+        return attributeCosts[a];
+    }
+
+    /**
+     * Returns the cost of speaking Tuple t without a Context
+     */
+    public int tupleCost(int t) {
+        return tupleCosts[t];
+    }
+
+    /**
+     * Returns the cost of speaking Tuple t if the attributes marked in fixedAttributes are left out
+     */
+    public int tupleCost(int t, boolean[] fixedAttributes) {
+        int cost = 0;
+        boolean firstAttribute = true;
+        for (int a = 0; a < attributeCount; a++) {
+            if (!fixedAttributes[a]) {
+                cost += valueCosts[t][a];
+                if (!firstAttribute) {
+                    cost += ATTRIBUTE_SEPARATOR_COST + VALUE_SEPARATOR_COST + attributeCosts[a];
+                }
+                firstAttribute = false;
+            }
+        }
+        return cost;
+    }
+
+    /**
+     * Returns the characters saved by not speaking attribute a of Tuple t. This is exact as long as a is
+     * not the first attribute, which is spoken without its name and separators.
+     */
+    public int attributeSavings(int t, int a) {
+        return ATTRIBUTE_SEPARATOR_COST + valueCosts[t][a] + VALUE_SEPARATOR_COST + attributeCosts[a];
+    }
+
+    /**
+     * Returns the characters saved by speaking Tuple t with the attributes marked in fixedAttributes left out
+     */
+    public int savings(int t, boolean[] fixedAttributes) {
+        if (!fixedAttributes[0]) {
+            int savings = 0;
+            for (int a = 1; a < attributeCount; a++) {
+                if (fixedAttributes[a]) {
+                    savings += attributeSavings(t, a);
+                }
+            }
+            return savings;
+        }
+        return tupleCosts[t] - tupleCost(t, fixedAttributes);
+    }
+
+    /**
+     * Returns the characters saved by speaking Tuple t within Context c. Like Tuple.toSpeechText(c, true), a
+     * Tuple that does not match c is spoken in full, so nothing is saved.
+     */
+    public int savings(int t, Context c) {
+        if (c == null || !tuples.getMatchIndex().matches(c, t)) {
+            return 0;
+        }
+        return savings(t, fixedAttributes(c));
+    }
+
+    /**
+     * Returns an array marking the attributes for which Context c fixes a domain
+     */
+    public boolean[] fixedAttributes(Context c) {
+        boolean[] fixed = new boolean[attributeCount];
+        for (int a = 0; a < attributeCount; a++) {
+            fixed[a] = c.isAttributeFixed(tuples.attributeForIndex(a));
+        }
+        return fixed;
+    }
+
+    /**
+     * Returns the cost of introducing a Scope with Context c, i.e. the Context itself and the phrases around it
+     */
+    public int contextCost(Context c) {
+        return c.toSpeechText(true).length() + Scope.contextOverheadCost(tuples.getTuplesClassName());
+    }
+
+    public int tupleCount() {
+        return tupleCount;
+    }
+
+    public int attributeCount() {
+        return attributeCount;
+    }
+}
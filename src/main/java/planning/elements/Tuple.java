@@ -23,6 +23,16 @@ public class Tuple implements Speakable {
         this.cachedLongFormResultWithoutContext = null;
     }
 
+    /**
+     * Constructor used by subclasses that look up their Values elsewhere and do not need their own map
+     * of value assignments.
+     */
+    Tuple(List<String> attributes, Map<String, Value> valueAssignments) {
+        this.attributes = attributes;
+        this.valueAssignments = valueAssignments;
+        this.cachedLongFormResultWithoutContext = null;
+    }
+
     /**
      * Adds a ValueAssignment to this Tuple.
      * @param column The attribute or column name for the value
@@ -88,15 +98,31 @@ public class Tuple implements Speakable {
     @JsonAnyGetter
     public Map<String, Object> getValueAssignments() {
         Map<String, Object> result = new HashMap<>();
-        for (String key : valueAssignments.keySet()) {
-            result.put(key, valueAssignments.get(key).getValue());
+        Map<String, Value> assignments = assignments();
+        for (String key : assignments.keySet()) {
+            result.put(key, assignments.get(key).getValue());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the attribute-Value pairs of this Tuple. Tuples without their own map of value assignments
+     * build the map from their attributes.
+     */
+    Map<String, Value> assignments() {
+        if (valueAssignments != null) {
+            return valueAssignments;
+        }
+        Map<String, Value> result = new HashMap<>();
+        for (String attribute : attributes) {
+            result.put(attribute, valueForAttribute(attribute));
         }
         return result;
     }
 
     @Override
     public String toString() {
-        return "(Tuple " + valueAssignments.toString() + ")";
+        return "(Tuple " + assignments().toString() + ")";
     }
 
     /**
@@ -107,15 +133,11 @@ public class Tuple implements Speakable {
     public boolean equals(Object obj) {
         if (obj instanceof Tuple) {
             Tuple other = (Tuple) obj;
-            if (valueAssignments.size() != other.valueAssignments.size()) {
+            if (assignments().size() != other.assignments().size()) {
                 return false;
             }
             for (String attribute : attributes) {
-                Value thisValue = valueForAttribute(attribute);
-                Value otherValue = other.valueForAttribute(attribute);
-                System.out.println("This: " + thisValue + "; Other: " + otherValue);
                 if (!valueForAttribute(attribute).equals(other.valueForAttribute(attribute))) {
-                    System.out.println("false");
                     return false;
                 }
             }
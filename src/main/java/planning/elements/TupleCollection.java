@@ -5,34 +5,38 @@ import com.fasterxml.jackson.annotation.JsonUnwrapped;
 import util.Sets;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 
 /**
- * Class representation of a collection of Tuples
+ * Class representation of a collection of Tuples. Tuples are stored column by column: every attribute
+ * has a dictionary of its distinct Values and an array of dictionary codes with one entry per tuple.
+ * Tuples handed out by this collection are read-only views on these columns.
  */
 public class TupleCollection implements Iterable<Tuple> {
     public static final String DEFAULT_CLASS_NAME = "Entries";
 
     List<String> attributes;
-    Map<Integer, Tuple> tuples;
-    Map<Integer, Map<Integer, Value>> values;
-    Map<Integer, Map<Integer, Value>> distinctValues;
-    Map<Integer, HashSet<Value>> valueSets;
+    Map<String, Integer> attributeIndices;
+    List<AttributeColumn> columns;
+    int tupleCount;
     String tuplesClassName;
+    SpeechCostModel costModel;
+    MatchIndex matchIndex;
+    int skippedRowCount;
+    private volatile AtomicReferenceArray<TupleView> views;
 
     /**
      * Constructs a TupleCollection with 0 Tuples
      */
     public TupleCollection(List<String> attributes, String tuplesClassName) {
         this.attributes = attributes;
-        this.tuples = new HashMap<>();
-        this.values = new HashMap<>();
-        this.distinctValues = new HashMap<>();
-        this.valueSets = new HashMap<>();
+        this.attributeIndices = new HashMap<>();
+        this.columns = new ArrayList<>();
+        this.tupleCount = 0;
         for (int a = 0; a < attributeCount(); a++) {
-            values.put(a, new HashMap<>());
-            distinctValues.put(a, new HashMap<>());
-            valueSets.put(a, new HashSet<>());
+            attributeIndices.put(attributes.get(a), a);
+            columns.add(new AttributeColumn());
         }
         this.tuplesClassName = tuplesClassName;
     }
@@ -50,8 +54,51 @@ public class TupleCollection implements Iterable<Tuple> {
         return list;
     }
 
+    /**
+     * Returns a read-only view of the Tuple inserted at index t. Every tuple has one view, which is created when it
+     * is first asked for, so that the speech text the view caches is rendered once.
+     */
     public Tuple getTuple(int t) {
-        return tuples.get(t);
+        if (t < 0 || t >= tupleCount) {
+            return null;
+        }
+        AtomicReferenceArray<TupleView> views = this.views;
+        if (views == null || views.length() <= t) {
+            views = growViews();
+        }
+        TupleView view = views.get(t);
+        if (view == null) {
+            views.compareAndSet(t, null, new TupleView(this, t));
+            view = views.get(t);
+        }
+        return view;
+    }
+
+    /**
+     * Makes room for the views of all tuples, keeping the views that were handed out before. Rows never change once
+     * they are added, so views stay valid when tuples are appended.
+     */
+    private synchronized AtomicReferenceArray<TupleView> growViews() {
+        AtomicReferenceArray<TupleView> views = this.views;
+        if (views == null || views.length() < tupleCount) {
+            AtomicReferenceArray<TupleView> grown = new AtomicReferenceArray<>(tupleCount);
+            for (int t = 0; views != null && t < views.length(); t++) {
+                grown.set(t, views.get(t));
+            }
+            this.views = views = grown;
+        }
+        return views;
+    }
+
+    /**
+     * Returns the index of a Tuple handed out by this TupleCollection, or -1 if the Tuple was not obtained from
+     * this TupleCollection
+     */
+    public int indexOfTuple(Tuple tuple) {
+        if (tuple instanceof TupleView && ((TupleView) tuple).source == this) {
+            return ((TupleView) tuple).index;
+        }
+        return -1;
     }
 
     public List<String> getAttributes() {
@@ -59,13 +106,21 @@ public class TupleCollection implements Iterable<Tuple> {
     }
 
     public int tupleCount() {
-        return tuples.size();
+        return tupleCount;
     }
 
     public String attributeForIndex(int i) {
         return attributes.get(i);
     }
 
+    /**
+     * Returns the index of the given attribute, or -1 if this TupleCollection has no such attribute
+     */
+    public int indexOfAttribute(String attribute) {
+        Integer a = attributeIndices.get(attribute);
+        return a == null ? -1 : a;
+    }
+
     public int attributeCount() {
         return attributes.size();
     }
@@ -76,41 +131,72 @@ public class TupleCollection implements Iterable<Tuple> {
      * @param tuple The Tuple to be added to this TupleCollection
      */
     public void addTuple(Tuple tuple) {
-        int tupleIndex = tuples.size();
-        tuples.put(tupleIndex, tuple);
+        Value[] row = new Value[attributeCount()];
+        for (int a = 0; a < attributeCount(); a++) {
+            row[a] = tuple.valueForAttribute(attributes.get(a));
+        }
+        addRow(row);
+    }
 
+    /**
+     * Inserts a tuple given by its Values in the order of the attributes, without building a Tuple for it. Also
+     * adds any new distinct values of the row to this TupleCollection's set of distinct values for each attribute.
+     * @param row One Value per attribute
+     */
+    public void addRow(Value[] row) {
+        if (row.length != attributeCount()) {
+            throw new IllegalArgumentException(String.format("Row has %d values for %d attributes", row.length,
+                    attributeCount()));
+        }
         for (int a = 0; a < attributeCount(); a++) {
-            Value tValue = tuple.valueForAttribute(attributes.get(a));
-            addValueForTuple(a, tupleIndex, tValue);
-            addDistinctValue(a, tValue);
+            Value tValue = row[a];
+            int code = addDistinctValue(a, tValue);
             if (tValue.isNumerical()) {
                 for (Value v : tValue.roundedValues()) {
                     addDistinctValue(a, v);
                 }
             }
+            columns.get(a).append(code);
         }
+        tupleCount++;
+        costModel = null;
+        matchIndex = null;
     }
 
     /**
-     * Adds a Value to the set of distinct Values that appear for attribute a in this TupleCollection. There is
-     * no change if Value v already appears as a distinct Value for attribute a. We also store the index
-     * at which this distinct Value is seen during the insertion of this Value.
-     * @param a The index of the attribute
-     * @param v The distinct Value to add to attribute a
+     * Appends all tuples of TupleCollection other, which must have the same attributes, e.g. to merge collections
+     * that were built from parts of the same data in parallel. The distinct Values of other are added to the
+     * distinct Values of this collection and the codes of its tuples are translated, so the result is the same as if
+     * the tuples of other had been added one by one.
      */
-    private void addDistinctValue(int a, Value v) {
-        if (!valueSets.get(a).contains(v)) {
-            int index = distinctValues.get(a).size();
-            distinctValues.get(a).put(index, v);
-            valueSets.get(a).add(v);
+    public void addAll(TupleCollection other) {
+        if (!attributes.equals(other.attributes)) {
+            throw new IllegalArgumentException(String.format("Cannot add tuples with attributes %s to %s",
+                    other.attributes, attributes));
+        }
+        for (int a = 0; a < attributeCount(); a++) {
+            AttributeColumn otherColumn = other.columns.get(a);
+            int[] codeMap = new int[otherColumn.distinctValueCount()];
+            for (int v = 0; v < codeMap.length; v++) {
+                codeMap[v] = addDistinctValue(a, otherColumn.distinctValue(v));
+            }
+            columns.get(a).appendAll(otherColumn, codeMap);
         }
+        tupleCount += other.tupleCount;
+        costModel = null;
+        matchIndex = null;
     }
 
     /**
-     * Stores Value v as the value for attribute a for the Tuple inserted at index t
+     * Adds a Value to the set of distinct Values that appear for attribute a in this TupleCollection. There is
+     * no change if Value v already appears as a distinct Value for attribute a. We also store the index
+     * at which this distinct Value is seen during the insertion of this Value.
+     * @param a The index of the attribute
+     * @param v The distinct Value to add to attribute a
+     * @return The index of Value v among the distinct Values of attribute a
      */
-    private void addValueForTuple(int a, int t, Value v) {
-        values.get(a).put(t, v);
+    private int addDistinctValue(int a, Value v) {
+        return columns.get(a).addDistinctValue(v);
     }
 
     /**
@@ -119,7 +205,7 @@ public class TupleCollection implements Iterable<Tuple> {
      * @return True is Values for attribute a are numerical
      */
     public boolean attributeIsCategorical(int a) {
-        return values.get(a).get(0).isCategorical();
+        return columns.get(a).categorical;
     }
 
     /**
@@ -141,14 +227,18 @@ public class TupleCollection implements Iterable<Tuple> {
      * @return The index of the distinct Value for attribute a
      */
     public int getIndexOfDistinctValue(int a, int t) {
-        Value v = getValueForAttributeAndTuple(a, t);
-        Map<Integer, Value> values = distinctValues.get(a);
-        for (int i = 0; i < values.size(); i++) {
-            if (v.equals(values.get(i))) {
-                return i;
-            }
-        }
-        return -1;
+        return columns.get(a).code(t);
+    }
+
+    /**
+     * Returns the index of Value v among the distinct Values of attribute a. The lookup uses the reverse
+     * index that is maintained whenever a distinct Value is added, so it takes constant time.
+     * @param a The attribute index
+     * @param v The Value to look up
+     * @return The index of the distinct Value, or -1 if v does not appear for attribute a
+     */
+    public int getIndexOfDistinctValue(int a, Value v) {
+        return columns.get(a).codeOf(v);
     }
 
     /**
@@ -192,7 +282,17 @@ public class TupleCollection implements Iterable<Tuple> {
      * @return A Value object
      */
     public Value getValueForAttributeAndTuple(int a, int t) {
-        return tuples.get(t).valueForAttribute(attributes.get(a));
+        return columns.get(a).value(t);
+    }
+
+    /**
+     * Returns the value of Tuple t for the numerical attribute at index a as a primitive double
+     * @param a The index of a numerical attribute
+     * @param t The index of the desired tuple
+     * @return The numerical value, as given by Value.linearProgrammingCoefficient()
+     */
+    public double getNumericalValueForAttributeAndTuple(int a, int t) {
+        return columns.get(a).numericalValue(t);
     }
 
     /**
@@ -202,7 +302,14 @@ public class TupleCollection implements Iterable<Tuple> {
      * @return A Value object
      */
     public Value getDistinctValue(int a, int v) {
-        return distinctValues.get(a).get(v);
+        return columns.get(a).distinctValue(v);
+    }
+
+    /**
+     * Returns the indices of the distinct Values of the numerical attribute a in ascending order of their values
+     */
+    public int[] distinctValueIndicesSortedByValue(int a) {
+        return columns.get(a).codesSortedByValue();
     }
 
     /**
@@ -211,7 +318,7 @@ public class TupleCollection implements Iterable<Tuple> {
      * @return The distinct Value count for attribute a
      */
     public int distinctValueCountForAttribute(int a) {
-        return distinctValues.get(a).size();
+        return columns.get(a).distinctValueCount();
     }
 
     /**
@@ -223,6 +330,30 @@ public class TupleCollection implements Iterable<Tuple> {
         return attributes.get(a).length();
     }
 
+    /**
+     * Returns the SpeechCostModel of this TupleCollection. The model is built on first use and rebuilt after
+     * Tuples have been added, so planners running concurrently on the same collection share one model.
+     */
+    @JsonIgnore
+    public synchronized SpeechCostModel getCostModel() {
+        if (costModel == null) {
+            costModel = new SpeechCostModel(this);
+        }
+        return costModel;
+    }
+
+    /**
+     * Returns the MatchIndex of this TupleCollection. Like the SpeechCostModel it is built on first use and
+     * rebuilt after Tuples have been added.
+     */
+    @JsonIgnore
+    public synchronized MatchIndex getMatchIndex() {
+        if (matchIndex == null) {
+            matchIndex = new MatchIndex(this);
+        }
+        return matchIndex;
+    }
+
     /**
      * Computes the set of candidate domain assignments for all attributes. Used in
      * the GreedyPlanner and HybridPlanner algorithms.
@@ -235,27 +366,13 @@ public class TupleCollection implements Iterable<Tuple> {
             }
             Set<ValueDomain> domains = new HashSet<>();
             if (attributeIsCategorical(a)) {
-                Set<Value> valueSet = new HashSet<>();
-                valueSet.addAll(distinctValues.get(a).values());
-
                 // add subsets of bounded cardinality
-                Set<Set<Value>> valueSubsets = Sets.subsetsOfSize(valueSet, mC);
-                for (Set<Value> subset : valueSubsets) {
-                    domains.add(new CategoricalValueDomain(attributeForIndex(a), new ArrayList<>(subset)));
+                for (List<Value> subset : Sets.combinations(columns.get(a).dictionary, mC)) {
+                    domains.add(new CategoricalValueDomain(attributeForIndex(a), subset));
                 }
             } else if (attributeIsNumerical(a)) {
                 // add intervals of bounded width
-                for (int b1 = 0; b1 < distinctValueCountForAttribute(a); b1++) {
-                    Value v1 = getDistinctValue(a, b1);
-
-                    for (int b2 = b1; b2 < distinctValueCountForAttribute(a); b2++) {
-                        Value v2 = getDistinctValue(a, b2);
-                        NumericalValueDomain candidateDomain = new NumericalValueDomain(attributeForIndex(a), v1, v2);
-                        if (candidateDomain.getWidth() <= mW) {
-                            domains.add(candidateDomain);
-                        }
-                    }
-                }
+                addNumericalCandidates(a, mW, domains);
             }
             attributeDomains.put(a, domains);
         }
@@ -263,6 +380,46 @@ public class TupleCollection implements Iterable<Tuple> {
         return attributeDomains;
     }
 
+    /**
+     * Adds all intervals [v1, v2] of distinct Values of the numerical attribute a with v2 / v1 <= mW to domains.
+     * For positive lower bounds the upper bounds of such intervals form a contiguous run in the sorted distinct
+     * Values, whose end only moves forward as the lower bound grows, so we can enumerate them with two pointers.
+     * Intervals with a lower bound of at most zero have no such structure and are checked pair by pair.
+     */
+    private void addNumericalCandidates(int a, double mW, Set<ValueDomain> domains) {
+        String attribute = attributeForIndex(a);
+        int[] sorted = columns.get(a).codesSortedByValue();
+        double[] sortedValues = new double[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            sortedValues[i] = getDistinctValue(a, sorted[i]).linearProgrammingCoefficient();
+        }
+
+        int end = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            Value lower = getDistinctValue(a, sorted[i]);
+            if (sortedValues[i] <= 0) {
+                for (int j = i; j < sorted.length; j++) {
+                    addIfNarrowEnough(new NumericalValueDomain(attribute, lower, getDistinctValue(a, sorted[j])), mW, domains);
+                }
+                continue;
+            }
+
+            end = Math.max(end, i);
+            while (end < sorted.length && sortedValues[end] / sortedValues[i] <= mW) {
+                end++;
+            }
+            for (int j = i; j < end; j++) {
+                addIfNarrowEnough(new NumericalValueDomain(attribute, lower, getDistinctValue(a, sorted[j])), mW, domains);
+            }
+        }
+    }
+
+    private void addIfNarrowEnough(NumericalValueDomain candidateDomain, double mW, Set<ValueDomain> domains) {
+        if (candidateDomain.getWidth() <= mW) {
+            domains.add(candidateDomain);
+        }
+    }
+
     public Set<ValueDomain> candidateAssignmentSet(int mC, double mW) {
         Set<ValueDomain> result = new HashSet<>();
         for (Set<ValueDomain> set : candidateAssignments(mC, mW).values()) {
@@ -321,26 +478,22 @@ public class TupleCollection implements Iterable<Tuple> {
         if (attributeIsCategorical(a) || mW <= 1.0) {
             counts = distinctValueCounts(a);
         } else if (attributeIsNumerical(a)) {
-            Value[] tupleValues = new Value[tupleCount()];
+            // numerical columns hold one type, so their values sort and scale like their Values
+            Value.ValueType type = getValueForAttributeAndTuple(a, 0).type();
+            double[] tupleValues = new double[tupleCount()];
             for (int t = 0; t < tupleCount(); t++) {
-                tupleValues[t] = getValueForAttributeAndTuple(a, t);
+                tupleValues[t] = getNumericalValueForAttributeAndTuple(a, t);
             }
-
-            Arrays.sort(tupleValues, new Comparator<Value>() {
-                @Override
-                public int compare(Value o1, Value o2) {
-                    return o1.compareTo(o2);
-                }
-            });
+            Arrays.sort(tupleValues);
 
             List<Integer> countList = new ArrayList<>();
 
-            Value startOfNextInterval = tupleValues[0].times(mW);
+            double startOfNextInterval = Value.scale(type, tupleValues[0], mW);
             int currentCount = 0;
             int i = 0;
             while (i < tupleValues.length) {
-                Value current = tupleValues[i];
-                if (current.compareTo(startOfNextInterval) < 0) {
+                double current = tupleValues[i];
+                if (Double.compare(current, startOfNextInterval) < 0) {
                     // increment count and keep interval the same
                     currentCount++;
                     i++;
@@ -349,7 +502,7 @@ public class TupleCollection implements Iterable<Tuple> {
                     if (currentCount > 0) {
                         countList.add(currentCount);
                     }
-                    startOfNextInterval = startOfNextInterval.times(mW);
+                    startOfNextInterval = Value.scale(type, startOfNextInterval, mW);
                     currentCount = 0;
                 }
             }
@@ -366,21 +519,11 @@ public class TupleCollection implements Iterable<Tuple> {
     }
 
     private int[] distinctValueCounts(int a) {
-        Map<Value, Integer> valueCounts = new HashMap<>();
+        AttributeColumn column = columns.get(a);
+        int[] counts = new int[column.distinctValueCount()];
         for (int t = 0; t < tupleCount(); t++) {
-            Value v = getValueForAttributeAndTuple(a, t);
-            valueCounts.putIfAbsent(v, 0);
-            valueCounts.put(v, valueCounts.get(v) + 1);
-        }
-
-        int[] counts = new int[valueCounts.size()];
-
-        int i = 0;
-        for (int c : valueCounts.values()) {
-            counts[i] = c;
-            i++;
+            counts[column.code(t)]++;
         }
-
         return counts;
     }
 
@@ -388,6 +531,18 @@ public class TupleCollection implements Iterable<Tuple> {
         return tuplesClassName != null ? tuplesClassName : DEFAULT_CLASS_NAME;
     }
 
+    /**
+     * Returns the number of rows of the source of this TupleCollection that were left out because they could not be
+     * read as Values, e.g. rows of a query result with a NULL cell
+     */
+    public int getSkippedRowCount() {
+        return skippedRowCount;
+    }
+
+    public void setSkippedRowCount(int skippedRowCount) {
+        this.skippedRowCount = skippedRowCount;
+    }
+
     @Override
     public Iterator<Tuple> iterator() {
         return new TupleCollectionIterator();
@@ -414,6 +569,6 @@ public class TupleCollection implements Iterable<Tuple> {
 
     @Override
     public String toString() {
-        return "TupleCollection " + tuples.toString();
+        return "TupleCollection " + getTuples().toString();
     }
 }
@@ -0,0 +1,199 @@
+package planning.elements;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A binary file format for TupleCollections, so that tables that are used again and again need not be queried and
+ * parsed again. A snapshot holds the attributes of a TupleCollection, the dictionary of distinct Values of every
+ * attribute, including the rounded values of numerical attributes, and the dictionary codes of all tuples.
+ *
+ * The file starts with a header that holds the attributes and dictionaries, followed by the columns of every
+ * attribute, each aligned to 8 bytes: the codes of all tuples as ints and, for numerical attributes, their values as
+ * doubles. A loaded TupleCollection only reads the header. Its columns are mapped into memory and read in place.
+ */
+public class TupleCollectionSnapshot {
+    private static final int MAGIC = 0x54435331; // "TCS1"
+    private static final int FORMAT_VERSION = 1;
+    private static final int PREAMBLE_BYTES = 16;
+
+    private static final byte INTEGER = 0;
+    private static final byte DOUBLE = 1;
+    private static final byte FLOAT = 2;
+    private static final byte STRING = 3;
+
+    private TupleCollectionSnapshot() {
+
+    }
+
+    /**
+     * Writes tupleCollection to file, replacing it if it exists
+     */
+    public static void write(TupleCollection tupleCollection, Path file) throws IOException {
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(headerBytes);
+        header.writeBoolean(tupleCollection.tuplesClassName != null);
+        if (tupleCollection.tuplesClassName != null) {
+            writeString(header, tupleCollection.tuplesClassName);
+        }
+        header.writeInt(tupleCollection.attributeCount());
+        header.writeInt(tupleCollection.tupleCount());
+        for (int a = 0; a < tupleCollection.attributeCount(); a++) {
+            AttributeColumn column = tupleCollection.columns.get(a);
+            writeString(header, tupleCollection.attributeForIndex(a));
+            header.writeBoolean(column.categorical);
+            header.writeInt(column.distinctValueCount());
+            for (int v = 0; v < column.distinctValueCount(); v++) {
+                writeValue(header, column.distinctValue(v));
+            }
+        }
+        header.flush();
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(headerBytes.size());
+            headerBytes.writeTo(out);
+            long position = PREAMBLE_BYTES + headerBytes.size();
+            position = pad(out, position);
+
+            int tupleCount = tupleCollection.tupleCount();
+            for (int a = 0; a < tupleCollection.attributeCount(); a++) {
+                AttributeColumn column = tupleCollection.columns.get(a);
+                for (int t = 0; t < tupleCount; t++) {
+                    out.writeInt(column.code(t));
+                }
+                position = pad(out, position + 4L * tupleCount);
+                if (!column.categorical) {
+                    for (int t = 0; t < tupleCount; t++) {
+                        out.writeDouble(column.numericalValue(t));
+                    }
+                    position += 8L * tupleCount;
+                }
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Loads the TupleCollection of a snapshot. The columns of the TupleCollection are mapped from file, which may
+     * not be changed while the TupleCollection is in use.
+     */
+    public static TupleCollection read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer preamble = channel.map(FileChannel.MapMode.READ_ONLY, 0, PREAMBLE_BYTES);
+            if (preamble.getInt() != MAGIC || preamble.getInt() != FORMAT_VERSION) {
+                throw new IOException(file + " is not a TupleCollection snapshot");
+            }
+            long headerLength = preamble.getLong();
+
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, PREAMBLE_BYTES, headerLength);
+            String tuplesClassName = header.get() != 0 ? readString(header) : null;
+            int attributeCount = header.getInt();
+            int tupleCount = header.getInt();
+            List<String> attributes = new ArrayList<>();
+            List<List<Value>> dictionaries = new ArrayList<>();
+            boolean[] categorical = new boolean[attributeCount];
+            for (int a = 0; a < attributeCount; a++) {
+                attributes.add(readString(header));
+                categorical[a] = header.get() != 0;
+                int distinctValueCount = header.getInt();
+                List<Value> dictionary = new ArrayList<>(distinctValueCount);
+                for (int v = 0; v < distinctValueCount; v++) {
+                    dictionary.add(readValue(header));
+                }
+                dictionaries.add(dictionary);
+            }
+
+            TupleCollection tupleCollection = new TupleCollection(attributes, tuplesClassName);
+            long position = align(PREAMBLE_BYTES + headerLength);
+            for (int a = 0; a < attributeCount; a++) {
+                IntBuffer codes = channel.map(FileChannel.MapMode.READ_ONLY, position, 4L * tupleCount).asIntBuffer();
+                position = align(position + 4L * tupleCount);
+                DoubleBuffer numericalValues = null;
+                if (!categorical[a]) {
+                    numericalValues = channel.map(FileChannel.MapMode.READ_ONLY, position, 8L * tupleCount)
+                            .asDoubleBuffer();
+                    position += 8L * tupleCount;
+                }
+                tupleCollection.columns.set(a, new AttributeColumn(dictionaries.get(a), categorical[a], tupleCount,
+                        codes, numericalValues));
+            }
+            if (position > channel.size()) {
+                throw new IOException(file + " is truncated");
+            }
+            tupleCollection.tupleCount = tupleCount;
+            return tupleCollection;
+        }
+    }
+
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    private static long pad(DataOutputStream out, long position) throws IOException {
+        long aligned = align(position);
+        for (long p = position; p < aligned; p++) {
+            out.writeByte(0);
+        }
+        return aligned;
+    }
+
+    private static void writeValue(DataOutputStream out, Value value) throws IOException {
+        switch (value.type()) {
+            case INTEGER:
+                out.writeByte(INTEGER);
+                out.writeInt(value.intValue());
+                break;
+            case DOUBLE:
+                out.writeByte(DOUBLE);
+                out.writeDouble(value.doubleValue());
+                break;
+            case FLOAT:
+                out.writeByte(FLOAT);
+                out.writeFloat((float) value.doubleValue());
+                break;
+            default:
+                out.writeByte(STRING);
+                writeString(out, value.stringValue());
+        }
+    }
+
+    private static Value readValue(ByteBuffer in) throws IOException {
+        byte type = in.get();
+        switch (type) {
+            case INTEGER:
+                return new Value(in.getInt());
+            case DOUBLE:
+                return new Value(in.getDouble());
+            case FLOAT:
+                return new Value(in.getFloat());
+            case STRING:
+                return new Value(readString(in));
+        }
+        throw new IOException("Unknown value type " + type);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
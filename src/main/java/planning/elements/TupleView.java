@@ -0,0 +1,36 @@
+package planning.elements;
+
+/**
+ * A read-only Tuple that is backed by the columns of a TupleCollection. TupleCollections do not keep
+ * the Tuples that were inserted into them, so rows are handed out as lightweight views that look up
+ * their Values in the columnar storage on demand.
+ */
+class TupleView extends Tuple {
+    final TupleCollection source;
+    final int index;
+
+    TupleView(TupleCollection source, int index) {
+        super(source.getAttributes(), null);
+        this.source = source;
+        this.index = index;
+    }
+
+    @Override
+    public Value valueForAttribute(String attribute) {
+        int a = source.indexOfAttribute(attribute);
+        if (a < 0) {
+            return null;
+        }
+        return source.getValueForAttributeAndTuple(a, index);
+    }
+
+    @Override
+    public void addValueAssignment(String column, Value value) {
+        throw new UnsupportedOperationException("Tuples of a TupleCollection are read-only");
+    }
+
+    @Override
+    public Tuple withValueAssignment(String column, Value value) {
+        throw new UnsupportedOperationException("Tuples of a TupleCollection are read-only");
+    }
+}
@@ -11,6 +11,9 @@ import java.util.List;
  * Represents a singular value. Provides various constructors for supported data types. This
  * class essentially wraps various Java types and defines useful methods for translating
  * data to speech. Values are immutable.
+ *
+ * Numbers are held as primitives and only boxed by getValue(), so that comparing, hashing, scaling and rounding
+ * Values does not allocate. Repeated Strings can share one Value through a ValuePool.
  */
 public class Value implements Speakable, Comparable<Value> {
     /**
@@ -24,8 +27,15 @@ public class Value implements Speakable, Comparable<Value> {
         STRING
     }
 
-    private Comparable value;
-    private ValueType type;
+    private final ValueType type;
+    /**
+     * The number of a numerical Value. Integers and Floats are exact as doubles, so one field holds all of them.
+     */
+    private final double number;
+    /**
+     * The String of a categorical Value, or null
+     */
+    private final String string;
     private String cachedLongFormResult;
 
     /**
@@ -33,8 +43,14 @@ public class Value implements Speakable, Comparable<Value> {
      * @param i The Integer that this Value will hold
      */
     public Value(Integer i) {
-        this.value = i;
-        this.type = ValueType.INTEGER;
+        this(i.intValue());
+    }
+
+    /**
+     * Constructs a Value that wraps an int, without boxing it
+     */
+    public Value(int i) {
+        this(ValueType.INTEGER, i, null);
     }
 
     /**
@@ -42,8 +58,14 @@ public class Value implements Speakable, Comparable<Value> {
      * @param d The Double that this Value will hold
      */
     public Value(Double d) {
-        this.value = d;
-        this.type= ValueType.DOUBLE;
+        this(d.doubleValue());
+    }
+
+    /**
+     * Constructs a Value that wraps a double, without boxing it
+     */
+    public Value(double d) {
+        this(ValueType.DOUBLE, d, null);
     }
 
     /**
@@ -51,8 +73,14 @@ public class Value implements Speakable, Comparable<Value> {
      * @param f The Float that this Value will hold
      */
     public Value(Float f) {
-        this.value = f;
-        this.type = ValueType.FLOAT;
+        this(f.floatValue());
+    }
+
+    /**
+     * Constructs a Value that wraps a float, without boxing it
+     */
+    public Value(float f) {
+        this(ValueType.FLOAT, f, null);
     }
 
     /**
@@ -60,8 +88,13 @@ public class Value implements Speakable, Comparable<Value> {
      * @param s The String that this Value will hold
      */
     public Value(String s) {
-        this.value = s;
-        this.type = ValueType.STRING;
+        this(ValueType.STRING, 0.0, s);
+    }
+
+    private Value(ValueType type, double number, String string) {
+        this.type = type;
+        this.number = number;
+        this.string = string;
     }
 
     /**
@@ -75,12 +108,12 @@ public class Value implements Speakable, Comparable<Value> {
      */
     public int compareTo(Value anotherValue) {
         if (type != anotherValue.type) {
-            System.out.println("Type1: " + type + "; Type2: " + anotherValue.type);
-            Integer thisValue = type.ordinal();
-            Integer thatValue = anotherValue.type.ordinal();
-            return thisValue.compareTo(thatValue);
+            return Integer.compare(type.ordinal(), anotherValue.type.ordinal());
+        }
+        if (type == ValueType.STRING) {
+            return string.compareTo(anotherValue.string);
         }
-        return value.compareTo(anotherValue.value);
+        return Double.compare(number, anotherValue.number);
     }
 
     @Override
@@ -88,9 +121,50 @@ public class Value implements Speakable, Comparable<Value> {
         return obj instanceof Value && compareTo((Value) obj) == 0;
     }
 
+    /**
+     * The hash code of the wrapped Java value, computed without boxing it
+     */
     @Override
     public int hashCode() {
-        return value.hashCode();
+        switch (type) {
+            case INTEGER:
+                return (int) number;
+            case DOUBLE:
+                return Double.hashCode(number);
+            case FLOAT:
+                return Float.hashCode((float) number);
+            default:
+                return string.hashCode();
+        }
+    }
+
+    /**
+     * Returns the ValueType of the wrapped value
+     */
+    public ValueType type() {
+        return type;
+    }
+
+    /**
+     * Returns the wrapped value of an INTEGER Value, or the wrapped number truncated to an int for other
+     * numerical Values
+     */
+    public int intValue() {
+        return (int) number;
+    }
+
+    /**
+     * Returns the wrapped number of a numerical Value, or 0 for a categorical Value
+     */
+    public double doubleValue() {
+        return number;
+    }
+
+    /**
+     * Returns the wrapped String of a categorical Value, or null for a numerical Value
+     */
+    public String stringValue() {
+        return string;
     }
 
     /**
@@ -122,55 +196,79 @@ public class Value implements Speakable, Comparable<Value> {
             }
             switch (type) {
                 case INTEGER:
-                    cachedLongFormResult = EnglishNumberToWords.convert(((Integer) value).longValue());
+                    cachedLongFormResult = EnglishNumberToWords.convert((long) number);
                     break;
                 case DOUBLE:
-                    Double v = (Double) value;
-                    long tenths = (long) ((v - v.intValue()) * 10);
-                    cachedLongFormResult = EnglishNumberToWords.convert(((Double) value).longValue()) + (tenths != 0 ? " point " + EnglishNumberToWords.convert(tenths) : "");
+                    long tenths = (long) ((number - (int) number) * 10);
+                    cachedLongFormResult = EnglishNumberToWords.convert((long) number) + (tenths != 0 ? " point " + EnglishNumberToWords.convert(tenths) : "");
                     break;
                 case FLOAT:
-                    Float f = (Float) value;
-                    long fTenths = (long) ((f - f.intValue()) * 10);
-                    cachedLongFormResult = EnglishNumberToWords.convert(((Float) value).longValue()) + (fTenths != 0 ? " point " + EnglishNumberToWords.convert(fTenths) : "");
+                    float f = (float) number;
+                    long fTenths = (long) ((f - (int) f) * 10);
+                    cachedLongFormResult = EnglishNumberToWords.convert((long) f) + (fTenths != 0 ? " point " + EnglishNumberToWords.convert(fTenths) : "");
                     break;
                 case STRING:
-                    cachedLongFormResult = (String) value;
+                    cachedLongFormResult = string;
                     break;
             }
             cachedLongFormResult = cachedLongFormResult.trim();
             return cachedLongFormResult;
         } else {
-            return value.toString();
+            return toString();
         }
     }
 
     /**
-     * Expands numeric types to their word values, then returns the length of the long-form number. For
-     * categorical types, it returns the length of the String value.
+     * Returns the length of the long-form number for numeric types, which is computed without building the words
+     * of the number. For categorical types, it returns the length of the String value.
      * @return The speech cost in characters for this Value
      */
     public int speechCost() {
+        switch (type) {
+            case INTEGER:
+                return EnglishNumberToWords.trimmedLength((long) number);
+            case DOUBLE:
+                if (number >= 0 && number < Integer.MAX_VALUE) {
+                    return numberSpeechCost((long) number, (long) ((number - (int) number) * 10));
+                }
+                break;
+            case FLOAT:
+                float f = (float) number;
+                if (f >= 0 && f < Integer.MAX_VALUE) {
+                    return numberSpeechCost((long) f, (long) ((f - (int) f) * 10));
+                }
+                break;
+        }
         return toSpeechText(true).length();
     }
 
-    public String toString() {
-        return value.toString();
+    /**
+     * Returns the length of the long form of a non-negative number with the given integral part and tenths,
+     * without building it
+     */
+    private static int numberSpeechCost(long integralPart, long tenths) {
+        if (tenths == 0) {
+            return EnglishNumberToWords.trimmedLength(integralPart);
+        }
+        return EnglishNumberToWords.convertedLength(integralPart) + " point ".length()
+                + EnglishNumberToWords.trimmedLength(tenths);
     }
 
-    public double linearProgrammingCoefficient() {
-        double coefficient = 0.0;
+    public String toString() {
         switch (type) {
-            case DOUBLE:
-                coefficient = ((Double) value);
-                break;
             case INTEGER:
-                coefficient = ((Integer) value).doubleValue();
-                break;
+                return Integer.toString((int) number);
+            case DOUBLE:
+                return Double.toString(number);
             case FLOAT:
-                coefficient = ((Float) value).doubleValue();
+                return Float.toString((float) number);
+            default:
+                return string;
         }
-        return coefficient;
+    }
+
+    public double linearProgrammingCoefficient() {
+        return number;
     }
 
     public List<Value> roundedValues() {
@@ -186,8 +284,8 @@ public class Value implements Speakable, Comparable<Value> {
         int mostSignificantUnits = (int) Math.pow(10, sigfigs);
         int lower = rawValue / mostSignificantUnits;
         int upper = lower + 1;
-        Integer roundedDown = mostSignificantUnits * lower;
-        Integer roundedUp = mostSignificantUnits * upper;
+        int roundedDown = mostSignificantUnits * lower;
+        int roundedUp = mostSignificantUnits * upper;
 
         // negate after calculating values
         if (negative) {
@@ -196,24 +294,12 @@ public class Value implements Speakable, Comparable<Value> {
         }
 
         List<Value> values = new ArrayList<>();
-        values.add(roundingHelper(roundedDown.doubleValue()));
-        values.add(roundingHelper(roundedUp.doubleValue()));
+        values.add(new Value(type, scale(type, roundedDown, 1.0), null));
+        values.add(new Value(type, scale(type, roundedUp, 1.0), null));
 
         return values;
     }
 
-    private Value roundingHelper(Double v) {
-        switch (type) {
-            case FLOAT:
-                return new Value(v.floatValue());
-            case DOUBLE:
-                return new Value(v);
-            case INTEGER:
-                return new Value(v.intValue());
-        }
-        return null;
-    }
-
     /**
      * Determines if this Value is classified as categorical. Categorical values are Strings. Any valid Value
      * instance that is not Categorical is classified as Numerical.
@@ -232,28 +318,45 @@ public class Value implements Speakable, Comparable<Value> {
     }
 
     /**
-     * For numerical Values, returns a new Value whose inner value the product of this Value's inner value and
-     * the multiplier is multiplied by a multiplier. For categorical Values, returns a new copy of this Value.
+     * For numerical Values, returns a new Value whose inner value is the product of this Value's inner value and
+     * the multiplier. Categorical Values are returned unchanged, since Values are immutable.
      * @param multiplier A double value to multiply by
      */
     public Value times(double multiplier) {
+        if (type == ValueType.STRING) {
+            return this;
+        }
+        return new Value(type, scale(type, number, multiplier), null);
+    }
+
+    /**
+     * Returns the number that times(multiplier) wraps for a numerical Value of the given type that wraps number,
+     * without creating the Value
+     */
+    static double scale(ValueType type, double number, double multiplier) {
         switch (type) {
             case FLOAT:
-                return new Value((float) multiplier * (Float) value);
-            case DOUBLE:
-                return new Value(multiplier * (Double) value);
+                return (float) multiplier * (float) number;
             case INTEGER:
-                return new Value((int) (multiplier * (Integer) value));
-            case STRING:
-                return new Value((String) value);
+                return (int) (multiplier * number);
+            default:
+                return multiplier * number;
         }
-        return null;
     }
 
     /**
      * Returns the inner Comparable value of this Value instance
      */
     public Comparable getValue() {
-        return value;
+        switch (type) {
+            case INTEGER:
+                return (int) number;
+            case DOUBLE:
+                return number;
+            case FLOAT:
+                return (float) number;
+            default:
+                return string;
+        }
     }
 }
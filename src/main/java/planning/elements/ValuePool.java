@@ -0,0 +1,66 @@
+package planning.elements;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Interns Values, so that the cells of a categorical column that hold the same String share one Value instead of
+ * creating a Value per cell, along with its cached speech text. Pools are safe to share between threads, e.g. the
+ * threads that parse the chunks of one CSV file.
+ *
+ * A pool holds at most maxSize Values. Once it is full, Values that are not in the pool are returned as new Values,
+ * so that columns with few repeated Strings, e.g. names, do not fill the pool.
+ */
+public class ValuePool {
+    public static final int DEFAULT_MAX_SIZE = 1 << 16;
+
+    private final ConcurrentMap<String, Value> strings = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Value, Value> numbers = new ConcurrentHashMap<>();
+    private final int maxSize;
+
+    public ValuePool() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public ValuePool(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the pooled Value of String s, without creating a Value if s is in the pool
+     */
+    public Value intern(String s) {
+        Value value = strings.get(s);
+        if (value != null) {
+            return value;
+        }
+        value = new Value(s);
+        if (size() >= maxSize) {
+            return value;
+        }
+        Value pooled = strings.putIfAbsent(s, value);
+        return pooled != null ? pooled : value;
+    }
+
+    /**
+     * Returns the pooled Value that equals Value v, which is added to the pool if there is none
+     */
+    public Value intern(Value v) {
+        if (v.isCategorical()) {
+            return intern(v.stringValue());
+        }
+        Value pooled = numbers.get(v);
+        if (pooled != null) {
+            return pooled;
+        }
+        if (size() >= maxSize) {
+            return v;
+        }
+        pooled = numbers.putIfAbsent(v, v);
+        return pooled != null ? pooled : v;
+    }
+
+    public int size() {
+        return strings.size() + numbers.size();
+    }
+}
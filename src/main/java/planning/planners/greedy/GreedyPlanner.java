@@ -1,99 +1,131 @@
 package planning.planners.greedy;
 
+import planning.IncumbentTracker;
+import planning.ParallelTasks;
 import planning.VoiceOutputPlan;
 import planning.config.Config;
 import planning.elements.*;
 import planning.planners.naive.NaiveVoicePlanner;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 public class GreedyPlanner extends NaiveVoicePlanner {
     private static final int P = 2;
 
+    private ExecutorService densitySweepExecutor;
+
     public GreedyPlanner() {
+        this(ParallelTasks.shared());
+    }
 
+    /**
+     * Constructs a GreedyPlanner that runs the density iterations of the FANTOM algorithm on the given executor.
+     * At most Config.getParallelism() density iterations are run at the same time.
+     */
+    public GreedyPlanner(ExecutorService densitySweepExecutor) {
+        this.densitySweepExecutor = densitySweepExecutor;
     }
 
     @Override
     public VoiceOutputPlan plan(TupleCollection tupleCollection, Config config) {
-        List<Context> candidateContexts = new ArrayList<>();
+        // nobody waits for the plans of density iterations
+        return plan(tupleCollection, config, new IncumbentTracker(), false);
+    }
+
+    /**
+     * Constructs a VoiceOutputPlan, offering the plan after each added Context to incumbents, as well as the plan
+     * that the result of each density iteration of the FANTOM algorithm would give if it beats the incumbent
+     */
+    @Override
+    public VoiceOutputPlan plan(TupleCollection tupleCollection, Config config, IncumbentTracker incumbents) {
+        return plan(tupleCollection, config, incumbents, true);
+    }
+
+    private VoiceOutputPlan plan(final TupleCollection tupleCollection, Config config,
+                                 final IncumbentTracker incumbents, boolean offerDensityResults) {
+        final List<Context> candidateContexts = new ArrayList<>();
         List<VoiceOutputPlan> plans = new ArrayList<>();
+        List<Integer> planCosts = new ArrayList<>();
 
         plans.add(minTimePlan(candidateContexts, tupleCollection));
+        planCosts.add(plans.get(0).getSpeechCost());
+        incumbents.offer(plans.get(0), planCosts.get(0), stage(0));
 
         // up to maximal number of useful contexts
         for (int i = 0; i < tupleCollection.tupleCount()/2; i++) {
-            Context bestContext = bestContext(candidateContexts, tupleCollection, config);
+            checkForCancellation();
+            Consumer<Set<ValueDomain>> densityResults = null;
+            if (offerDensityResults) {
+                final List<Context> chosenContexts = new ArrayList<>(candidateContexts);
+                final String densityStage = stage(chosenContexts.size() + 1) + ", density iteration";
+                densityResults = new Consumer<Set<ValueDomain>>() {
+                    @Override
+                    public void accept(Set<ValueDomain> domains) {
+                        List<Context> contexts = new ArrayList<>(chosenContexts);
+                        contexts.add(new Context(domains));
+                        // only plans that beat the incumbent are built
+                        int cost = minTimePlanCost(contexts, tupleCollection);
+                        if (cost < incumbents.getBestCost()) {
+                            incumbents.offer(minTimePlan(contexts, tupleCollection), cost, densityStage);
+                        }
+                    }
+                };
+            }
+
+            Context bestContext = bestContext(candidateContexts, tupleCollection, config, densityResults);
             if (bestContext == null) {
                 break;
             }
             candidateContexts.add(bestContext);
             VoiceOutputPlan bestNewPlan = minTimePlan(candidateContexts, tupleCollection);
             plans.add(bestNewPlan);
+            planCosts.add(minTimePlanCost(candidateContexts, tupleCollection));
+            incumbents.offer(bestNewPlan, planCosts.get(planCosts.size() - 1), stage(candidateContexts.size()));
         }
 
         int minCost = Integer.MAX_VALUE;
         VoiceOutputPlan minPlan = null;
 
-        for (VoiceOutputPlan plan : plans) {
-            if (plan == null) continue;
-            int planCost = plan.toSpeechText(true).length();
-            if (planCost < minCost) {
-                minCost = planCost;
-                minPlan = plan;
+        for (int p = 0; p < plans.size(); p++) {
+            if (planCosts.get(p) < minCost) {
+                minCost = planCosts.get(p);
+                minPlan = plans.get(p);
             }
         }
 
         return minPlan;
     }
 
+    private String stage(int contextCount) {
+        return String.format("%s: %d contexts", getPlannerIdentifier(), contextCount);
+    }
+
     /**
      * Uses a set of Context candidates to generate the fastest output buildPlan for a TupleCollection.
      * @param contextCandidates The set of Contexts to consider when constructing the fastest VoiceOutputPlan
      * @param tupleCollection The collection of tuples for which to buildPlan
      * @return The fastest VoiceOutputPlan that uses some subset of the context candidates
      */
-    private VoiceOutputPlan minTimePlan(List<Context> contextCandidates, TupleCollection tupleCollection) {
+    VoiceOutputPlan minTimePlan(List<Context> contextCandidates, TupleCollection tupleCollection) {
         if (contextCandidates.isEmpty()) {
             return new NaiveVoicePlanner().plan(tupleCollection, null);
         }
 
+        int[] favoredContexts = favoredContexts(contextCandidates, tupleCollection);
         List<Tuple> unmatchedTuples = new ArrayList<>();
-        List<Tuple> matchedTuples = new ArrayList<>();
-
-        for (Tuple t : tupleCollection) {
-            boolean matched = false;
-            Iterator<Context> contextIterator = contextCandidates.iterator();
-            while (contextIterator.hasNext() && !matched) {
-                Context c = contextIterator.next();
-                if (c.matches(t)) {
-                    matchedTuples.add(t);
-                    matched = true;
-                }
-            }
-            if (!matched) {
-                unmatchedTuples.add(t);
-            }
-        }
-
         Map<Context, Scope> scopes = new HashMap<>();
         for (Context c : contextCandidates) {
             scopes.put(c, new Scope(c, new ArrayList<>(), tupleCollection.getTuplesClassName()));
         }
-
-        // for each tuple, find the Context it most favors, i.e. the best
-        // savings, and add it to the Scope that contains that Context
-        for (Tuple t : matchedTuples) {
-            Context favoredContext = null;
-            int bestSavings = 0;
-            for (Context c : contextCandidates) {
-                int newSavings = t.toSpeechText(true).length() - t.toSpeechText(c, true).length();
-                if (newSavings > bestSavings) {
-                    favoredContext = c;
-                    bestSavings = newSavings;
-                }
+        for (int t = 0; t < tupleCollection.tupleCount(); t++) {
+            if (favoredContexts[t] < 0) {
+                unmatchedTuples.add(tupleCollection.getTuple(t));
+            } else {
+                scopes.get(contextCandidates.get(favoredContexts[t])).addMatchingTuple(tupleCollection.getTuple(t));
             }
-            scopes.get(favoredContext).addMatchingTuple(t);
         }
 
         VoiceOutputPlan plan = new VoiceOutputPlan();
@@ -111,27 +143,98 @@ public class GreedyPlanner extends NaiveVoicePlanner {
         return plan;
     }
 
-    private Context bestContext(List<Context> contextSet, TupleCollection tupleCollection, Config config) {
-        TupleCollection unmatchedTuples = new TupleCollection(tupleCollection.getAttributes());
-        for (Tuple t : tupleCollection) {
-            boolean unmatched = true;
-            for (Context c : contextSet) {
-                if (c.matches(t)) {
-                    unmatched = false;
-                    break;
-                }
+    /**
+     * Returns the speech cost of minTimePlan(contextCandidates, tupleCollection), computed with the SpeechCostModel
+     * of tupleCollection instead of building and rendering the plan. contextCandidates must not be empty.
+     */
+    int minTimePlanCost(List<Context> contextCandidates, TupleCollection tupleCollection) {
+        SpeechCostModel costModel = tupleCollection.getCostModel();
+        int contextCount = contextCandidates.size();
+        boolean[][] fixedAttributes = new boolean[contextCount + 1][];
+        for (int c = 0; c < contextCount; c++) {
+            fixedAttributes[c] = costModel.fixedAttributes(contextCandidates.get(c));
+        }
+        // the scope without a Context is last, and fixes no attributes
+        fixedAttributes[contextCount] = new boolean[tupleCollection.attributeCount()];
+
+        int[] favoredContexts = favoredContexts(contextCandidates, tupleCollection);
+        int[] scopeSizes = new int[contextCount + 1];
+        int cost = 0;
+        for (int t = 0; t < tupleCollection.tupleCount(); t++) {
+            int scope = favoredContexts[t] < 0 ? contextCount : favoredContexts[t];
+            scopeSizes[scope]++;
+            cost += costModel.tupleCost(t, fixedAttributes[scope]);
+        }
+
+        int scopeCount = 0;
+        for (int scope = 0; scope <= contextCount; scope++) {
+            if (scopeSizes[scope] == 0) {
+                continue;
+            }
+            scopeCount++;
+            cost += Scope.separatorCost(scopeSizes[scope]);
+            if (scope < contextCount) {
+                cost += costModel.contextCost(contextCandidates.get(scope));
             }
-            if (unmatched) {
-                unmatchedTuples.addTuple(t);
+        }
+        // scopes are separated by a space
+        return cost + Math.max(scopeCount - 1, 0);
+    }
+
+    /**
+     * For each tuple, finds the Context it most favors, i.e. the Context with the best savings among those that
+     * match it
+     * @return The index of the favored Context of every tuple, or -1 for tuples that no Context matches
+     */
+    private int[] favoredContexts(List<Context> contextCandidates, TupleCollection tupleCollection) {
+        MatchIndex matchIndex = tupleCollection.getMatchIndex();
+        SpeechCostModel costModel = tupleCollection.getCostModel();
+        int contextCount = contextCandidates.size();
+        BitSet[] contextMatches = new BitSet[contextCount];
+        boolean[][] fixedAttributes = new boolean[contextCount][];
+        BitSet matchedTuples = new BitSet(tupleCollection.tupleCount());
+        for (int c = 0; c < contextCount; c++) {
+            contextMatches[c] = matchIndex.matches(contextCandidates.get(c));
+            fixedAttributes[c] = costModel.fixedAttributes(contextCandidates.get(c));
+            matchedTuples.or(contextMatches[c]);
+        }
+
+        int[] favoredContexts = new int[tupleCollection.tupleCount()];
+        Arrays.fill(favoredContexts, -1);
+        for (int t = matchedTuples.nextSetBit(0); t >= 0; t = matchedTuples.nextSetBit(t + 1)) {
+            int bestSavings = 0;
+            for (int c = 0; c < contextCount; c++) {
+                if (contextMatches[c].get(t)) {
+                    int newSavings = costModel.savings(t, fixedAttributes[c]);
+                    if (newSavings > bestSavings) {
+                        favoredContexts[t] = c;
+                        bestSavings = newSavings;
+                    }
+                }
             }
         }
+        return favoredContexts;
+    }
+
+    private Context bestContext(List<Context> contextSet, TupleCollection tupleCollection, Config config,
+                                Consumer<Set<ValueDomain>> densityResults) {
+        MatchIndex matchIndex = tupleCollection.getMatchIndex();
+        BitSet matched = new BitSet(tupleCollection.tupleCount());
+        for (Context c : contextSet) {
+            matched.or(matchIndex.matches(c));
+        }
+
+        TupleCollection unmatchedTuples = new TupleCollection(tupleCollection.getAttributes());
+        for (int t = matched.nextClearBit(0); t < tupleCollection.tupleCount(); t = matched.nextClearBit(t + 1)) {
+            unmatchedTuples.addTuple(tupleCollection.getTuple(t));
+        }
 
         if (unmatchedTuples.tupleCount() == 0) {
             return null;
         }
 
         Set<ValueDomain> candidateDomains = unmatchedTuples.candidateAssignmentSet(config.getMaxAllowableCategoricalDomainSize(), config.getMaxAllowableNumericalDomainWidth());
-        Set<ValueDomain> bestDomains = executeFANTOM(unmatchedTuples, candidateDomains, config);
+        Set<ValueDomain> bestDomains = executeFANTOM(unmatchedTuples, candidateDomains, config, densityResults);
 
         if (bestDomains == null || bestDomains.isEmpty()) {
             return null;
@@ -140,31 +243,34 @@ public class GreedyPlanner extends NaiveVoicePlanner {
         return new Context(bestDomains);
     }
 
-    private Set<ValueDomain> executeFANTOM(TupleCollection tuples, Set<ValueDomain> domains, Config config) {
+    private Set<ValueDomain> executeFANTOM(TupleCollection tuples, Set<ValueDomain> domains, Config config,
+                                           Consumer<Set<ValueDomain>> densityResults) {
+        IncrementalGainEvaluator evaluator = new IncrementalGainEvaluator(tuples);
+
         int M = 0;
         for (ValueDomain d : domains) {
-            Set<ValueDomain> singleDomain = new HashSet<>();
-            singleDomain.add(d);
-            M = Math.max(M, timeGainFromValueDomains(tuples, singleDomain));
+            M = Math.max(M, evaluator.timeGain(d));
         }
 
         // generate multiple solutions by running the Iterated Greedy Algorithm on multiple density values
         double gamma = (2 * P * M) / (double) ((P + 1) * (2 * P + 1));
-        Set<Set<ValueDomain>> iteratedGreedyResults = new HashSet<>();
 
         // iterate through densities: { gamma, gamma * (1+epsilon)^1, gamma * (1+epsilon)^2, ..., gamma * n }
         int n = domains.size();
+        List<Double> densities = new ArrayList<>();
         double currentDensity = gamma;
         while (currentDensity < gamma * n) {
-            Set<ValueDomain> S = iteratedGreedyWithDensityThreshold(tuples, currentDensity, domains, config);
-            iteratedGreedyResults.add(S);
+            densities.add(currentDensity);
             currentDensity = currentDensity * (1.0 + config.getEpsilon());
         }
+        List<Set<ValueDomain>> iteratedGreedyResults = sweepDensities(evaluator, densities, domains, config, densityResults);
 
+        // results are compared in order of density so that the choice does not depend on thread scheduling
         Set<ValueDomain> result = null;
         int bestSavings = 0;
         for (Set<ValueDomain> domainSet : iteratedGreedyResults) {
-            int savings = timeGainFromValueDomains(tuples, domainSet);
+            if (domainSet == null) continue;
+            int savings = evaluator.timeGain(domainSet);
             if (savings >= bestSavings) {
                 result = domainSet;
                 bestSavings = savings;
@@ -174,6 +280,34 @@ public class GreedyPlanner extends NaiveVoicePlanner {
         return result;
     }
 
+    /**
+     * Runs the Iterated Greedy Algorithm for each of the given densities. The runs are independent of each other,
+     * so they are split into at most Config.getParallelism() tasks that run on the density sweep executor. Each
+     * non-empty result is also passed to densityResults as soon as it is known, possibly from several threads.
+     * @return The result for each density, in the order of the given densities
+     */
+    private List<Set<ValueDomain>> sweepDensities(final IncrementalGainEvaluator evaluator, final List<Double> densities,
+                                                  final Set<ValueDomain> domains, final Config config,
+                                                  final Consumer<Set<ValueDomain>> densityResults) {
+        final List<Set<ValueDomain>> results = new ArrayList<>(Collections.<Set<ValueDomain>>nCopies(densities.size(), null));
+        int taskCount = Math.min(config.getParallelism(), densities.size());
+        ParallelTasks.forEachIndex(densitySweepExecutor, densities.size(), taskCount, new IntConsumer() {
+            @Override
+            public void accept(int i) {
+                Set<ValueDomain> result = iteratedGreedyWithDensityThreshold(evaluator, densities.get(i), domains, config);
+                results.set(i, result);
+                publishDensityResult(result, densityResults);
+            }
+        }, "Density iteration of the FANTOM algorithm");
+        return results;
+    }
+
+    private void publishDensityResult(Set<ValueDomain> result, Consumer<Set<ValueDomain>> densityResults) {
+        if (densityResults != null && result != null && !result.isEmpty()) {
+            densityResults.accept(result);
+        }
+    }
+
     /**
      * Runs the Greedy With Density Theshold Algorithm multiple times to produce multiple solutions for a ValueDomain
      * set. Returns the set of all produced solutions with the maximum savings
@@ -183,12 +317,16 @@ public class GreedyPlanner extends NaiveVoicePlanner {
      * @return A set of ValueDomains satisfying the independences of attributes and the context size constraint
      */
     public Set<ValueDomain> iteratedGreedyWithDensityThreshold(TupleCollection tuples, double density, Set<ValueDomain> domains, Config config) {
+        return iteratedGreedyWithDensityThreshold(new IncrementalGainEvaluator(tuples), density, domains, config);
+    }
+
+    private Set<ValueDomain> iteratedGreedyWithDensityThreshold(IncrementalGainEvaluator evaluator, double density, Set<ValueDomain> domains, Config config) {
         Set<ValueDomain> remainingDomains = new HashSet<>(domains);
         Set<Set<ValueDomain>> U = new HashSet<>();
 
         for (int i = 0; i <= P + 1; i++) {
-            Set<ValueDomain> S = greedyWithDensityThreshold(tuples, density, remainingDomains, config);
-            Set<ValueDomain> SPrime = unconstrainedSubmodularMaximization(tuples, S);
+            Set<ValueDomain> S = greedyWithDensityThreshold(evaluator, density, remainingDomains, config);
+            Set<ValueDomain> SPrime = unconstrainedSubmodularMaximization(evaluator, S);
             U.add(S);
             U.add(SPrime);
             remainingDomains.removeAll(S);
@@ -197,7 +335,7 @@ public class GreedyPlanner extends NaiveVoicePlanner {
         int maxSavings = 0;
         Set<ValueDomain> maxSet = null;
         for (Set<ValueDomain> S : U) {
-            int newSavings = timeGainFromValueDomains(tuples, S);
+            int newSavings = evaluator.timeGain(S);
             if (newSavings >= maxSavings) {
                 maxSavings = newSavings;
                 maxSet = S;
@@ -216,26 +354,27 @@ public class GreedyPlanner extends NaiveVoicePlanner {
      * @return A set of domains with at most one ValueDomain corresponding to each attribute and at most mS domains
      */
     public Set<ValueDomain> greedyWithDensityThreshold(TupleCollection tuples, double density, Set<ValueDomain> domains, Config config) {
-        Set<ValueDomain> S = new HashSet<>();
-        Set<String> SAttributes = new HashSet<>();
-        int savingsFromS = timeGainFromValueDomains(tuples, S);
+        return greedyWithDensityThreshold(new IncrementalGainEvaluator(tuples), density, domains, config);
+    }
+
+    private Set<ValueDomain> greedyWithDensityThreshold(IncrementalGainEvaluator evaluator, double density, Set<ValueDomain> domains, Config config) {
+        IncrementalGainEvaluator.Selection S = evaluator.newSelection();
 
         // greedy selection process
         for (int i = 0; i < config.getMaxAllowableContextSize(); i++) {
+            checkForCancellation();
             ValueDomain selection = null;
             int bestMarginalSavings = 0;
 
             for (ValueDomain d : domains) {
-                if (SAttributes.contains(d.getAttribute())) {
+                if (S.fixesAttribute(d.getAttribute())) {
                     // ensures that p-system constraints are satisfied
                     continue;
                 }
 
-                Set<ValueDomain> SWithElement = new HashSet<>(S);
-                SWithElement.add(d);
-                int marginalSavings = timeGainFromValueDomains(tuples, SWithElement) - savingsFromS;
+                int marginalSavings = S.marginalGain(d);
 
-                if (meetsDensityThreshold(marginalSavings, SWithElement.size(), density, config) && marginalSavings > bestMarginalSavings) {
+                if (meetsDensityThreshold(marginalSavings, S.size() + 1, density, config) && marginalSavings > bestMarginalSavings) {
                     bestMarginalSavings = marginalSavings;
                     selection = d;
                 }
@@ -247,85 +386,55 @@ public class GreedyPlanner extends NaiveVoicePlanner {
             }
 
             S.add(selection);
-            SAttributes.add(selection.getAttribute());
-            savingsFromS += bestMarginalSavings;
         }
 
         // calculate best single domain savings
         Set<ValueDomain> bestSingleDomain = null;
         int bestSingleDomainSavings = 0;
         for (ValueDomain d : domains) {
-            Set<ValueDomain> singleDomainSet = new HashSet<>();
-            singleDomainSet.add(d);
-            int newSavings = timeGainFromValueDomains(tuples, singleDomainSet);
+            int newSavings = evaluator.timeGain(d);
 
             if (newSavings >= bestSingleDomainSavings) {
                 bestSingleDomainSavings = newSavings;
-                bestSingleDomain = singleDomainSet;
+                bestSingleDomain = new HashSet<>();
+                bestSingleDomain.add(d);
             }
         }
 
-        if (bestSingleDomain != null && bestSingleDomainSavings > savingsFromS) {
+        if (bestSingleDomain != null && bestSingleDomainSavings > S.timeGain()) {
             return bestSingleDomain;
         }
 
-        return S;
+        return S.getDomains();
     }
 
     /**
      * Runs an unconstrained submodular maximization algorithm on the given ValueDomain sets.
-     * @param tuples The tuples to be used to calculate the time savings for domain sets
+     * @param evaluator Computes the time savings for domain sets of the tuples to output
      * @param domains A domain set satisfying the constraint that no two ValueDomains fix a domain for the same attribute
      * @return A ValueDomain set satisfying matroid and knapsack contraints
      */
-    private Set<ValueDomain> unconstrainedSubmodularMaximization(TupleCollection tuples, Set<ValueDomain> domains) {
-        Set<ValueDomain> X = new HashSet<>();
+    private Set<ValueDomain> unconstrainedSubmodularMaximization(IncrementalGainEvaluator evaluator, Set<ValueDomain> domains) {
+        IncrementalGainEvaluator.Selection X = evaluator.newSelection();
         Set<ValueDomain> Y = new HashSet<>(domains);
+        int YSavings = evaluator.timeGain(Y);
 
         for (ValueDomain domain : domains) {
-            int XSavings = timeGainFromValueDomains(tuples, X);
-            int YSavings = timeGainFromValueDomains(tuples, Y);
-
-            Set<ValueDomain> XWithElement = new HashSet<>(X);
-            XWithElement.add(domain);
-            int XWithElementSavings = timeGainFromValueDomains(tuples, XWithElement);
-
             Set<ValueDomain> YWithoutElement = new HashSet<>(Y);
             YWithoutElement.remove(domain);
-            int YWithoutElementSavings = timeGainFromValueDomains(tuples, YWithoutElement);
+            int YWithoutElementSavings = evaluator.timeGain(YWithoutElement);
 
-            int a = XWithElementSavings - XSavings;
+            int a = X.marginalGain(domain);
             int b = YWithoutElementSavings - YSavings;
 
             if (a >= b) {
-                X = XWithElement;
-                Y = YWithoutElement;
-            } else {
-                Y = YWithoutElement;
+                X.add(domain);
             }
+            Y = YWithoutElement;
+            YSavings = YWithoutElementSavings;
         }
 
-        return X;
-    }
-
-    /**
-     * Returns the time gained from using the given ValueDomain set with the collection of Tuples. This is the
-     * submodular utility function for our greedy algorithm.
-     */
-    private int timeGainFromValueDomains(TupleCollection tuples, Set<ValueDomain> domains) {
-        if (domains.isEmpty()) {
-            return 0;
-        }
-
-        Context c = new Context(domains);
-        int savings = 0;
-        for (Tuple t : tuples) {
-            savings += t.toSpeechText(true).length() - t.toSpeechText(c, true).length();
-        }
-
-        int contextCost = c.toSpeechText(true).length();
-
-        return savings - contextCost;
+        return X.getDomains();
     }
 
     /**
@@ -0,0 +1,180 @@
+package planning.planners.greedy;
+
+import planning.elements.MatchIndex;
+import planning.elements.SpeechCostModel;
+import planning.elements.TupleCollection;
+import planning.elements.ValueDomain;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Evaluates the submodular utility function of the FANTOM algorithm, i.e. the time gained from using a set of
+ * ValueDomains as a Context, without building any speech text. The MatchIndex of the TupleCollection gives the
+ * set of matching tuples of every candidate ValueDomain as a BitSet, and its SpeechCostModel gives the number
+ * of characters that a context fixing an attribute saves for each tuple. Since contexts never fix the primary
+ * key, which is output first, the savings of a tuple are the sum of the savings of all attributes that the
+ * context fixes.
+ *
+ * Precomputed data is shared and thread-safe, while a Selection holds the state of one growing ValueDomain
+ * set and must only be used by one thread.
+ */
+class IncrementalGainEvaluator {
+    private static final int AND_SEPARATOR_COST = " and ".length();
+    private static final int LIST_SEPARATOR_COST = ", ".length();
+    private static final int LAST_LIST_SEPARATOR_COST = ", and ".length();
+
+    final TupleCollection tuples;
+    final SpeechCostModel costModel;
+    final int tupleCount;
+    final MatchIndex matchIndex;
+    final Map<ValueDomain, Integer> domainCosts;
+    final Map<ValueDomain, Integer> singleDomainGains;
+
+    IncrementalGainEvaluator(TupleCollection tuples) {
+        this.tuples = tuples;
+        this.costModel = tuples.getCostModel();
+        this.tupleCount = tuples.tupleCount();
+        this.matchIndex = tuples.getMatchIndex();
+        this.domainCosts = new ConcurrentHashMap<>();
+        this.singleDomainGains = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Returns the set of tuples that match ValueDomain d. The result is cached and must not be modified.
+     */
+    BitSet matches(ValueDomain d) {
+        return matchIndex.matches(d);
+    }
+
+    /**
+     * Returns the cost of speaking ValueDomain d as part of a Context
+     */
+    int domainCost(ValueDomain d) {
+        Integer cost = domainCosts.get(d);
+        if (cost == null) {
+            cost = d.toSpeechText(true).length();
+            domainCosts.put(d, cost);
+        }
+        return cost;
+    }
+
+    /**
+     * Returns the time gained from using the given ValueDomains as a Context for all tuples. This equals the
+     * characters saved for all matching tuples minus the length of the Context.
+     */
+    int timeGain(Collection<ValueDomain> domains) {
+        Selection selection = newSelection();
+        for (ValueDomain d : domains) {
+            selection.add(d);
+        }
+        return selection.timeGain();
+    }
+
+    /**
+     * Returns the time gained from using ValueDomain d as the only domain of a Context. The result is cached,
+     * since the greedy algorithm compares single domains for every density threshold.
+     */
+    int timeGain(ValueDomain d) {
+        Integer gain = singleDomainGains.get(d);
+        if (gain == null) {
+            gain = newSelection().marginalGain(d);
+            singleDomainGains.put(d, gain);
+        }
+        return gain;
+    }
+
+    /**
+     * Returns a Selection with no ValueDomains
+     */
+    Selection newSelection() {
+        return new Selection();
+    }
+
+    /**
+     * Calculates the length of a Context consisting of domains of the given total length, taking into account
+     * the separators that Context.toSpeechText() puts between domains.
+     */
+    static int contextCost(int domainCount, int totalDomainCost) {
+        if (domainCount <= 1) {
+            return totalDomainCost;
+        } else if (domainCount == 2) {
+            return totalDomainCost + AND_SEPARATOR_COST;
+        }
+        return totalDomainCost + (domainCount - 2) * LIST_SEPARATOR_COST + LAST_LIST_SEPARATOR_COST;
+    }
+
+    /**
+     * A set S of ValueDomains fixing distinct attributes, together with the tuples that match all of them and
+     * the savings of each of these tuples. Allows computing the marginal gain of adding a ValueDomain to S in
+     * time linear in the number of tuples matching that ValueDomain.
+     */
+    class Selection {
+        final Set<ValueDomain> domains;
+        final Set<String> attributes;
+        final BitSet matches;
+        final int[] tupleSavings;
+        int totalDomainCost;
+        int timeGain;
+
+        Selection() {
+            this.domains = new HashSet<>();
+            this.attributes = new HashSet<>();
+            this.matches = new BitSet(tupleCount);
+            this.matches.set(0, tupleCount);
+            this.tupleSavings = new int[tupleCount];
+            this.totalDomainCost = 0;
+            this.timeGain = 0;
+        }
+
+        boolean fixesAttribute(String attribute) {
+            return attributes.contains(attribute);
+        }
+
+        int size() {
+            return domains.size();
+        }
+
+        int timeGain() {
+            return timeGain;
+        }
+
+        /**
+         * Returns the time gain of S with ValueDomain d minus the time gain of S
+         */
+        int marginalGain(ValueDomain d) {
+            return gainWith(d) - timeGain;
+        }
+
+        private int gainWith(ValueDomain d) {
+            int a = tuples.indexOfAttribute(d.getAttribute());
+            BitSet dMatches = matches(d);
+            int savings = 0;
+            for (int t = dMatches.nextSetBit(0); t >= 0; t = dMatches.nextSetBit(t + 1)) {
+                if (matches.get(t)) {
+                    savings += tupleSavings[t] + costModel.attributeSavings(t, a);
+                }
+            }
+            return savings - contextCost(domains.size() + 1, totalDomainCost + domainCost(d));
+        }
+
+        /**
+         * Adds ValueDomain d to S. d must not fix an attribute that S already fixes.
+         */
+        void add(ValueDomain d) {
+            timeGain = gainWith(d);
+            int a = tuples.indexOfAttribute(d.getAttribute());
+            matches.and(matches(d));
+            for (int t = matches.nextSetBit(0); t >= 0; t = matches.nextSetBit(t + 1)) {
+                tupleSavings[t] += costModel.attributeSavings(t, a);
+            }
+            domains.add(d);
+            attributes.add(d.getAttribute());
+            totalDomainCost += domainCost(d);
+        }
+
+        Set<ValueDomain> getDomains() {
+            return domains;
+        }
+    }
+}
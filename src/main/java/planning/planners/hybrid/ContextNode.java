@@ -2,15 +2,29 @@ package planning.planners.hybrid;
 
 import planning.elements.Context;
 
+import java.util.BitSet;
+
+/**
+ * A candidate Context during context generation, together with the set of Tuples it matches and the index of
+ * the last attribute it fixes, which is the attribute its children are extended after.
+ */
 class ContextNode {
     Context context;
     Integer matchCount;
+    BitSet matches;
+    int lastAttribute;
 
     public ContextNode(Context context, int matchCount) {
         this.context = context;
         this.matchCount = matchCount;
     }
 
+    public ContextNode(Context context, BitSet matches, int lastAttribute) {
+        this(context, matches.cardinality());
+        this.matches = matches;
+        this.lastAttribute = lastAttribute;
+    }
+
     public Integer getMatchCount() {
         return matchCount;
     }
@@ -18,4 +32,12 @@ class ContextNode {
     public Context getContext() {
         return context;
     }
-}
\ No newline at end of file
+
+    public BitSet getMatches() {
+        return matches;
+    }
+
+    public int getLastAttribute() {
+        return lastAttribute;
+    }
+}
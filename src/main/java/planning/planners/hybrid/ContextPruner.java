@@ -1,17 +1,29 @@
 package planning.planners.hybrid;
 
+import planning.ParallelTasks;
 import planning.elements.Context;
 import planning.elements.TupleCollection;
 
-import java.util.Collection;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.function.IntConsumer;
 
 /**
  * Represents the pruning stage of the Apriori Algorithm applied to Context generation. After each Context
  * generation stage, we apply a pruning method to the generated Contexts and filter Contexts according
  * to some criteria related to the TupleCollection they were generated for. Subclasses should implement
  * the abstract method prune() which represents this criteria.
+ *
+ * Candidates are scored on an ExecutorService, using up to the number of available processors when pruning
+ * through prune(), and up to Config.getParallelism() tasks when pruning during context generation.
  */
 public abstract class ContextPruner {
+    /**
+     * The minimum number of candidates that is worth handing to a separate task
+     */
+    static final int MIN_CANDIDATES_PER_TASK = 64;
+
+    private ExecutorService scoringExecutor = ParallelTasks.shared();
 
     /**
      * Performs the pruning stage of the Apriori Algorithm in which we select only the top Contexts from
@@ -24,5 +36,54 @@ public abstract class ContextPruner {
      */
     public abstract Collection<Context> prune(Collection<Context> candidateContexts, TupleCollection tupleCollection);
 
+    /**
+     * Performs the pruning stage on ContextNodes whose sets of matching Tuples are already known, as they are
+     * during Apriori context generation. Subclasses that rank Contexts by the Tuples they match should override
+     * this to use the known match sets. By default, this delegates to prune().
+     *
+     * @param candidateNodes The ContextNodes from which to filter out only the top
+     * @param tupleCollection The collection of Tuples from which to compare quality of Contexts
+     * @param parallelism The maximum number of tasks to score candidates with
+     * @return The ContextNodes of the Contexts that prune() keeps
+     */
+    List<ContextNode> pruneNodes(List<ContextNode> candidateNodes, TupleCollection tupleCollection, int parallelism) {
+        Map<Context, ContextNode> nodes = new IdentityHashMap<>();
+        List<Context> candidateContexts = new ArrayList<>();
+        for (ContextNode node : candidateNodes) {
+            nodes.put(node.getContext(), node);
+            candidateContexts.add(node.getContext());
+        }
+
+        List<ContextNode> result = new ArrayList<>();
+        for (Context c : prune(candidateContexts, tupleCollection)) {
+            result.add(nodes.get(c));
+        }
+        return result;
+    }
+
     public abstract String getName();
+
+    /**
+     * Sets the ExecutorService on which candidates are scored. Defaults to ParallelTasks.shared().
+     */
+    public void setScoringExecutor(ExecutorService scoringExecutor) {
+        this.scoringExecutor = scoringExecutor;
+    }
+
+    /**
+     * Runs action for every index from 0 to n - 1 on at most parallelism tasks on the scoring executor, with at
+     * least MIN_CANDIDATES_PER_TASK indices per task
+     * @see ParallelTasks#forEachIndex
+     */
+    void forEachInParallel(int n, int parallelism, IntConsumer action) {
+        int taskCount = Math.min(parallelism, (n + MIN_CANDIDATES_PER_TASK - 1) / MIN_CANDIDATES_PER_TASK);
+        ParallelTasks.forEachIndex(scoringExecutor, n, taskCount, action, "Scoring candidate contexts");
+    }
+
+    /**
+     * The number of tasks to score candidates with when pruning through prune()
+     */
+    static int defaultParallelism() {
+        return Runtime.getRuntime().availableProcessors();
+    }
 }
@@ -5,55 +5,88 @@ import ilog.concert.IloIntVar;
 import ilog.concert.IloLinearIntExpr;
 import ilog.concert.IloLinearNumExpr;
 import ilog.cplex.IloCplex;
+import planning.IncumbentTracker;
 import planning.VoiceOutputPlan;
 import planning.config.Config;
 import planning.elements.*;
+import planning.planners.linear.CplexPool;
+import planning.planners.linear.PlannerInfoCallback;
 import planning.planners.naive.NaiveVoicePlanner;
 
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
 
 /**
  */
 public class HybridPlanner extends NaiveVoicePlanner {
     private ContextPruner contextPruner;
+    private CplexPool cplexPool = CplexPool.shared();
 
     public HybridPlanner(ContextPruner contextPruner) {
         this.contextPruner = contextPruner;
     }
 
+    /**
+     * Sets the pool to borrow IloCplex instances from, the shared pool by default
+     */
+    public void setCplexPool(CplexPool cplexPool) {
+        this.cplexPool = cplexPool;
+    }
+
     @Override
     public VoiceOutputPlan plan(TupleCollection tupleCollection, Config config) {
-        ArrayList<Context> contextCandidates = generateContextCandidates(tupleCollection, config);
+        return plan(tupleCollection, config, new IncumbentTracker());
+    }
+
+    /**
+     * Constructs a VoiceOutputPlan from the generated Context candidates with CPLEX, offering every improving CPLEX
+     * incumbent to incumbents
+     */
+    @Override
+    public VoiceOutputPlan plan(final TupleCollection tupleCollection, Config config, final IncumbentTracker incumbents) {
+        long startTime = System.currentTimeMillis();
+        List<ContextNode> contextNodes = generateContextCandidates(tupleCollection, config);
+        final List<Context> contextCandidates = new ArrayList<>();
+        for (ContextNode node : contextNodes) {
+            contextCandidates.add(node.getContext());
+        }
         VoiceOutputPlan plan = null;
 
+        IloCplex cplex = null;
+        boolean failed = false;
         try {
-            IloCplex cplex = new IloCplex();
+            // wait for a solver no longer than the time that is left
+            long remainingMillis = config.getTimeout() * 1000L - (System.currentTimeMillis() - startTime);
+            cplex = cplexPool.acquire(Math.max(0, remainingMillis), TimeUnit.MILLISECONDS);
+            if (cplex == null) {
+                return null;
+            }
 
-            int contextCount = contextCandidates.size();
+            final int contextCount = contextCandidates.size();
+            SpeechCostModel costModel = tupleCollection.getCostModel();
 
             IloLinearNumExpr totalCost = cplex.linearNumExpr();
-            IloIntVar[][] w = new IloIntVar[contextCount][];
-            IloIntVar[] g = cplex.intVarArray(contextCount, 0, 1);
+            final IloIntVar[][] w = new IloIntVar[contextCount][];
+            final IloIntVar[] g = cplex.intVarArray(contextCount, 0, 1);
 
             for (int c = 0; c < contextCount; c++) {
                 w[c] = cplex.intVarArray(tupleCollection.tupleCount(), 0, 1);
             }
 
+            boolean[][] fixedAttributes = new boolean[contextCount][];
+            BitSet[] contextMatches = new BitSet[contextCount];
             for (int c = 0; c < contextCount; c++) {
                 Context context = contextCandidates.get(c);
-                double contextCost = Scope.contextOverheadCost(tupleCollection.getTuplesClassName())
-                        + context.toSpeechText(true).length();
-                totalCost.addTerm(contextCost, g[c]);
+                totalCost.addTerm(costModel.contextCost(context), g[c]);
+                fixedAttributes[c] = costModel.fixedAttributes(context);
+                contextMatches[c] = contextNodes.get(c).getMatches();
             }
 
             for (int t = 0; t < tupleCollection.tupleCount(); t++) {
-                Tuple tuple = tupleCollection.getTuple(t);
-                int tWithoutContext = tuple.toSpeechText(true).length();
                 for (int c = 0; c < contextCount; c++) {
-                    Context context = contextCandidates.get(c);
-                    if (context.matches(tuple)) {
-                        int tWithContext = tuple.toSpeechText(context, true).length();
-                        int savings = tWithoutContext - tWithContext;
+                    if (contextMatches[c].get(t)) {
+                        int savings = costModel.savings(t, fixedAttributes[c]);
                         totalCost.addTerm(-savings, w[c][t]);
                     } else {
                         cplex.addEq(w[c][t], 0);
@@ -79,83 +112,162 @@ public class HybridPlanner extends NaiveVoicePlanner {
 
             cplex.addMinimize(totalCost);
 
+            // offer every improving incumbent of CPLEX as an intermediate plan
+            cplex.use(new PlannerInfoCallback(Thread.currentThread()) {
+                @Override
+                protected void incumbentFound() throws IloException {
+                    double[][] wValues = new double[contextCount][];
+                    for (int c = 0; c < contextCount; c++) {
+                        wValues[c] = getIncumbentValues(w[c]);
+                    }
+                    VoiceOutputPlan incumbent = toPlan(getIncumbentValues(g), wValues, contextCandidates, tupleCollection);
+                    incumbents.offer(incumbent, getPlannerIdentifier() + ": CPLEX incumbent");
+                }
+            });
             cplex.solve();
+            checkForCancellation();
 
-            // parse CPLEX output
-            HashMap<Integer, ArrayList<Tuple>> tupleBins = new HashMap<>();
+            double[][] wValues = new double[contextCount][];
             for (int c = 0; c < contextCount; c++) {
-                if (cplex.getValue(g[c]) > 0.5) {
-                    tupleBins.put(c, new ArrayList<>());
-                }
+                wValues[c] = cplex.getValues(w[c]);
             }
+            plan = toPlan(cplex.getValues(g), wValues, contextCandidates, tupleCollection);
+        } catch (IloException e) {
+            failed = true;
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (failed) {
+                cplexPool.discard(cplex);
+            } else {
+                cplexPool.release(cplex);
+            }
+        }
 
-            ArrayList<Tuple> emptyContextTuples = new ArrayList<>();
+        return plan;
+    }
 
-            for (int t = 0; t < tupleCollection.tupleCount(); t++) {
-                boolean matched = false;
-                for (int c = 0; c < contextCount; c++) {
-                    if (cplex.getValue(w[c][t]) > 0.5) {
-                        tupleBins.get(c).add(tupleCollection.getTuple(t));
-                        matched = true;
-                    }
-                }
-                if (!matched) {
-                    emptyContextTuples.add(tupleCollection.getTuple(t));
-                }
+    /**
+     * Constructs the VoiceOutputPlan of a solution of the integer programming model, given the values of the
+     * variables g and w
+     */
+    private VoiceOutputPlan toPlan(double[] g, double[][] w, List<Context> contextCandidates, TupleCollection tupleCollection) {
+        int contextCount = contextCandidates.size();
+        HashMap<Integer, ArrayList<Tuple>> tupleBins = new HashMap<>();
+        for (int c = 0; c < contextCount; c++) {
+            if (g[c] > 0.5) {
+                tupleBins.put(c, new ArrayList<>());
             }
+        }
 
-            ArrayList<Scope> scopes = new ArrayList<>();
-            if (!emptyContextTuples.isEmpty()) {
-                scopes.add(new Scope(null, emptyContextTuples, tupleCollection.getTuplesClassName()));
-            }
+        ArrayList<Tuple> emptyContextTuples = new ArrayList<>();
 
-            for (int c = 0; c < contextCandidates.size(); c++) {
-                if (tupleBins.containsKey(c)) {
-                    scopes.add(new Scope(contextCandidates.get(c), tupleBins.get(c), tupleCollection.getTuplesClassName()));
+        for (int t = 0; t < tupleCollection.tupleCount(); t++) {
+            boolean matched = false;
+            for (int c = 0; c < contextCount; c++) {
+                if (w[c][t] > 0.5) {
+                    tupleBins.get(c).add(tupleCollection.getTuple(t));
+                    matched = true;
                 }
             }
+            if (!matched) {
+                emptyContextTuples.add(tupleCollection.getTuple(t));
+            }
+        }
 
-            plan = new VoiceOutputPlan(scopes);
-        } catch (IloException e) {
-            e.printStackTrace();
+        ArrayList<Scope> scopes = new ArrayList<>();
+        if (!emptyContextTuples.isEmpty()) {
+            scopes.add(new Scope(null, emptyContextTuples, tupleCollection.getTuplesClassName()));
         }
 
-        return plan;
+        for (int c = 0; c < contextCandidates.size(); c++) {
+            if (tupleBins.containsKey(c)) {
+                scopes.add(new Scope(contextCandidates.get(c), tupleBins.get(c), tupleCollection.getTuplesClassName()));
+            }
+        }
+
+        return new VoiceOutputPlan(scopes);
     }
 
-    private ArrayList<Context> generateContextCandidates(TupleCollection tupleCollection, Config config) {
+    /**
+     * Generates candidate Contexts level by level with the Apriori algorithm. The Contexts of level k + 1 extend
+     * the surviving Contexts of level k by one domain of a later attribute, and are only considered if every
+     * Context that results from dropping one of their domains survived level k as well. A child's set of
+     * matching Tuples is the intersection of its parent's set and the set of the new domain. All children of a
+     * level are pruned together.
+     */
+    List<ContextNode> generateContextCandidates(TupleCollection tupleCollection, Config config) {
         Map<Integer, Set<ValueDomain>> candidateAssignments = tupleCollection.candidateAssignments(config.getMaxAllowableCategoricalDomainSize(),
                 config.getMaxAllowableNumericalDomainWidth());
+        final MatchIndex matchIndex = tupleCollection.getMatchIndex();
 
-        ArrayList<Context> result = new ArrayList<>();
+        List<ContextNode> result = new ArrayList<>();
 
         int k = 0;
-        Collection<Context> kAssignmentContexts = new ArrayList<>();
-        kAssignmentContexts.add(new Context());
-
-        while (k < config.getMaxAllowableContextSize()) {
-            Collection<Context> kPlusOneAssignmentContexts = new ArrayList<>();
-            for (Context c : kAssignmentContexts) {
-                ArrayList<Context> unfiltered = new ArrayList<>();
-                for (int a = 1; a < tupleCollection.attributeCount(); a++) {
-                    if (!c.isAttributeFixed(tupleCollection.attributeForIndex(a))) {
-                        for (ValueDomain d : candidateAssignments.get(a)) {
-                            Context newContext = new Context(c);
-                            newContext.addDomainAssignment(d);
-                            unfiltered.add(newContext);
+        List<ContextNode> kAssignmentNodes = new ArrayList<>();
+        kAssignmentNodes.add(new ContextNode(new Context(), matchIndex.allTuples(), tupleCollection.getPrimaryKeyIndex()));
+
+        while (k < config.getMaxAllowableContextSize() && !kAssignmentNodes.isEmpty()) {
+            Set<Map<String, ValueDomain>> survivors = new HashSet<>();
+            for (ContextNode node : kAssignmentNodes) {
+                survivors.add(node.getContext().getValueDomains());
+            }
+
+            final List<ContextNode> parents = new ArrayList<>();
+            final List<Context> children = new ArrayList<>();
+            final List<ValueDomain> newDomains = new ArrayList<>();
+            final List<Integer> newAttributes = new ArrayList<>();
+            for (ContextNode parent : kAssignmentNodes) {
+                checkForCancellation();
+                for (int a = parent.getLastAttribute() + 1; a < tupleCollection.attributeCount(); a++) {
+                    for (ValueDomain d : candidateAssignments.get(a)) {
+                        Context child = new Context(parent.getContext());
+                        child.addDomainAssignment(d);
+                        if (k > 0 && !allSubsetsSurvived(child, survivors)) {
+                            continue;
                         }
+                        parents.add(parent);
+                        children.add(child);
+                        newDomains.add(d);
+                        newAttributes.add(a);
                     }
                 }
-                kPlusOneAssignmentContexts = contextPruner.prune(unfiltered, tupleCollection);
             }
-            result.addAll(kPlusOneAssignmentContexts);
-            kAssignmentContexts = kPlusOneAssignmentContexts;
+
+            // score the children in parallel
+            final ContextNode[] kPlusOneAssignmentNodes = new ContextNode[children.size()];
+            contextPruner.forEachInParallel(children.size(), config.getParallelism(), new IntConsumer() {
+                @Override
+                public void accept(int c) {
+                    BitSet matches = (BitSet) parents.get(c).getMatches().clone();
+                    matches.and(matchIndex.matches(newDomains.get(c)));
+                    kPlusOneAssignmentNodes[c] = new ContextNode(children.get(c), matches, newAttributes.get(c));
+                }
+            });
+
+            kAssignmentNodes = contextPruner.pruneNodes(Arrays.asList(kPlusOneAssignmentNodes), tupleCollection, config.getParallelism());
+            result.addAll(kAssignmentNodes);
             k++;
         }
 
         return result;
     }
 
+    /**
+     * Determines if every Context that results from dropping one domain of a Context is among the survivors
+     */
+    private boolean allSubsetsSurvived(Context c, Set<Map<String, ValueDomain>> survivors) {
+        for (String attribute : c.getValueDomains().keySet()) {
+            Map<String, ValueDomain> subset = new HashMap<>(c.getValueDomains());
+            subset.remove(attribute);
+            if (!survivors.contains(subset)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public void setContextPruner(ContextPruner contextPruner) {
         this.contextPruner = contextPruner;
     }
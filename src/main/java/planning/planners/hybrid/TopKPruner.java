@@ -1,13 +1,11 @@
 package planning.planners.hybrid;
 
 import planning.elements.Context;
-import planning.elements.Tuple;
+import planning.elements.MatchIndex;
 import planning.elements.TupleCollection;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collection;
-import java.util.Comparator;
+import java.util.*;
+import java.util.function.IntConsumer;
 
 /**
  * Filters candidate Contexts by calculating the number of Tuples each Context matches, then
@@ -28,34 +26,48 @@ public class TopKPruner extends ContextPruner {
      */
     @Override
     public Collection<Context> prune(Collection<Context> candidateContexts, TupleCollection tupleCollection) {
-        ContextNode[] sortedNodeList = contextListSortedByMatchingTupleCount(candidateContexts, tupleCollection.getTuples());
-
         Collection<Context> result = new ArrayList<>();
-        for (int c = 0; c < candidateContexts.size() && c < k; c++) {
-            result.add(sortedNodeList[c].getContext());
+        List<ContextNode> nodes = contextNodes(candidateContexts, tupleCollection, defaultParallelism());
+        for (ContextNode node : pruneNodes(nodes, tupleCollection, defaultParallelism())) {
+            result.add(node.getContext());
         }
+        return result;
+    }
 
+    @Override
+    List<ContextNode> pruneNodes(List<ContextNode> candidateNodes, TupleCollection tupleCollection, int parallelism) {
+        ContextNode[] sortedNodeList = sortedByMatchCount(candidateNodes);
+
+        List<ContextNode> result = new ArrayList<>();
+        for (int c = 0; c < sortedNodeList.length && c < k; c++) {
+            result.add(sortedNodeList[c]);
+        }
         return result;
     }
 
-    public ContextNode[] calculateMatchingCounts(Collection<Context> candidateContexts, Collection<Tuple> tupleCollection) {
-        int i = 0;
-        ContextNode[] nodeList = new ContextNode[candidateContexts.size()];
-        for (Context c : candidateContexts) {
-            int numberMatched = 0;
-            for (Tuple t : tupleCollection) {
-                if (c.matches(t)) {
-                    numberMatched++;
-                }
+    /**
+     * Creates a ContextNode holding the set of matching Tuples for each candidate Context. The sets are
+     * computed in parallel.
+     */
+    List<ContextNode> contextNodes(Collection<Context> candidateContexts, TupleCollection tupleCollection, int parallelism) {
+        final MatchIndex matchIndex = tupleCollection.getMatchIndex();
+        final Context[] contexts = candidateContexts.toArray(new Context[0]);
+        final ContextNode[] nodes = new ContextNode[contexts.length];
+        forEachInParallel(contexts.length, parallelism, new IntConsumer() {
+            @Override
+            public void accept(int c) {
+                nodes[c] = new ContextNode(contexts[c], matchIndex.matches(contexts[c]), 0);
             }
-            nodeList[i] = new ContextNode(c, numberMatched);
-            i++;
-        }
-        return nodeList;
+        });
+        return Arrays.asList(nodes);
     }
 
-    public ContextNode[] contextListSortedByMatchingTupleCount(Collection<Context> candidateContext, Collection<Tuple> tupleCollection) {
-        ContextNode[] nodeList = calculateMatchingCounts(candidateContext, tupleCollection);
+    /**
+     * Sorts ContextNodes by the number of Tuples they match, in descending order. Nodes with equal counts keep
+     * their relative order.
+     */
+    ContextNode[] sortedByMatchCount(Collection<ContextNode> nodes) {
+        ContextNode[] nodeList = nodes.toArray(new ContextNode[0]);
         Arrays.sort(nodeList, new Comparator<ContextNode>() {
             @Override
             public int compare(ContextNode o1, ContextNode o2) {
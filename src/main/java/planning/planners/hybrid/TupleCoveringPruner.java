@@ -1,7 +1,6 @@
 package planning.planners.hybrid;
 
-import planning.elements.Context;
-import planning.elements.Tuple;
+import planning.VoicePlanner;
 import planning.elements.TupleCollection;
 
 import java.util.*;
@@ -12,25 +11,50 @@ public class TupleCoveringPruner extends TopKPruner {
         super(k);
     }
 
+    /**
+     * Greedily selects up to k ContextNodes, each time taking the one that matches the most Tuples not matched
+     * by any previously selected node. Ties go to the node that comes first among the candidates.
+     *
+     * The number of uncovered Tuples a node matches can only shrink as nodes are selected, so we keep the nodes
+     * in a max-heap keyed by their last known coverage and only recount the coverage of the node at the top of
+     * the heap if it was counted before the last selection. A node whose up to date coverage is at the top of
+     * the heap covers at least as many Tuples as any other node.
+     */
     @Override
-    public Collection<Context> prune(Collection<Context> candidateContexts, TupleCollection tupleCollection) {
-        Collection<Context> result = new ArrayList<>();
-        Collection<Tuple> uncovered = new ArrayList<>(tupleCollection.getTuples());
-        Collection<Context> remainingCandidates = new ArrayList<>(candidateContexts);
-
-        while (result.size() < k && !uncovered.isEmpty() && remainingCandidates.size() > 0) {
-            ContextNode[] nodeList = contextListSortedByMatchingTupleCount(remainingCandidates, uncovered);
-            Context c = nodeList[0].getContext();
-            remainingCandidates.remove(c);
-            result.add(c);
-
-            Iterator<Tuple> tupleIterator = uncovered.iterator();
-            while (tupleIterator.hasNext()) {
-                Tuple t = tupleIterator.next();
-                if (c.matches(t)) {
-                    tupleIterator.remove();
+    List<ContextNode> pruneNodes(List<ContextNode> candidateNodes, TupleCollection tupleCollection, int parallelism) {
+        List<ContextNode> result = new ArrayList<>();
+        BitSet uncovered = tupleCollection.getMatchIndex().allTuples();
+
+        PriorityQueue<Coverage> heap = new PriorityQueue<>(Math.max(1, candidateNodes.size()), new Comparator<Coverage>() {
+            @Override
+            public int compare(Coverage o1, Coverage o2) {
+                if (o1.count != o2.count) {
+                    return o1.count > o2.count ? -1 : 1;
                 }
+                return Integer.compare(o1.position, o2.position);
             }
+        });
+        for (int c = 0; c < candidateNodes.size(); c++) {
+            // every tuple is uncovered before the first selection
+            heap.add(new Coverage(candidateNodes.get(c), c, candidateNodes.get(c).getMatchCount(), 0));
+        }
+
+        int selections = 0;
+        while (result.size() < k && !uncovered.isEmpty() && !heap.isEmpty()) {
+            VoicePlanner.checkForCancellation();
+            Coverage top = heap.poll();
+            if (top.countedAfterSelections < selections) {
+                BitSet matches = (BitSet) top.node.getMatches().clone();
+                matches.and(uncovered);
+                top.count = matches.cardinality();
+                top.countedAfterSelections = selections;
+                heap.add(top);
+                continue;
+            }
+
+            result.add(top.node);
+            uncovered.andNot(top.node.getMatches());
+            selections++;
         }
 
         return result;
@@ -40,5 +64,21 @@ public class TupleCoveringPruner extends TopKPruner {
     public String getName() {
         return super.getName() + "tuple-covering";
     }
-    
+
+    /**
+     * The number of uncovered Tuples a candidate node matched after a given number of selections
+     */
+    private static class Coverage {
+        final ContextNode node;
+        final int position;
+        int count;
+        int countedAfterSelections;
+
+        Coverage(ContextNode node, int position, int count, int countedAfterSelections) {
+            this.node = node;
+            this.position = position;
+            this.count = count;
+            this.countedAfterSelections = countedAfterSelections;
+        }
+    }
 }
@@ -1,12 +1,14 @@
 package planning.planners.hybrid;
 
 import planning.elements.Context;
-import planning.elements.Scope;
-import planning.elements.Tuple;
+import planning.elements.SpeechCostModel;
 import planning.elements.TupleCollection;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.List;
+import java.util.function.IntConsumer;
 
 /**
  * Implementation of a ContextPruner to select only the Contexts that are useful, or not useless. A Context
@@ -25,16 +27,38 @@ public class UsefulPruner extends ContextPruner {
         return pruned;
     }
 
+    @Override
+    List<ContextNode> pruneNodes(final List<ContextNode> candidateNodes, final TupleCollection tupleCollection, int parallelism) {
+        final boolean[] useless = new boolean[candidateNodes.size()];
+        forEachInParallel(candidateNodes.size(), parallelism, new IntConsumer() {
+            @Override
+            public void accept(int c) {
+                ContextNode node = candidateNodes.get(c);
+                useless[c] = useless(node.getContext(), node.getMatches(), tupleCollection);
+            }
+        });
+
+        List<ContextNode> pruned = new ArrayList<>();
+        for (int c = 0; c < useless.length; c++) {
+            if (!useless[c]) {
+                pruned.add(candidateNodes.get(c));
+            }
+        }
+        return pruned;
+    }
+
     boolean useless(Context c, TupleCollection tupleCollection) {
+        return useless(c, tupleCollection.getMatchIndex().matches(c), tupleCollection);
+    }
+
+    private boolean useless(Context c, BitSet matches, TupleCollection tupleCollection) {
+        SpeechCostModel costModel = tupleCollection.getCostModel();
+        boolean[] fixedAttributes = costModel.fixedAttributes(c);
         int totalSavings = 0;
-        for (Tuple t : tupleCollection) {
-            if (c.matches(t)) {
-                int tWithContext = t.toSpeechText(c, true).length();
-                int tWithoutContext = t.toSpeechText(true).length();
-                totalSavings += tWithoutContext - tWithContext;
-            }
+        for (int t = matches.nextSetBit(0); t >= 0; t = matches.nextSetBit(t + 1)) {
+            totalSavings += costModel.savings(t, fixedAttributes);
         }
-        return c.toSpeechText(true).length() + Scope.contextOverheadCost(tupleCollection.getTuplesClassName()) >= totalSavings;
+        return costModel.contextCost(c) >= totalSavings;
     }
 
     @Override
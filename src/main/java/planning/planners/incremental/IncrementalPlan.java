@@ -0,0 +1,57 @@
+package planning.planners.incremental;
+
+import planning.VoiceOutputPlan;
+
+/**
+ * A VoiceOutputPlan for the first tupleCount tuples of a TupleCollection, as maintained by an IncrementalPlanner.
+ * Besides the plan, it records the speech cost of outputting the same tuples naively, and the ratio of the two at
+ * the last time the plan was built from scratch, which is the reference for the drift of later updates.
+ */
+public class IncrementalPlan {
+    final VoiceOutputPlan plan;
+    final int tupleCount;
+    final long naiveCost;
+    final double fullPlanCostRatio;
+    final int updatesSinceFullPlan;
+
+    IncrementalPlan(VoiceOutputPlan plan, int tupleCount, long naiveCost, double fullPlanCostRatio,
+                    int updatesSinceFullPlan) {
+        this.plan = plan;
+        this.tupleCount = tupleCount;
+        this.naiveCost = naiveCost;
+        this.fullPlanCostRatio = fullPlanCostRatio;
+        this.updatesSinceFullPlan = updatesSinceFullPlan;
+    }
+
+    public VoiceOutputPlan getPlan() {
+        return plan;
+    }
+
+    /**
+     * Returns the number of tuples of the TupleCollection that the plan outputs
+     */
+    public int getTupleCount() {
+        return tupleCount;
+    }
+
+    /**
+     * Returns the speech cost of the plan relative to outputting its tuples naively
+     */
+    public double getCostRatio() {
+        return naiveCost == 0 ? 1.0 : (double) plan.getSpeechCost() / naiveCost;
+    }
+
+    /**
+     * Returns how much the cost ratio grew since the plan was last built from scratch
+     */
+    public double getCostDrift() {
+        return getCostRatio() - fullPlanCostRatio;
+    }
+
+    /**
+     * Returns the number of incremental updates since the plan was last built from scratch, 0 for a full plan
+     */
+    public int getUpdatesSinceFullPlan() {
+        return updatesSinceFullPlan;
+    }
+}
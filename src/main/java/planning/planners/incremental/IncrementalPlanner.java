@@ -0,0 +1,191 @@
+package planning.planners.incremental;
+
+import planning.IncumbentTracker;
+import planning.VoiceOutputPlan;
+import planning.VoicePlanner;
+import planning.config.Config;
+import planning.elements.Context;
+import planning.elements.Scope;
+import planning.elements.Tuple;
+import planning.elements.TupleCollection;
+import planning.planners.greedy.GreedyPlanner;
+import planning.planners.naive.NaiveVoicePlanner;
+
+import java.util.*;
+
+/**
+ * Keeps a VoiceOutputPlan up to date while tuples are appended to its TupleCollection, e.g. for paged results or
+ * live feeds, without planning all tuples again for every batch.
+ *
+ * An update first adds every new tuple to the scope of an existing Context that matches it and shortens it the
+ * most. Only the tuples that no Context shortens are planned from scratch, in a TupleCollection of their own, and
+ * the Contexts found for them are added to the plan. Since the Contexts of the plan were chosen for the tuples they
+ * were planned for, the plan becomes worse than a plan of all tuples as more tuples arrive. Once the ratio of its
+ * speech cost to the naive speech cost grows by more than maxCostDrift since the last full plan, all tuples are
+ * planned again.
+ */
+public class IncrementalPlanner {
+    public static final double DEFAULT_MAX_COST_DRIFT = 0.05;
+
+    private final VoicePlanner planner;
+    private final double maxCostDrift;
+
+    public IncrementalPlanner() {
+        this(new GreedyPlanner(), DEFAULT_MAX_COST_DRIFT);
+    }
+
+    /**
+     * @param planner the planner for full plans and for the tuples that no Context of the plan matches. If it
+     *                finds no plan, e.g. a LinearProgrammingPlanner without a solver, the tuples are planned naively.
+     * @param maxCostDrift the growth of the cost ratio after which all tuples are planned again
+     */
+    public IncrementalPlanner(VoicePlanner planner, double maxCostDrift) {
+        this.planner = planner;
+        this.maxCostDrift = maxCostDrift;
+    }
+
+    /**
+     * Plans all tuples of tupleCollection from scratch
+     */
+    public IncrementalPlan plan(TupleCollection tupleCollection, Config config) {
+        VoiceOutputPlan plan = planOrNaive(tupleCollection, config);
+        long naiveCost = naiveCost(tupleCollection, 0, 0);
+        double costRatio = naiveCost == 0 ? 1.0 : (double) plan.getSpeechCost() / naiveCost;
+        return new IncrementalPlan(plan, tupleCollection.tupleCount(), naiveCost, costRatio, 0);
+    }
+
+    /**
+     * Extends the plan of previous to the tuples that were appended to tupleCollection since, or plans all tuples
+     * again if the cost drift of the extended plan exceeds maxCostDrift. The VoiceOutputPlan of previous is not
+     * changed.
+     */
+    public IncrementalPlan update(IncrementalPlan previous, TupleCollection tupleCollection, Config config) {
+        int firstNewTuple = previous.getTupleCount();
+        if (firstNewTuple > tupleCollection.tupleCount()) {
+            throw new IllegalArgumentException(String.format("Plan of %d tuples is not for a collection of %d tuples",
+                    firstNewTuple, tupleCollection.tupleCount()));
+        }
+        if (firstNewTuple == tupleCollection.tupleCount()) {
+            return previous;
+        }
+
+        List<Scope> scopes = new ArrayList<>(previous.getPlan().getScopes());
+        Map<Integer, List<Tuple>> addedTuples = new HashMap<>();
+        List<Integer> leftovers = new ArrayList<>();
+        for (int t = firstNewTuple; t < tupleCollection.tupleCount(); t++) {
+            Tuple tuple = tupleCollection.getTuple(t);
+            int bestScope = bestScope(scopes, tuple);
+            if (bestScope < 0) {
+                leftovers.add(t);
+            } else {
+                if (!addedTuples.containsKey(bestScope)) {
+                    addedTuples.put(bestScope, new ArrayList<Tuple>());
+                }
+                addedTuples.get(bestScope).add(tuple);
+            }
+        }
+
+        // scopes cache their speech text, so only scopes that gain tuples are replaced
+        for (Map.Entry<Integer, List<Tuple>> added : addedTuples.entrySet()) {
+            Scope scope = scopes.get(added.getKey());
+            List<Tuple> tuples = new ArrayList<>(scope.getTuples());
+            tuples.addAll(added.getValue());
+            scopes.set(added.getKey(), new Scope(scope.getContext(), tuples, tupleCollection.getTuplesClassName()));
+        }
+        addLeftovers(scopes, leftovers, tupleCollection, config);
+
+        VoiceOutputPlan plan = new VoiceOutputPlan(scopes);
+        long naiveCost = naiveCost(tupleCollection, firstNewTuple, previous.naiveCost);
+        IncrementalPlan updated = new IncrementalPlan(plan, tupleCollection.tupleCount(), naiveCost,
+                previous.fullPlanCostRatio, previous.getUpdatesSinceFullPlan() + 1);
+        if (updated.getCostDrift() > maxCostDrift) {
+            return plan(tupleCollection, config);
+        }
+        return updated;
+    }
+
+    /**
+     * Returns the index of the scope whose Context shortens Tuple tuple the most, or -1 if no Context does
+     */
+    private static int bestScope(List<Scope> scopes, Tuple tuple) {
+        int costWithoutContext = tuple.toSpeechText(true).length();
+        int bestScope = -1;
+        int bestSavings = 0;
+        for (int s = 0; s < scopes.size(); s++) {
+            Context context = scopes.get(s).getContext();
+            if (context == null || !context.matches(tuple)) {
+                continue;
+            }
+            int savings = costWithoutContext - tuple.toSpeechText(context, true).length();
+            if (savings > bestSavings) {
+                bestScope = s;
+                bestSavings = savings;
+            }
+        }
+        return bestScope;
+    }
+
+    /**
+     * Plans the tuples at the given indices of tupleCollection in a TupleCollection of their own, and adds the
+     * resulting scopes to scopes. Tuples without a Context are added to the scope without a Context, if there is one.
+     */
+    private void addLeftovers(List<Scope> scopes, List<Integer> leftovers, TupleCollection tupleCollection,
+                              Config config) {
+        if (leftovers.isEmpty()) {
+            return;
+        }
+        TupleCollection leftoverCollection = new TupleCollection(tupleCollection.getAttributes(),
+                tupleCollection.getTuplesClassName());
+        for (int t : leftovers) {
+            leftoverCollection.addTuple(tupleCollection.getTuple(t));
+        }
+        VoiceOutputPlan leftoverPlan = leftovers.size() == 1 ? new NaiveVoicePlanner().plan(leftoverCollection, config)
+                : planOrNaive(leftoverCollection, config);
+
+        for (Scope leftoverScope : leftoverPlan.getScopes()) {
+            // refer to the tuples of tupleCollection instead of their copies
+            List<Tuple> tuples = new ArrayList<>();
+            for (Tuple tuple : leftoverScope.getTuples()) {
+                tuples.add(tupleCollection.getTuple(leftovers.get(leftoverCollection.indexOfTuple(tuple))));
+            }
+
+            int scopeWithoutContext = leftoverScope.getContext() == null ? scopeWithoutContext(scopes) : -1;
+            if (scopeWithoutContext >= 0) {
+                List<Tuple> merged = new ArrayList<>(scopes.get(scopeWithoutContext).getTuples());
+                merged.addAll(tuples);
+                scopes.set(scopeWithoutContext, new Scope(null, merged, tupleCollection.getTuplesClassName()));
+            } else {
+                scopes.add(new Scope(leftoverScope.getContext(), tuples, tupleCollection.getTuplesClassName()));
+            }
+        }
+    }
+
+    /**
+     * Plans tupleCollection with the planner, or naively if the planner finds no plan
+     */
+    private VoiceOutputPlan planOrNaive(TupleCollection tupleCollection, Config config) {
+        VoiceOutputPlan plan = planner.plan(tupleCollection, config, new IncumbentTracker());
+        return plan != null ? plan : new NaiveVoicePlanner().plan(tupleCollection, config);
+    }
+
+    private static int scopeWithoutContext(List<Scope> scopes) {
+        for (int s = 0; s < scopes.size(); s++) {
+            if (scopes.get(s).getContext() == null) {
+                return s;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the speech cost of outputting all tuples of tupleCollection in a single Scope without a Context, given
+     * the cost previousNaiveCost of outputting the tuples before index firstTuple that way
+     */
+    private static long naiveCost(TupleCollection tupleCollection, int firstTuple, long previousNaiveCost) {
+        long cost = firstTuple == 0 ? 0 : previousNaiveCost - Scope.separatorCost(firstTuple);
+        for (int t = firstTuple; t < tupleCollection.tupleCount(); t++) {
+            cost += tupleCollection.getTuple(t).toSpeechText(true).length();
+        }
+        return tupleCollection.tupleCount() == 0 ? 0 : cost + Scope.separatorCost(tupleCollection.tupleCount());
+    }
+}
@@ -0,0 +1,225 @@
+package planning.planners.linear;
+
+import ilog.concert.IloException;
+import ilog.cplex.IloCplex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of CPLEX environments. Every IloCplex holds native solver memory that is only freed by end(), and creating
+ * one starts a new environment, so planners borrow instances from a pool instead of creating their own.
+ *
+ * At most maxSolvers instances are borrowed at a time, and further requests wait for a free one. A returned
+ * instance is cleared with clearModel(), its callbacks are removed and its parameters are reset, and up to maxIdle
+ * cleared instances are kept for reuse. All other instances, and instances that fail to clear or that are discarded
+ * after an error, are ended right away. Every acquire() must be followed by exactly one release() or discard(), typically in a finally block.
+ */
+public class CplexPool {
+    private static final Logger logger = LoggerFactory.getLogger(CplexPool.class);
+    private static final CplexPool shared = createShared();
+
+    private final int maxSolvers;
+    private final int maxIdle;
+    private final Semaphore permits;
+    private final Deque<IloCplex> idle = new ArrayDeque<>();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong ended = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+
+    public CplexPool(int maxSolvers, int maxIdle) {
+        if (maxSolvers <= 0 || maxIdle < 0) {
+            throw new IllegalArgumentException(String.format("Invalid pool size %d with %d idle solvers", maxSolvers, maxIdle));
+        }
+        this.maxSolvers = maxSolvers;
+        this.maxIdle = Math.min(maxIdle, maxSolvers);
+        this.permits = new Semaphore(maxSolvers, true);
+    }
+
+    private static CplexPool createShared() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        final CplexPool pool = new CplexPool(processors, processors);
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                pool.close();
+            }
+        }));
+        return pool;
+    }
+
+    /**
+     * Returns the pool that is shared by all planners, which allows one solver per processor
+     */
+    public static CplexPool shared() {
+        return shared;
+    }
+
+    /**
+     * Borrows a cleared IloCplex, waiting at most timeout for one to become available.
+     * @return the IloCplex, or null if none became available in time
+     */
+    public IloCplex acquire(long timeout, TimeUnit unit) throws IloException, InterruptedException {
+        if (!permits.tryAcquire(timeout, unit)) {
+            logger.warn(String.format("No CPLEX solver available after %d %s (%s)", timeout, unit, getOccupancy()));
+            return null;
+        }
+
+        boolean acquired = false;
+        try {
+            IloCplex cplex;
+            synchronized (idle) {
+                cplex = idle.pollFirst();
+            }
+            if (cplex != null) {
+                reused.incrementAndGet();
+            } else {
+                cplex = new IloCplex();
+                created.incrementAndGet();
+            }
+            acquired = true;
+            return cplex;
+        } finally {
+            if (!acquired) {
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * Returns a borrowed IloCplex to the pool. It is cleared for the next planner, or ended if the pool already
+     * holds enough idle instances or if it cannot be cleared.
+     */
+    public void release(IloCplex cplex) {
+        if (cplex == null) {
+            return;
+        }
+        try {
+            boolean keep = false;
+            try {
+                cplex.clearModel();
+                cplex.clearCallbacks();
+                cplex.setDefaults();
+                synchronized (idle) {
+                    if (idle.size() < maxIdle) {
+                        idle.addFirst(cplex);
+                        keep = true;
+                    }
+                }
+            } catch (IloException e) {
+                logger.warn("Could not clear CPLEX solver, ending it", e);
+            }
+            if (!keep) {
+                end(cplex);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Ends a borrowed IloCplex instead of returning it to the pool, e.g. after it failed
+     */
+    public void discard(IloCplex cplex) {
+        if (cplex == null) {
+            return;
+        }
+        try {
+            end(cplex);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void end(IloCplex cplex) {
+        try {
+            cplex.end();
+        } finally {
+            ended.incrementAndGet();
+        }
+    }
+
+    /**
+     * Ends all idle instances. Borrowed instances are ended when they are returned.
+     */
+    public void close() {
+        synchronized (idle) {
+            while (!idle.isEmpty()) {
+                end(idle.pollFirst());
+            }
+        }
+    }
+
+    public Occupancy getOccupancy() {
+        int idleSolvers;
+        synchronized (idle) {
+            idleSolvers = idle.size();
+        }
+        return new Occupancy(maxSolvers, maxSolvers - permits.availablePermits(), idleSolvers,
+                permits.getQueueLength(), created.get(), reused.get(), ended.get());
+    }
+
+    /**
+     * A snapshot of the number of borrowed, idle and requested solvers of a CplexPool, and of the number of solvers
+     * it has created, reused and ended so far
+     */
+    public static class Occupancy {
+        final int maxSolvers;
+        final int activeSolvers;
+        final int idleSolvers;
+        final int waitingRequests;
+        final long createdSolvers;
+        final long reusedSolvers;
+        final long endedSolvers;
+
+        Occupancy(int maxSolvers, int activeSolvers, int idleSolvers, int waitingRequests,
+                  long createdSolvers, long reusedSolvers, long endedSolvers) {
+            this.maxSolvers = maxSolvers;
+            this.activeSolvers = activeSolvers;
+            this.idleSolvers = idleSolvers;
+            this.waitingRequests = waitingRequests;
+            this.createdSolvers = createdSolvers;
+            this.reusedSolvers = reusedSolvers;
+            this.endedSolvers = endedSolvers;
+        }
+
+        public int getMaxSolvers() {
+            return maxSolvers;
+        }
+
+        public int getActiveSolvers() {
+            return activeSolvers;
+        }
+
+        public int getIdleSolvers() {
+            return idleSolvers;
+        }
+
+        public int getWaitingRequests() {
+            return waitingRequests;
+        }
+
+        public long getCreatedSolvers() {
+            return createdSolvers;
+        }
+
+        public long getReusedSolvers() {
+            return reusedSolvers;
+        }
+
+        public long getEndedSolvers() {
+            return endedSolvers;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d of %d solvers active, %d idle, %d waiting", activeSolvers, maxSolvers, idleSolvers,
+                    waitingRequests);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package planning.planners.linear;
 
+import planning.IncumbentTracker;
 import planning.VoiceOutputPlan;
+import planning.VoicePlanner;
 import planning.config.Config;
 import planning.elements.*;
 import ilog.concert.*;
@@ -8,50 +10,120 @@ import ilog.cplex.*;
 import planning.planners.naive.NaiveVoicePlanner;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This class constructs VoiceOutputPlans according to the integer programming model. It specifically uses the CPLEX
  * integer programming solver to buildPlan
+ *
+ * A LinearProgrammingPlanner can be given a faster planner to warm start from. The plan of that planner is passed
+ * to CPLEX as a MIP start, so CPLEX has an incumbent from the beginning. If CPLEX hits the time limit, the best
+ * incumbent is returned, and the warm start plan is returned instead whenever it is not more expensive.
+ *
+ * The IloCplex is borrowed from a CplexPool, the shared pool by default, and is returned to it after every plan.
  */
 public class LinearProgrammingPlanner extends NaiveVoicePlanner {
+    private VoicePlanner warmStartPlanner;
+    private CplexPool cplexPool = CplexPool.shared();
 
     public LinearProgrammingPlanner() {
+        this(null);
+    }
+
+    /**
+     * Constructs a LinearProgrammingPlanner that warm starts CPLEX from the plan of warmStartPlanner, e.g. a
+     * GreedyPlanner. Without a warm start planner CPLEX starts from scratch.
+     */
+    public LinearProgrammingPlanner(VoicePlanner warmStartPlanner) {
+        this.warmStartPlanner = warmStartPlanner;
+    }
 
+    /**
+     * Sets the pool to borrow IloCplex instances from, the shared pool by default
+     */
+    public void setCplexPool(CplexPool cplexPool) {
+        this.cplexPool = cplexPool;
     }
 
     /**
      * Constructs a VoiceOutputPlan using the CPLEX integer programming solver.
      * @param tupleCollection The collection of Tuples to construct a voice buildPlan
-     * @return The optimal VoiceOutputPlan according to the integer programming approach
+     * @return The optimal VoiceOutputPlan according to the integer programming approach, the best plan found
+     * within the time limit, or null if no plan was found
      */
     @Override
     public VoiceOutputPlan plan(TupleCollection tupleCollection, Config config) {
+        return plan(tupleCollection, config, new IncumbentTracker());
+    }
+
+    /**
+     * Constructs a VoiceOutputPlan using the CPLEX integer programming solver, offering the plans of the warm start
+     * planner and every improving CPLEX incumbent to incumbents
+     */
+    @Override
+    public VoiceOutputPlan plan(final TupleCollection tupleCollection, Config config, final IncumbentTracker incumbents) {
         int tupleCount = tupleCollection.tupleCount();
         int attributeCount = tupleCollection.attributeCount();
-        int cMax = tupleCount/2;
-        if (tupleCollection.getTuples().isEmpty()) {
+        if (tupleCount == 0) {
             return null;
         }
 
+        long startTime = System.currentTimeMillis();
+        VoiceOutputPlan warmStartPlan = warmStartPlanner == null ? null : warmStartPlanner.plan(tupleCollection, config, incumbents);
+        checkForCancellation();
+
+        // PRESOLVE: bound the number of context slots, using the warm start plan if there is one
+        ModelPresolve presolve = new ModelPresolve(tupleCollection, config);
+        int cMax = presolve.contextSlots(presolve.objective(warmStartPlan));
+        int pKey = tupleCollection.getPrimaryKeyIndex();
+
+        IloCplex cplex = null;
+        boolean failed = false;
         try {
-            IloCplex cplex = new IloCplex();
+            // wait for a solver no longer than the time that is left
+            long remainingMillis = config.getTimeout() * 1000L - (System.currentTimeMillis() - startTime);
+            cplex = cplexPool.acquire(Math.max(0, remainingMillis), TimeUnit.MILLISECONDS);
+            if (cplex == null) {
+                incumbents.markTruncated();
+                return warmStartPlan;
+            }
 
             // INITIALIZE INTEGER PROGRAMMING VARIABLE MATRICES
-            int[] categoricalLengths = tupleCollection.getLengthsOfCategoricalAttributes();
-            int[] numericalLengths = tupleCollection.getLengthsOfNumericalAttributes();
+            // contexts never fix the primary key, so it gets no domain variables
+            final int[] categoricalLengths = tupleCollection.getLengthsOfCategoricalAttributes();
+            final int[] numericalLengths = tupleCollection.getLengthsOfNumericalAttributes();
+            categoricalLengths[pKey] = 0;
+            numericalLengths[pKey] = 0;
 
             IloIntVar[][] w = initialize2DCPLEXMatrix(cplex, cMax, tupleCount);
             IloIntVar[][] f = initialize2DCPLEXMatrix(cplex, cMax, attributeCount);
-            IloIntVar[][][] l = initializeVariable3DCPLEXMatrix(cplex, cMax, attributeCount, numericalLengths);
-            IloIntVar[][][] u = initializeVariable3DCPLEXMatrix(cplex, cMax, attributeCount, numericalLengths);
-            IloIntVar[][][] d = initializeVariable3DCPLEXMatrix(cplex, cMax, attributeCount, categoricalLengths);
-            IloIntVar[][][] e = initializeVariable3DCPLEXMatrix(cplex, cMax, attributeCount, numericalLengths);
-            IloIntVar[][][] s = initializeFull3DCPLEXMatrix(cplex, cMax, tupleCount, attributeCount);
+            IloIntVar[][][] l = initializeVariable3DCPLEXMatrix(cplex, cMax, attributeCount, numericalLengths, presolve.lowerBoundCandidates);
+            IloIntVar[][][] u = initializeVariable3DCPLEXMatrix(cplex, cMax, attributeCount, numericalLengths, presolve.upperBoundCandidates);
+            IloIntVar[][][] d = initializeVariable3DCPLEXMatrix(cplex, cMax, attributeCount, categoricalLengths, null);
+            IloIntVar[][][] e = initializeEqualBoundsMatrix(cplex, l, u);
+            IloIntVar[][][] s = new IloIntVar[cMax][tupleCount][];
             IloIntVar[] g = cplex.intVarArray(cMax, 0,1);
 
+            // look up the distinct value index and numerical value of every tuple value once, instead of once per
+            // context slot. Speech costs come from the cost model that is shared by all planners.
+            SpeechCostModel costModel = tupleCollection.getCostModel();
+            int[][] valueIndices = new int[attributeCount][tupleCount];
+            double[][] distinctCoefficients = new double[attributeCount][];
+            for (int a = 0; a < attributeCount; a++) {
+                for (int t = 0; t < tupleCount; t++) {
+                    valueIndices[a][t] = tupleCollection.getIndexOfDistinctValue(a, t);
+                }
+                distinctCoefficients[a] = new double[tupleCollection.distinctValueCountForAttribute(a)];
+                if (tupleCollection.attributeIsNumerical(a)) {
+                    for (int v = 0; v < distinctCoefficients[a].length; v++) {
+                        distinctCoefficients[a][v] = tupleCollection.getDistinctValue(a, v).linearProgrammingCoefficient();
+                    }
+                }
+            }
+
             // ADD CONSTRAINTS TO MODEL
 
             // each tuple can be mapped to at most one context
@@ -71,8 +143,12 @@ public class LinearProgrammingPlanner extends NaiveVoicePlanner {
             // we save time only if t is output in context c and if context c fixes the value for attribute a
             for (int c = 0; c < cMax; c++) {
                 for (int t = 0; t < tupleCount; t++) {
-                    s[c][t] = cplex.intVarArray(attributeCount, 0, 1);
+                    s[c][t] = new IloIntVar[attributeCount];
                     for (int a = 0; a < attributeCount; a++) {
+                        if (a == pKey) {
+                            continue;
+                        }
+                        s[c][t][a] = cplex.intVar(0, 1);
                         cplex.addLe(s[c][t][a], w[c][t]);
                         cplex.addLe(s[c][t][a], f[c][a]);
                     }
@@ -83,8 +159,8 @@ public class LinearProgrammingPlanner extends NaiveVoicePlanner {
             for (int c = 0; c < cMax; c++) {
                 for (int a = 0; a < attributeCount; a++) {
                     if (l[c][a].length > 0) {
-                        cplex.addEq(cplex.sum(l[c][a]), f[c][a]);
-                        cplex.addEq(cplex.sum(u[c][a]), f[c][a]);
+                        cplex.addEq(sum(cplex, l[c][a]), f[c][a]);
+                        cplex.addEq(sum(cplex, u[c][a]), f[c][a]);
                     }
                 }
             }
@@ -105,9 +181,13 @@ public class LinearProgrammingPlanner extends NaiveVoicePlanner {
                         IloLinearNumExpr lowerBounds = cplex.linearNumExpr();
                         IloLinearNumExpr upperBounds = cplex.linearNumExpr();
                         for (int v = 0; v < l[c][a].length; v++) {
-                            Double coefficient = tupleCollection.getDistinctValue(a, v).linearProgrammingCoefficient();
-                            lowerBounds.addTerm(coefficient, l[c][a][v]);
-                            upperBounds.addTerm(coefficient, u[c][a][v]);
+                            double coefficient = distinctCoefficients[a][v];
+                            if (l[c][a][v] != null) {
+                                lowerBounds.addTerm(coefficient, l[c][a][v]);
+                            }
+                            if (u[c][a][v] != null) {
+                                upperBounds.addTerm(coefficient, u[c][a][v]);
+                            }
                         }
                         cplex.addLe(lowerBounds, upperBounds);
                         cplex.addLe(upperBounds, cplex.prod(lowerBounds, 1.01 * config.getMaxAllowableNumericalDomainWidth()));
@@ -118,26 +198,28 @@ public class LinearProgrammingPlanner extends NaiveVoicePlanner {
             // only allow matching contexts
             for (int c = 0; c < cMax; c++) {
                 for (int a = 0; a < attributeCount; a++) {
+                    if (a == pKey) {
+                        continue;
+                    }
                     if (tupleCollection.attributeIsCategorical(a)) {
-                        for (int t = 0; t < tupleCollection.tupleCount(); t++) {
-                            Value vT = tupleCollection.getValueForAttributeAndTuple(a, t);
-                            int vTIndex = tupleCollection.getIndexOfDistinctValue(a, t);
+                        for (int t = 0; t < tupleCount; t++) {
+                            int vTIndex = valueIndices[a][t];
                             // only one of the following terms can hold:
                             // (1 - d(c,a,v_t)) + w(c,t) + f(c,a) <= 2
                             cplex.addLe(cplex.sum(w[c][t], f[c][a]), cplex.sum(1, d[c][a][vTIndex]));
                         }
                     } else {
-                        for (int t = 0; t < tupleCollection.tupleCount(); t++) {
-                            Value vT = tupleCollection.getValueForAttributeAndTuple(a, t);
-                            int vTIndex = tupleCollection.getIndexOfDistinctValue(a, t);
+                        for (int t = 0; t < tupleCount; t++) {
+                            int vTIndex = valueIndices[a][t];
+                            double vT = distinctCoefficients[a][vTIndex];
 
-                            for (int v = 0; v < tupleCollection.distinctValueCountForAttribute(a); v++) {
+                            for (int v = 0; v < distinctCoefficients[a].length; v++) {
                                 if (v != vTIndex) {
-                                    if (tupleCollection.getDistinctValue(a, v).compareTo(vT) > 0) {
+                                    if (distinctCoefficients[a][v] > vT && l[c][a][v] != null) {
                                         // v > vT
                                         // constraint: l(c,a,v) + w(c,r) + f(c,a) <= 2
                                         cplex.addLe(cplex.sum(l[c][a][v], w[c][t], f[c][a]), 2);
-                                    } else if (tupleCollection.getDistinctValue(a, v).compareTo(vT) < 0) {
+                                    } else if (distinctCoefficients[a][v] < vT && u[c][a][v] != null) {
                                         // v < vT
                                         // constraint: u(c,a,v) + w(c,r) + f(c,a) <= 2
                                         cplex.addLe(cplex.sum(u[c][a][v], w[c][t], f[c][a]), 2);
@@ -160,18 +242,24 @@ public class LinearProgrammingPlanner extends NaiveVoicePlanner {
             for (int c = 0; c < cMax; c++) {
                 for (int a = 0; a < attributeCount; a++) {
                     for (int v = 0; v < e[c][a].length; v++) {
-                        cplex.addLe(e[c][a][v], l[c][a][v]);
-                        cplex.addLe(e[c][a][v], u[c][a][v]);
+                        if (e[c][a][v] != null) {
+                            cplex.addLe(e[c][a][v], l[c][a][v]);
+                            cplex.addLe(e[c][a][v], u[c][a][v]);
+                        }
                     }
                 }
             }
 
             // disallow context to fix the primary key
-            int pKey = tupleCollection.getPrimaryKeyIndex();
             for (int c = 0; c < cMax; c++) {
                 cplex.addEq(f[c][pKey], 0);
             }
 
+            // context slots are interchangeable, so only allow solutions that use the first slots
+            for (int c = 0; c + 1 < cMax; c++) {
+                cplex.addGe(g[c], g[c + 1]);
+            }
+
             // ADD COST OBJECTIVE TO MODEL
 
             IloIntExpr contextOverhead = cplex.prod(Scope.contextOverheadCost(tupleCollection.getTuplesClassName()), cplex.sum(g));
@@ -180,18 +268,27 @@ public class LinearProgrammingPlanner extends NaiveVoicePlanner {
             for (int c = 0; c < cMax; c++) {
                 for (int a = 0; a < attributeCount; a++) {
                     // 1. add the cost of speaking the attribute
-                    contextTime.addTerm(f[c][a], tupleCollection.attributeForIndex(a).length());
+                    contextTime.addTerm(f[c][a], costModel.attributeCost(a));
 
+                    if (a == pKey) {
+                        continue;
+                    }
                     for (int v = 0; v < tupleCollection.distinctValueCountForAttribute(a); v++) {
-                        int valueCost = tupleCollection.getDistinctValue(a, v).speechCost();
+                        int valueCost = costModel.distinctValueCost(a, v);
                         if (tupleCollection.attributeIsCategorical(a)) {
                             // 2. add the cost of all fixed values for attribute a
                             contextTime.addTerm(d[c][a][v], valueCost);
                         } else {
                             // 2. add the cost of outputting the lower and upper bound or just lower bound if both bounds are equal
-                            contextTime.addTerm(l[c][a][v], valueCost + NumericalValueDomain.speechCostForUnequalBounds());
-                            contextTime.addTerm(u[c][a][v], valueCost);
-                            contextTime.addTerm(e[c][a][v], -(valueCost + NumericalValueDomain.speechCostForUnequalBounds()));
+                            if (l[c][a][v] != null) {
+                                contextTime.addTerm(l[c][a][v], valueCost + NumericalValueDomain.speechCostForUnequalBounds());
+                            }
+                            if (u[c][a][v] != null) {
+                                contextTime.addTerm(u[c][a][v], valueCost);
+                            }
+                            if (e[c][a][v] != null) {
+                                contextTime.addTerm(e[c][a][v], -(valueCost + NumericalValueDomain.speechCostForUnequalBounds()));
+                            }
                         }
                     }
                 }
@@ -199,105 +296,253 @@ public class LinearProgrammingPlanner extends NaiveVoicePlanner {
 
             IloLinearIntExpr negativeSavings = cplex.linearIntExpr();
             for (int a = 0; a < attributeCount; a++) {
+                if (a == pKey) {
+                    continue;
+                }
                 for (int t = 0; t < tupleCount; t++) {
+                    int cost = costModel.attributeSavings(t, a);
                     for (int c = 0; c < cMax; c++) {
-                        int cost = tupleCollection.getValueForAttributeAndTuple(a, t).speechCost() + " ".length() + tupleCollection.costForAttribute(a);
                         negativeSavings.addTerm(-cost, s[c][t][a]);
                     }
                 }
             }
 
-            // set timeout to be 3 seconds so CPLEX has time to shutdown
+            // set timeout to be 3 seconds so CPLEX has time to shutdown, minus the time spent on the warm start
             // TODO: shutdown CPLEX more cleanly
-            cplex.setParam(IloCplex.DoubleParam.TiLim, (config.getTimeout() - 3));
+            double warmStartSeconds = (System.currentTimeMillis() - startTime) / 1000.0;
+            cplex.setParam(IloCplex.DoubleParam.TiLim, Math.max(1, config.getTimeout() - 3 - warmStartSeconds));
 
             // minimize the objective function
             cplex.addMinimize(cplex.sum(contextOverhead, contextTime, negativeSavings));
+
+            final ModelVariables x = new ModelVariables(w, f, l, u, d, e, s, g);
+            final IloNumVar[] allVariables = x.all();
+            if (warmStartPlan != null) {
+                addMIPStart(cplex, x, warmStartPlan, tupleCollection, presolve, cMax);
+            }
+
+            // offer every improving incumbent of CPLEX as an intermediate plan
+            cplex.use(new PlannerInfoCallback(Thread.currentThread()) {
+                @Override
+                protected void incumbentFound() throws IloException {
+                    VoiceOutputPlan incumbent = toPlan(x.values(getIncumbentValues(allVariables)), tupleCollection,
+                            categoricalLengths, numericalLengths);
+                    incumbents.offer(incumbent, getPlannerIdentifier() + ": CPLEX incumbent");
+                }
+            });
             cplex.solve();
+            checkForCancellation();
 
-            if (cplex.getStatus() != IloCplex.Status.Optimal) {
-                return null;
+            // on a time limit, CPLEX reports the best incumbent as feasible
+            IloCplex.Status status = cplex.getStatus();
+            if (status != IloCplex.Status.Optimal) {
+                incumbents.markTruncated();
+            }
+            if (status != IloCplex.Status.Optimal && status != IloCplex.Status.Feasible) {
+                return warmStartPlan;
             }
+            // an optimal solution of the integer program is not proven optimal for the speech cost it approximates,
+            // so the plan is not marked optimal
 
             // EXTRACT SOLUTION AS A VoiceOutputPlan
+            VoiceOutputPlan plan = toPlan(x.values(cplex.getValues(allVariables)), tupleCollection, categoricalLengths, numericalLengths);
 
-            // 1. see which contexts are used, create an empty context for each used "slot" and
-            //    add it by its slot number to the scopes map, as each context is assigned to one scope
-            Map<Integer, Scope> scopes = new HashMap<>();
-            for (int c = 0; c < cMax; c++) {
-                if (cplex.getValue(g[c]) > 0.5) {
-                    scopes.put(c, new Scope(new Context(), new ArrayList<>(), tupleCollection.getTuplesClassName()));
-                }
+            // the integer program only approximates speech costs, so keep the warm start plan if it is not worse
+            if (warmStartPlan != null && warmStartPlan.getSpeechCost() <= plan.getSpeechCost()) {
+                return warmStartPlan;
             }
+            return plan;
 
-            // 2. iterate through categorical assignments, create categorical value assignments to the appropriate context
-            for (int c = 0; c < cMax; c++) {
-                for (int a = 0; a < attributeCount; a++) {
-                    for (int v = 0; v < categoricalLengths[a]; v++) {
-                        ArrayList<Value> valuesInDomain = new ArrayList<>();
-                        if (cplex.getValue(d[c][a][v]) > 0.5) {
-                            valuesInDomain.add(tupleCollection.getDistinctValue(a, v));
-                        }
-                        if (valuesInDomain.size() > 0) {
-                            Context context = scopes.get(c).getContext();
-                            context.addCategoricalValueAssignments(tupleCollection.attributeForIndex(a), valuesInDomain);
-                        }
-                    }
-                }
+        } catch (IloException e) {
+            failed = true;
+            incumbents.markTruncated();
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (failed) {
+                cplexPool.discard(cplex);
+            } else {
+                cplexPool.release(cplex);
             }
+        }
 
-            // 3. iterate through lower and upper bounds, create numerical value assignments to the appropriate context
-            for (int c = 0; c < cMax; c++) {
-                for (int a = 0; a < attributeCount; a++) {
-                    Value lowerBound = null;
-                    Value upperBound = null;
-                    for (int v = 0; v < numericalLengths[a]; v++) {
-                        if (cplex.getValue(l[c][a][v]) > 0.5) {
-                            lowerBound = tupleCollection.getDistinctValue(a, v);
-                        } if (cplex.getValue(u[c][a][v]) > 0.5) {
-                            upperBound = tupleCollection.getDistinctValue(a, v);
-                        }
+        return warmStartPlan;
+    }
+
+    /**
+     * Constructs the VoiceOutputPlan of a solution of the integer programming model. The scopes of the used context
+     * slots come first, in the order of the slots, followed by the scope of the tuples without a context.
+     */
+    private VoiceOutputPlan toPlan(ModelVariables.Values x, TupleCollection tupleCollection, int[] categoricalLengths,
+                                   int[] numericalLengths) {
+        int cMax = x.g.length;
+        int attributeCount = tupleCollection.attributeCount();
+
+        // 1. see which contexts are used, create an empty context for each used "slot" and
+        //    add it by its slot number to the scopes map, as each context is assigned to one scope
+        Map<Integer, Scope> scopes = new TreeMap<>();
+        for (int c = 0; c < cMax; c++) {
+            if (x.g[c] > 0.5) {
+                scopes.put(c, new Scope(new Context(), new ArrayList<>(), tupleCollection.getTuplesClassName()));
+            }
+        }
+
+        // 2. iterate through categorical assignments, create categorical value assignments to the appropriate context
+        for (int c : scopes.keySet()) {
+            for (int a = 0; a < attributeCount; a++) {
+                for (int v = 0; v < categoricalLengths[a]; v++) {
+                    ArrayList<Value> valuesInDomain = new ArrayList<>();
+                    if (x.d[c][a][v] > 0.5) {
+                        valuesInDomain.add(tupleCollection.getDistinctValue(a, v));
                     }
-                    if (lowerBound != null && upperBound != null) {
-                        scopes.get(c).getContext().addNumericalValueAssignment(tupleCollection.attributeForIndex(a), lowerBound, upperBound);
+                    if (valuesInDomain.size() > 0) {
+                        Context context = scopes.get(c).getContext();
+                        context.addCategoricalValueAssignments(tupleCollection.attributeForIndex(a), valuesInDomain);
                     }
                 }
             }
+        }
 
-            // 4. iterate through all tuples and add them to the matching context within a scope, or add them to the
-            //    scope with an empty context if they are not assigned to any context
-            Scope emptyContextScope = new Scope(null, new ArrayList<>(), tupleCollection.getTuplesClassName());
-            for (int t = 0; t < tupleCount; t++) {
-                boolean matched = false;
-                for (int c = 0; c < cMax; c++) {
-                    if (cplex.getValue(w[c][t]) > 0.5) {
-                        matched = true;
-                        scopes.get(c).addMatchingTuple(tupleCollection.getTuples().get(t));
+        // 3. iterate through lower and upper bounds, create numerical value assignments to the appropriate context
+        for (int c : scopes.keySet()) {
+            for (int a = 0; a < attributeCount; a++) {
+                Value lowerBound = null;
+                Value upperBound = null;
+                for (int v = 0; v < numericalLengths[a]; v++) {
+                    if (x.l[c][a][v] > 0.5) {
+                        lowerBound = tupleCollection.getDistinctValue(a, v);
+                    } if (x.u[c][a][v] > 0.5) {
+                        upperBound = tupleCollection.getDistinctValue(a, v);
                     }
                 }
-                if (!matched) {
-                    emptyContextScope.addMatchingTuple(tupleCollection.getTuples().get(t));
+                if (lowerBound != null && upperBound != null) {
+                    scopes.get(c).getContext().addNumericalValueAssignment(tupleCollection.attributeForIndex(a), lowerBound, upperBound);
                 }
             }
+        }
 
-            List<Scope> scopeList = new ArrayList<>();
-            for (Scope scope : scopes.values()) {
-                scopeList.add(scope);
+        // 4. iterate through all tuples and add them to the matching context within a scope, or add them to the
+        //    scope with an empty context if they are not assigned to any context
+        Scope emptyContextScope = new Scope(null, new ArrayList<>(), tupleCollection.getTuplesClassName());
+        for (int t = 0; t < tupleCollection.tupleCount(); t++) {
+            boolean matched = false;
+            for (int c : scopes.keySet()) {
+                if (x.w[c][t] > 0.5) {
+                    matched = true;
+                    scopes.get(c).addMatchingTuple(tupleCollection.getTuple(t));
+                }
+            }
+            if (!matched) {
+                emptyContextScope.addMatchingTuple(tupleCollection.getTuple(t));
             }
+        }
+
+        List<Scope> scopeList = new ArrayList<>();
+        for (Scope scope : scopes.values()) {
+            scopeList.add(scope);
+        }
+
+        // add the empty context scope at the end
+        if (emptyContextScope.numberTuples() > 0) {
+            scopeList.add(emptyContextScope);
+        }
+
+        // 5. add all scopes to a VoiceOutputPlan
+        return new VoiceOutputPlan(scopeList);
+    }
 
-            // add the empty context scope at the end
-            if (emptyContextScope.numberTuples() > 0) {
-                scopeList.add(emptyContextScope);
+    /**
+     * Passes a VoiceOutputPlan to CPLEX as a MIP start. The Context of the i'th Scope with a Context is assigned to
+     * context slot i, and each Tuple of the Scope is mapped to that slot. Scopes beyond the last slot are left out,
+     * so their Tuples are output without a Context. All variables that the plan does not set are started at 0.
+     * Scopes without unassigned Tuples do not take a slot, since used slots must come first.
+     */
+    private void addMIPStart(IloCplex cplex, ModelVariables x, VoiceOutputPlan plan, TupleCollection tupleCollection,
+                             ModelPresolve presolve, int cMax) throws IloException {
+        ModelVariables.Values start = x.zeroValues();
+        boolean[] assigned = new boolean[tupleCollection.tupleCount()];
+
+        int c = 0;
+        for (Scope scope : plan.getScopes()) {
+            if (c >= cMax) {
+                break;
+            }
+            Context context = scope.getContext();
+            if (context == null || context.getValueDomains().isEmpty() || !representable(context, tupleCollection, presolve, start, c)) {
+                continue;
+            }
+            List<Integer> scopeTuples = new ArrayList<>();
+            for (Tuple tuple : scope.getTuples()) {
+                int t = tupleCollection.indexOfTuple(tuple);
+                if (t >= 0 && !assigned[t]) {
+                    assigned[t] = true;
+                    scopeTuples.add(t);
+                }
+            }
+            if (scopeTuples.isEmpty()) {
+                continue;
             }
 
-            // 5. add all scopes to a VoiceOutputPlan
-            return new VoiceOutputPlan(scopeList);
+            for (ValueDomain domain : context.getValueDomains().values()) {
+                int a = tupleCollection.indexOfAttribute(domain.getAttribute());
+                start.f[c][a] = 1;
+                if (domain instanceof CategoricalValueDomain) {
+                    for (Value v : ((CategoricalValueDomain) domain).getDomainValues()) {
+                        start.d[c][a][tupleCollection.getIndexOfDistinctValue(a, v)] = 1;
+                    }
+                } else {
+                    int lower = tupleCollection.getIndexOfDistinctValue(a, ((NumericalValueDomain) domain).getLowerBound());
+                    int upper = tupleCollection.getIndexOfDistinctValue(a, ((NumericalValueDomain) domain).getUpperBound());
+                    start.l[c][a][lower] = 1;
+                    start.u[c][a][upper] = 1;
+                    if (lower == upper) {
+                        start.e[c][a][lower] = 1;
+                    }
+                }
+            }
 
-        } catch (IloException e) {
-            e.printStackTrace();
+            for (int t : scopeTuples) {
+                start.w[c][t] = 1;
+                start.g[c] = 1;
+                for (int a = 0; a < tupleCollection.attributeCount(); a++) {
+                    start.s[c][t][a] = start.f[c][a];
+                }
+            }
+            c++;
         }
 
-        return null;
+        cplex.addMIPStart(x.all(), start.all(), IloCplex.MIPStartEffort.Auto, "warm start");
+    }
+
+    /**
+     * Determines if every domain of Context context can be expressed by the variables of context slot c
+     */
+    private boolean representable(Context context, TupleCollection tupleCollection, ModelPresolve presolve,
+                                  ModelVariables.Values start, int c) {
+        for (ValueDomain domain : context.getValueDomains().values()) {
+            int a = tupleCollection.indexOfAttribute(domain.getAttribute());
+            if (a < 0) {
+                return false;
+            }
+            if (domain instanceof CategoricalValueDomain) {
+                for (Value v : ((CategoricalValueDomain) domain).getDomainValues()) {
+                    int code = tupleCollection.getIndexOfDistinctValue(a, v);
+                    if (code < 0 || code >= start.d[c][a].length) {
+                        return false;
+                    }
+                }
+            } else if (domain instanceof NumericalValueDomain) {
+                int lower = tupleCollection.getIndexOfDistinctValue(a, ((NumericalValueDomain) domain).getLowerBound());
+                int upper = tupleCollection.getIndexOfDistinctValue(a, ((NumericalValueDomain) domain).getUpperBound());
+                if (!presolve.isInterval(a, lower, upper) || lower >= start.l[c][a].length || upper >= start.u[c][a].length) {
+                    return false;
+                }
+            } else {
+                return false;
+            }
+        }
+        return true;
     }
 
     private IloIntVar[][] initialize2DCPLEXMatrix(IloCplex cplex, int rows, int columns) throws IloException {
@@ -308,26 +553,68 @@ public class LinearProgrammingPlanner extends NaiveVoicePlanner {
         return m;
     }
 
-    private IloIntVar[][][] initializeFull3DCPLEXMatrix(IloCplex cplex, int contextCount, int attributeCount, int tupleCount) throws IloException {
-        IloIntVar[][][] m = new IloIntVar[contextCount][][];
+    /**
+     * Creates a binary variable for every context, attribute and value. If candidates is not null, variables are
+     * only created for the values marked in candidates[a], and the other entries are left null.
+     */
+    private IloIntVar[][][] initializeVariable3DCPLEXMatrix(IloCplex cplex, int contextCount, int attributeCount, int[] lengths,
+                                                           boolean[][] candidates) throws IloException {
+        IloIntVar[][][] m = new IloIntVar[contextCount][attributeCount][0];
         for (int c = 0; c < contextCount; c++) {
-            m[c] = initialize2DCPLEXMatrix(cplex, attributeCount, tupleCount);
+            for (int a = 0; a < attributeCount; a++) {
+                if (candidates == null) {
+                    m[c][a] = cplex.intVarArray(lengths[a], 0, 1);
+                } else {
+                    m[c][a] = new IloIntVar[lengths[a]];
+                    for (int v = 0; v < lengths[a]; v++) {
+                        if (candidates[a][v]) {
+                            m[c][a][v] = cplex.intVar(0, 1);
+                        }
+                    }
+                }
+            }
         }
         return m;
     }
 
-    private IloIntVar[][][] initializeVariable3DCPLEXMatrix(IloCplex cplex, int contextCount, int attributeCount, int[] lengths) throws IloException {
-        IloIntVar[][][] m = new IloIntVar[contextCount][attributeCount][0];
-        for (int c = 0; c < contextCount; c++) {
-            for (int a = 0; a < attributeCount; a++) {
-                m[c][a] = cplex.intVarArray(lengths[a], 0, 1);
+    /**
+     * Creates the variables that mark equal bounds, only for the values that have both a lower and an upper bound
+     * variable
+     */
+    private IloIntVar[][][] initializeEqualBoundsMatrix(IloCplex cplex, IloIntVar[][][] l, IloIntVar[][][] u) throws IloException {
+        IloIntVar[][][] m = new IloIntVar[l.length][][];
+        for (int c = 0; c < l.length; c++) {
+            m[c] = new IloIntVar[l[c].length][];
+            for (int a = 0; a < l[c].length; a++) {
+                m[c][a] = new IloIntVar[l[c][a].length];
+                for (int v = 0; v < l[c][a].length; v++) {
+                    if (l[c][a][v] != null && u[c][a][v] != null) {
+                        m[c][a][v] = cplex.intVar(0, 1);
+                    }
+                }
             }
         }
         return m;
     }
 
+    /**
+     * Returns the sum of all variables that were created
+     */
+    private IloLinearIntExpr sum(IloCplex cplex, IloIntVar[] variables) throws IloException {
+        IloLinearIntExpr sum = cplex.linearIntExpr();
+        for (IloIntVar variable : variables) {
+            if (variable != null) {
+                sum.addTerm(1, variable);
+            }
+        }
+        return sum;
+    }
+
     @Override
     public String getPlannerIdentifier() {
+        if (warmStartPlanner != null) {
+            return "linear-" + warmStartPlanner.getPlannerIdentifier();
+        }
         return "linear";
     }
 }
@@ -0,0 +1,238 @@
+package planning.planners.linear;
+
+import planning.VoiceOutputPlan;
+import planning.config.Config;
+import planning.elements.*;
+
+import java.util.Arrays;
+
+/**
+ * Reductions of the integer programming model of the LinearProgrammingPlanner that are computed before the model
+ * is built, so that CPLEX is given fewer context slots and fewer variables.
+ *
+ * The number of context slots is bounded as follows. Removing a used context from a solution, together with the
+ * mapping of its tuples, changes the objective by its savings minus its cost, so every context of an optimal
+ * solution saves at least minContextCost. The tuples of different contexts are disjoint, and no tuple saves more
+ * than maxTupleSavings[t], which bounds the number of contexts that can each save minContextCost. A heuristic plan
+ * with objective h additionally bounds the total cost of the contexts of an optimal solution by the sum of all
+ * maxTupleSavings plus h.
+ *
+ * Lower and upper bound variables of numerical domains are kept only for the values that are the lower or upper
+ * bound of some interval allowed by the maximal numerical domain width.
+ */
+class ModelPresolve {
+    final TupleCollection tupleCollection;
+    final SpeechCostModel costModel;
+    final Config config;
+    final int primaryKey;
+    final int minContextCost;
+    final int[] maxTupleSavings;
+    final boolean[][] lowerBoundCandidates;
+    final boolean[][] upperBoundCandidates;
+
+    ModelPresolve(TupleCollection tupleCollection, Config config) {
+        this.tupleCollection = tupleCollection;
+        this.costModel = tupleCollection.getCostModel();
+        this.config = config;
+        this.primaryKey = tupleCollection.getPrimaryKeyIndex();
+        this.minContextCost = minContextCost();
+        this.maxTupleSavings = maxTupleSavings();
+        this.lowerBoundCandidates = new boolean[tupleCollection.attributeCount()][];
+        this.upperBoundCandidates = new boolean[tupleCollection.attributeCount()][];
+        findBoundCandidates();
+    }
+
+    /**
+     * Returns the cost of the cheapest context that fixes at least one attribute. A context that fixes no attribute
+     * saves nothing and is never part of an optimal solution.
+     */
+    private int minContextCost() {
+        int cheapestDomain = Integer.MAX_VALUE;
+        for (int a = 0; a < tupleCollection.attributeCount(); a++) {
+            if (a == primaryKey) {
+                continue;
+            }
+            for (int v = 0; v < tupleCollection.distinctValueCountForAttribute(a); v++) {
+                cheapestDomain = Math.min(cheapestDomain, costModel.attributeCost(a) + costModel.distinctValueCost(a, v));
+            }
+        }
+        if (cheapestDomain == Integer.MAX_VALUE) {
+            cheapestDomain = 0;
+        }
+        return Math.max(1, Scope.contextOverheadCost(tupleCollection.getTuplesClassName()) + cheapestDomain);
+    }
+
+    /**
+     * Returns for every tuple the savings of outputting it within a context that fixes its most expensive
+     * attributes, up to the maximal context size
+     */
+    private int[] maxTupleSavings() {
+        int attributeCount = tupleCollection.attributeCount();
+        int maxContextSize = config.getMaxAllowableContextSize();
+        int[] savings = new int[tupleCollection.tupleCount()];
+        for (int t = 0; t < savings.length; t++) {
+            int[] attributeSavings = new int[attributeCount];
+            for (int a = 0; a < attributeCount; a++) {
+                attributeSavings[a] = a == primaryKey ? 0 : costModel.attributeSavings(t, a);
+            }
+            Arrays.sort(attributeSavings);
+            for (int i = attributeCount - 1; i >= Math.max(0, attributeCount - maxContextSize); i--) {
+                savings[t] += attributeSavings[i];
+            }
+        }
+        return savings;
+    }
+
+    /**
+     * Marks the distinct values of every numerical attribute that can be the lower bound or the upper bound of an
+     * interval within the constraints of the model, i.e. lower <= upper <= 1.01 * width * lower. The upper bounds of
+     * a lower bound form a run of the sorted distinct values, whose end only moves forward as the lower bound grows,
+     * since the width is not negative, so both are found with two pointers.
+     */
+    private void findBoundCandidates() {
+        double maxWidth = 1.01 * config.getMaxAllowableNumericalDomainWidth();
+        for (int a = 0; a < tupleCollection.attributeCount(); a++) {
+            boolean hasBounds = a != primaryKey && tupleCollection.attributeIsNumerical(a);
+            int valueCount = hasBounds ? tupleCollection.distinctValueCountForAttribute(a) : 0;
+            lowerBoundCandidates[a] = new boolean[valueCount];
+            upperBoundCandidates[a] = new boolean[valueCount];
+            if (!hasBounds) {
+                continue;
+            }
+
+            int[] sorted = tupleCollection.distinctValueIndicesSortedByValue(a);
+            double[] sortedValues = new double[sorted.length];
+            for (int i = 0; i < sorted.length; i++) {
+                sortedValues[i] = tupleCollection.getDistinctValue(a, sorted[i]).linearProgrammingCoefficient();
+            }
+
+            int end = 0;
+            int markedEnd = 0;
+            for (int lower = 0; lower < sorted.length; lower++) {
+                // upper bounds of lower are the values from lower up to end, exclusive
+                while (end < sorted.length && sortedValues[end] <= maxWidth * sortedValues[lower]) {
+                    end++;
+                }
+                if (end <= lower) {
+                    continue;
+                }
+                lowerBoundCandidates[a][sorted[lower]] = true;
+                for (int upper = Math.max(lower, markedEnd); upper < end; upper++) {
+                    upperBoundCandidates[a][sorted[upper]] = true;
+                }
+                markedEnd = Math.max(markedEnd, end);
+            }
+        }
+    }
+
+    /**
+     * Returns an upper bound on the number of contexts of an optimal solution, given the objective of a heuristic
+     * solution, which is at most 0
+     */
+    int contextSlots(int heuristicObjective) {
+        long cappedSavings = 0;
+        long totalSavings = 0;
+        for (int savings : maxTupleSavings) {
+            cappedSavings += Math.min(savings, minContextCost);
+            totalSavings += savings;
+        }
+        long disjointBound = cappedSavings / minContextCost;
+        long heuristicBound = (totalSavings + Math.min(0, heuristicObjective)) / minContextCost;
+        long bound = Math.min(tupleCollection.tupleCount() / 2, Math.min(disjointBound, heuristicBound));
+        return (int) Math.max(1, bound);
+    }
+
+    /**
+     * Returns the objective value that the model assigns to VoiceOutputPlan plan, counting only the Scopes whose
+     * Context is feasible in the model and lowers the objective. The result is the objective of a feasible solution
+     * of the model and is at most 0.
+     */
+    int objective(VoiceOutputPlan plan) {
+        if (plan == null) {
+            return 0;
+        }
+        boolean[] assigned = new boolean[tupleCollection.tupleCount()];
+        int objective = 0;
+        for (Scope scope : plan.getScopes()) {
+            Context context = scope.getContext();
+            if (context == null || context.getValueDomains().isEmpty()) {
+                continue;
+            }
+            int cost = contextCost(context);
+            if (cost < 0) {
+                continue;
+            }
+
+            int savings = 0;
+            for (Tuple tuple : scope.getTuples()) {
+                int t = tupleCollection.indexOfTuple(tuple);
+                if (t < 0 || assigned[t] || !tupleCollection.getMatchIndex().matches(context, t)) {
+                    continue;
+                }
+                assigned[t] = true;
+                for (ValueDomain domain : context.getValueDomains().values()) {
+                    savings += costModel.attributeSavings(t, tupleCollection.indexOfAttribute(domain.getAttribute()));
+                }
+            }
+            objective += Math.min(0, cost - savings);
+        }
+        return objective;
+    }
+
+    /**
+     * Returns the cost that the model assigns to Context context, or -1 if the model cannot express it
+     */
+    private int contextCost(Context context) {
+        if (context.getValueDomains().size() > config.getMaxAllowableContextSize()) {
+            return -1;
+        }
+        int cost = Scope.contextOverheadCost(tupleCollection.getTuplesClassName());
+        for (ValueDomain domain : context.getValueDomains().values()) {
+            int a = tupleCollection.indexOfAttribute(domain.getAttribute());
+            if (a < 0 || a == primaryKey) {
+                return -1;
+            }
+            cost += costModel.attributeCost(a);
+            if (domain instanceof CategoricalValueDomain) {
+                CategoricalValueDomain categoricalDomain = (CategoricalValueDomain) domain;
+                if (!tupleCollection.attributeIsCategorical(a)
+                        || categoricalDomain.getDomainValues().size() > config.getMaxAllowableCategoricalDomainSize()) {
+                    return -1;
+                }
+                for (Value v : categoricalDomain.getDomainValues()) {
+                    int code = tupleCollection.getIndexOfDistinctValue(a, v);
+                    if (code < 0) {
+                        return -1;
+                    }
+                    cost += costModel.distinctValueCost(a, code);
+                }
+            } else if (domain instanceof NumericalValueDomain && tupleCollection.attributeIsNumerical(a)) {
+                int lower = tupleCollection.getIndexOfDistinctValue(a, ((NumericalValueDomain) domain).getLowerBound());
+                int upper = tupleCollection.getIndexOfDistinctValue(a, ((NumericalValueDomain) domain).getUpperBound());
+                if (!isInterval(a, lower, upper)) {
+                    return -1;
+                }
+                cost += costModel.distinctValueCost(a, lower);
+                if (lower != upper) {
+                    cost += NumericalValueDomain.speechCostForUnequalBounds() + costModel.distinctValueCost(a, upper);
+                }
+            } else {
+                return -1;
+            }
+        }
+        return cost;
+    }
+
+    /**
+     * Determines if the lower'th and upper'th distinct values of numerical attribute a bound an interval of the model
+     */
+    boolean isInterval(int a, int lower, int upper) {
+        if (lower < 0 || upper < 0 || lower >= lowerBoundCandidates[a].length || upper >= upperBoundCandidates[a].length
+                || !lowerBoundCandidates[a][lower] || !upperBoundCandidates[a][upper]) {
+            return false;
+        }
+        double lowerValue = tupleCollection.getDistinctValue(a, lower).linearProgrammingCoefficient();
+        double upperValue = tupleCollection.getDistinctValue(a, upper).linearProgrammingCoefficient();
+        return lowerValue <= upperValue && upperValue <= 1.01 * config.getMaxAllowableNumericalDomainWidth() * lowerValue;
+    }
+}
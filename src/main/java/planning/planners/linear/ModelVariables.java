@@ -0,0 +1,186 @@
+package planning.planners.linear;
+
+import ilog.concert.IloIntVar;
+import ilog.concert.IloNumVar;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The decision variables of the integer programming model of the LinearProgrammingPlanner, indexed by context
+ * slot c, tuple t, attribute a and distinct value v:
+ * w[c][t] maps tuple t to context c, f[c][a] fixes attribute a in context c, l[c][a][v] and u[c][a][v] select
+ * the lower and upper bound of a numerical domain, e[c][a][v] marks equal bounds, d[c][a][v] adds a value to a
+ * categorical domain, s[c][t][a] marks the savings of tuple t for attribute a in context c, and g[c] marks that
+ * context c is used.
+ */
+class ModelVariables {
+    final IloIntVar[][] w;
+    final IloIntVar[][] f;
+    final IloIntVar[][][] l;
+    final IloIntVar[][][] u;
+    final IloIntVar[][][] d;
+    final IloIntVar[][][] e;
+    final IloIntVar[][][] s;
+    final IloIntVar[] g;
+
+    ModelVariables(IloIntVar[][] w, IloIntVar[][] f, IloIntVar[][][] l, IloIntVar[][][] u, IloIntVar[][][] d,
+                   IloIntVar[][][] e, IloIntVar[][][] s, IloIntVar[] g) {
+        this.w = w;
+        this.f = f;
+        this.l = l;
+        this.u = u;
+        this.d = d;
+        this.e = e;
+        this.s = s;
+        this.g = g;
+    }
+
+    /**
+     * Returns all variables of the model in a fixed order that matches Values.all()
+     */
+    IloNumVar[] all() {
+        List<IloNumVar> all = new ArrayList<>();
+        addAll(all, g);
+        addAll(all, w);
+        addAll(all, f);
+        addAll(all, l);
+        addAll(all, u);
+        addAll(all, d);
+        addAll(all, e);
+        addAll(all, s);
+        return all.toArray(new IloNumVar[0]);
+    }
+
+    private static void addAll(List<IloNumVar> all, Object variables) {
+        if (variables instanceof IloIntVar) {
+            all.add((IloIntVar) variables);
+        } else if (variables instanceof Object[]) {
+            for (Object v : (Object[]) variables) {
+                addAll(all, v);
+            }
+        }
+    }
+
+    /**
+     * Returns a Values instance with a value of 0 for every variable
+     */
+    Values zeroValues() {
+        return new Values();
+    }
+
+    /**
+     * Returns a Values instance with the given values, in the order of all(), e.g. a solution returned by CPLEX.
+     * Variables that do not exist in the model get the value 0.
+     */
+    Values values(double[] all) {
+        Values values = new Values();
+        int next = 0;
+        next = values.set(values.g, g, all, next);
+        next = values.set(values.w, w, all, next);
+        next = values.set(values.f, f, all, next);
+        next = values.set(values.l, l, all, next);
+        next = values.set(values.u, u, all, next);
+        next = values.set(values.d, d, all, next);
+        next = values.set(values.e, e, all, next);
+        values.set(values.s, s, all, next);
+        return values;
+    }
+
+    /**
+     * One value for each variable of the model, e.g. a MIP start. A value is only kept for variables that exist
+     * in the model.
+     */
+    class Values {
+        final double[][] w = zerosLike(ModelVariables.this.w);
+        final double[][] f = zerosLike(ModelVariables.this.f);
+        final double[][][] l = zerosLike(ModelVariables.this.l);
+        final double[][][] u = zerosLike(ModelVariables.this.u);
+        final double[][][] d = zerosLike(ModelVariables.this.d);
+        final double[][][] e = zerosLike(ModelVariables.this.e);
+        final double[][][] s = zerosLike(ModelVariables.this.s);
+        final double[] g = new double[ModelVariables.this.g.length];
+
+        /**
+         * Returns all values in the order of ModelVariables.all()
+         */
+        double[] all() {
+            List<Double> all = new ArrayList<>();
+            addAll(all, g, ModelVariables.this.g);
+            addAll(all, w, ModelVariables.this.w);
+            addAll(all, f, ModelVariables.this.f);
+            addAll(all, l, ModelVariables.this.l);
+            addAll(all, u, ModelVariables.this.u);
+            addAll(all, d, ModelVariables.this.d);
+            addAll(all, e, ModelVariables.this.e);
+            addAll(all, s, ModelVariables.this.s);
+
+            double[] result = new double[all.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = all.get(i);
+            }
+            return result;
+        }
+
+        /**
+         * Copies values from all, starting at index next, into the entries of values whose variable exists, and
+         * returns the index of the first value that was not copied
+         */
+        private int set(Object values, Object variables, double[] all, int next) {
+            if (values instanceof double[]) {
+                double[] row = (double[]) values;
+                Object[] variableRow = (Object[]) variables;
+                for (int i = 0; i < row.length; i++) {
+                    if (variableRow[i] != null) {
+                        row[i] = all[next++];
+                    }
+                }
+            } else {
+                Object[] rows = (Object[]) values;
+                Object[] variableRows = (Object[]) variables;
+                for (int i = 0; i < rows.length; i++) {
+                    if (variableRows[i] != null) {
+                        next = set(rows[i], variableRows[i], all, next);
+                    }
+                }
+            }
+            return next;
+        }
+
+        private void addAll(List<Double> all, Object values, Object variables) {
+            if (values instanceof double[]) {
+                double[] row = (double[]) values;
+                Object[] variableRow = (Object[]) variables;
+                for (int i = 0; i < row.length; i++) {
+                    if (variableRow[i] != null) {
+                        all.add(row[i]);
+                    }
+                }
+            } else {
+                Object[] rows = (Object[]) values;
+                Object[] variableRows = (Object[]) variables;
+                for (int i = 0; i < rows.length; i++) {
+                    if (variableRows[i] != null) {
+                        addAll(all, rows[i], variableRows[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    private static double[][] zerosLike(IloIntVar[][] variables) {
+        double[][] zeros = new double[variables.length][];
+        for (int i = 0; i < variables.length; i++) {
+            zeros[i] = new double[variables[i] == null ? 0 : variables[i].length];
+        }
+        return zeros;
+    }
+
+    private static double[][][] zerosLike(IloIntVar[][][] variables) {
+        double[][][] zeros = new double[variables.length][][];
+        for (int i = 0; i < variables.length; i++) {
+            zeros[i] = variables[i] == null ? new double[0][] : zerosLike(variables[i]);
+        }
+        return zeros;
+    }
+}
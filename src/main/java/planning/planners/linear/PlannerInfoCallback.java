@@ -0,0 +1,42 @@
+package planning.planners.linear;
+
+import ilog.concert.IloException;
+import ilog.cplex.IloCplex;
+
+/**
+ * Connects a CPLEX solve to the planner that started it. The solve is aborted once the planner thread is
+ * interrupted, e.g. because the PlanningManager gave up on the plan, and incumbentFound() is called whenever CPLEX
+ * has found a better incumbent, so that planners can offer it as an intermediate plan.
+ *
+ * CPLEX calls the callback regularly during the branch and bound search, possibly from its own worker threads, so
+ * the interrupt status of the planner thread is checked rather than that of the current thread.
+ */
+public class PlannerInfoCallback extends IloCplex.MIPInfoCallback {
+    private final Thread plannerThread;
+    private double incumbentObjective = Double.POSITIVE_INFINITY;
+
+    public PlannerInfoCallback(Thread plannerThread) {
+        this.plannerThread = plannerThread;
+    }
+
+    @Override
+    protected synchronized void main() throws IloException {
+        if (plannerThread.isInterrupted()) {
+            abort();
+            return;
+        }
+        // objective values of the models are integral
+        if (hasIncumbent() && getIncumbentObjValue() < incumbentObjective - 0.5) {
+            incumbentObjective = getIncumbentObjValue();
+            incumbentFound();
+        }
+    }
+
+    /**
+     * Called when CPLEX has found an incumbent that is better than the previous one. The values of the incumbent
+     * are available through getIncumbentValues(). Does nothing by default.
+     */
+    protected void incumbentFound() throws IloException {
+
+    }
+}
@@ -0,0 +1,258 @@
+package planning.planners.portfolio;
+
+import planning.IncumbentTracker;
+import planning.PlannerRun;
+import planning.VoiceOutputPlan;
+import planning.VoicePlanner;
+import planning.config.Config;
+import planning.elements.TupleCollection;
+import planning.planners.greedy.GreedyPlanner;
+import planning.planners.hybrid.ContextPruner;
+import planning.planners.hybrid.HybridPlanner;
+import planning.planners.hybrid.TupleCoveringPruner;
+import planning.planners.linear.LinearProgrammingPlanner;
+import planning.planners.naive.NaiveVoicePlanner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs several planners at the same time on the same TupleCollection and returns the cheapest plan any of them
+ * found before the deadline, which is the timeout of the Config less a margin of DEADLINE_MARGIN_MILLIS, or of
+ * DEADLINE_MARGIN_PERCENT of the timeout if that is less, so that short timeouts leave time to plan. Planners that are still
+ * running at the deadline, or once one planner proved its plan optimal, are cancelled. The best plans of all
+ * planners are offered to the IncumbentTracker of the portfolio as they are found, and the outcome of every planner
+ * is recorded with it. If planners were cancelled at the deadline, the plan is marked truncated.
+ *
+ * By default the portfolio consists of a GreedyPlanner, a HybridPlanner for each given ContextPruner, and a
+ * LinearProgrammingPlanner. The planners run on a separate executor, not on the PlanningExecutor that runs the
+ * portfolio itself, so that they cannot wait for a thread that the portfolio holds. By default this is a bounded pool
+ * that all portfolios share.
+ */
+public class PortfolioPlanner extends NaiveVoicePlanner {
+    /**
+     * The time left for the portfolio to return its plan to the PlanningManager after the deadline
+     */
+    static final long DEADLINE_MARGIN_MILLIS = 1000;
+
+    /**
+     * The largest share of the timeout that is kept as margin
+     */
+    static final long DEADLINE_MARGIN_PERCENT = 10;
+
+    /**
+     * The number of planners of a default portfolio with one hybrid pruner
+     */
+    static final int DEFAULT_PLANNER_COUNT = 3;
+
+    private static final ThreadPoolExecutor sharedExecutor = newSharedExecutor(
+            DEFAULT_PLANNER_COUNT * Runtime.getRuntime().availableProcessors());
+
+    private final List<VoicePlanner> planners;
+    private final ExecutorService executor;
+
+    /**
+     * Constructs a portfolio of a GreedyPlanner, a HybridPlanner with a TupleCoveringPruner and a
+     * LinearProgrammingPlanner
+     */
+    public PortfolioPlanner() {
+        this(new TupleCoveringPruner(10));
+    }
+
+    /**
+     * Constructs a portfolio of a GreedyPlanner, a HybridPlanner for each of the given pruners and a
+     * LinearProgrammingPlanner
+     */
+    public PortfolioPlanner(ContextPruner... hybridPruners) {
+        this(defaultPlanners(hybridPruners), sharedExecutor);
+    }
+
+    public PortfolioPlanner(List<? extends VoicePlanner> planners, ExecutorService executor) {
+        this.planners = new ArrayList<>(planners);
+        this.executor = executor;
+    }
+
+    /**
+     * Creates the executor that default portfolios share, with threadCount daemon threads, which end when they are
+     * idle for a minute. The PlanningExecutor runs one portfolio per processor, so one thread per planner of each of
+     * them lets all planners run at once, and planners beyond that wait in the queue until the deadline at most.
+     */
+    private static ThreadPoolExecutor newSharedExecutor(int threadCount) {
+        final AtomicInteger threadNumber = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "portfolio-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Returns the load of the executor that default portfolios share
+     */
+    public static ExecutorStatistics getSharedExecutorStatistics() {
+        return new ExecutorStatistics(sharedExecutor.getMaximumPoolSize(), sharedExecutor.getActiveCount(),
+                sharedExecutor.getQueue().size(), sharedExecutor.getCompletedTaskCount());
+    }
+
+    private static List<VoicePlanner> defaultPlanners(ContextPruner... hybridPruners) {
+        List<VoicePlanner> planners = new ArrayList<>();
+        planners.add(new GreedyPlanner());
+        for (ContextPruner pruner : hybridPruners) {
+            planners.add(new HybridPlanner(pruner));
+        }
+        planners.add(new LinearProgrammingPlanner());
+        return planners;
+    }
+
+    @Override
+    public VoiceOutputPlan plan(TupleCollection tupleCollection, Config config) {
+        return plan(tupleCollection, config, new IncumbentTracker());
+    }
+
+    @Override
+    public VoiceOutputPlan plan(final TupleCollection tupleCollection, final Config config, IncumbentTracker incumbents) {
+        final long startTime = System.currentTimeMillis();
+        long timeoutMillis = config.getTimeout() * 1000L;
+        long deadline = startTime + timeoutMillis - deadlineMargin(timeoutMillis);
+
+        int plannerCount = planners.size();
+        final IncumbentTracker[] trackers = new IncumbentTracker[plannerCount];
+        final long[] executionTimes = new long[plannerCount];
+        String[] outcomes = new String[plannerCount];
+        List<Future<VoiceOutputPlan>> futures = new ArrayList<>();
+        boolean provenOptimal = false;
+        CompletionService<VoiceOutputPlan> completionService = new ExecutorCompletionService<>(executor);
+
+        for (int p = 0; p < plannerCount; p++) {
+            final int plannerIndex = p;
+            final VoicePlanner planner = planners.get(p);
+            trackers[p] = new IncumbentTracker(incumbents);
+            futures.add(completionService.submit(new Callable<VoiceOutputPlan>() {
+                @Override
+                public VoiceOutputPlan call() throws Exception {
+                    try {
+                        return planner.plan(tupleCollection, config, trackers[plannerIndex]);
+                    } finally {
+                        executionTimes[plannerIndex] = System.currentTimeMillis() - startTime;
+                    }
+                }
+            }));
+        }
+
+        try {
+            for (int finished = 0; finished < plannerCount; finished++) {
+                long remainingMillis = deadline - System.currentTimeMillis();
+                Future<VoiceOutputPlan> future = remainingMillis > 0
+                        ? completionService.poll(remainingMillis, TimeUnit.MILLISECONDS) : null;
+                if (future == null) {
+                    break;
+                }
+
+                int p = futures.indexOf(future);
+                try {
+                    trackers[p].offer(future.get(), planners.get(p).getPlannerIdentifier() + ": complete");
+                    outcomes[p] = trackers[p].isOptimal() ? PlannerRun.OPTIMAL : PlannerRun.COMPLETE;
+                } catch (ExecutionException e) {
+                    outcomes[p] = PlannerRun.FAILED;
+                }
+                if (trackers[p].isOptimal()) {
+                    provenOptimal = true;
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (Future<VoiceOutputPlan> future : futures) {
+                future.cancel(true);
+            }
+        }
+
+        VoiceOutputPlan best = null;
+        int bestCost = Integer.MAX_VALUE;
+        boolean truncated = false;
+        for (int p = 0; p < plannerCount; p++) {
+            String outcome = outcomes[p] == null ? PlannerRun.CANCELLED : outcomes[p];
+            long executionTime = outcomes[p] == null ? System.currentTimeMillis() - startTime : executionTimes[p];
+            VoiceOutputPlan plan = trackers[p].getBest();
+            incumbents.addPlannerRun(new PlannerRun(planners.get(p).getPlannerIdentifier(), executionTime,
+                    plan == null ? null : trackers[p].getBestCost(), outcome));
+            if (outcomes[p] == null || trackers[p].isTruncated()) {
+                truncated = true;
+            }
+            if (plan != null && trackers[p].getBestCost() < bestCost) {
+                best = plan;
+                bestCost = trackers[p].getBestCost();
+            }
+        }
+        // planners that were cancelled at the deadline, or that stopped early themselves, may have missed a cheaper
+        // plan, unless another planner proved its plan optimal
+        if (truncated && !provenOptimal) {
+            incumbents.markTruncated();
+        }
+
+        checkForCancellation();
+        return best;
+    }
+
+    /**
+     * Returns the time that is kept for returning the plan from a timeout of timeoutMillis
+     */
+    static long deadlineMargin(long timeoutMillis) {
+        return Math.min(DEADLINE_MARGIN_MILLIS, timeoutMillis * DEADLINE_MARGIN_PERCENT / 100);
+    }
+
+    /**
+     * Returns "portfolio" followed by the identifiers of the planners of the portfolio, e.g.
+     * "portfolio(greedy-FANTOM,naive)", so that portfolios of different planners are told apart
+     */
+    @Override
+    public String getPlannerIdentifier() {
+        List<String> identifiers = new ArrayList<>();
+        for (VoicePlanner planner : planners) {
+            identifiers.add(planner.getPlannerIdentifier());
+        }
+        return "portfolio(" + String.join(",", identifiers) + ")";
+    }
+
+    /**
+     * A snapshot of the load of the executor of portfolios and of the number of planners it has completed so far
+     */
+    public static class ExecutorStatistics {
+        final int threadCount;
+        final int activeThreads;
+        final int queueDepth;
+        final long completedPlanners;
+
+        ExecutorStatistics(int threadCount, int activeThreads, int queueDepth, long completedPlanners) {
+            this.threadCount = threadCount;
+            this.activeThreads = activeThreads;
+            this.queueDepth = queueDepth;
+            this.completedPlanners = completedPlanners;
+        }
+
+        public int getThreadCount() {
+            return threadCount;
+        }
+
+        public int getActiveThreads() {
+            return activeThreads;
+        }
+
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        public long getCompletedPlanners() {
+            return completedPlanners;
+        }
+    }
+}
@@ -3,6 +3,9 @@ import java.text.DecimalFormat;
 
 /**
  * credit: http://www.rgagnon.com/javadetails/java-0426.html
+ *
+ * Speech costs only need the length of a number in words, so convertedLength computes it from the letters and
+ * words of each group of three digits, which are looked up in tables for 0 to 999 instead of building the words.
  */
 public class EnglishNumberToWords {
 
@@ -42,6 +45,27 @@ public class EnglishNumberToWords {
             " nineteen"
     };
 
+    /**
+     * The largest number whose words are built from groups of three digits, 999 999 999 999
+     */
+    private static final long MAX_GROUPED = 999999999999L;
+
+    /**
+     * The letters and words of convertLessThanOneThousand(n) for n from 0 to 999
+     */
+    private static final byte[] lettersLessThanOneThousand = new byte[1000];
+    private static final byte[] wordsLessThanOneThousand = new byte[1000];
+
+    static {
+        for (int n = 0; n < 1000; n++) {
+            String words = convertLessThanOneThousand(n);
+            // every word is preceded by a space
+            int wordCount = words.length() - words.replace(" ", "").length();
+            wordsLessThanOneThousand[n] = (byte) wordCount;
+            lettersLessThanOneThousand[n] = (byte) (words.length() - wordCount);
+        }
+    }
+
     private EnglishNumberToWords() {}
 
     private static String convertLessThanOneThousand(int number) {
@@ -134,4 +158,51 @@ public class EnglishNumberToWords {
         // remove extra spaces!
         return result.replaceAll("^\\s+", "").replaceAll("\\b\\s{2,}\\b", " ");
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns convert(number).length() without building the words of number
+     */
+    public static int convertedLength(long number) {
+        if (number == 0) {
+            return "zero".length();
+        }
+        if (number < 0 || number > MAX_GROUPED) {
+            return convert(number).length();
+        }
+        int billions = (int) (number / 1000000000L);
+        int millions = (int) (number / 1000000L % 1000);
+        int hundredThousands = (int) (number / 1000L % 1000);
+        int thousands = (int) (number % 1000);
+
+        int letters = lettersLessThanOneThousand[thousands];
+        int words = wordsLessThanOneThousand[thousands];
+        if (billions != 0) {
+            letters += lettersLessThanOneThousand[billions] + "billion".length();
+            words += wordsLessThanOneThousand[billions] + 1;
+        }
+        if (millions != 0) {
+            letters += lettersLessThanOneThousand[millions] + "million".length();
+            words += wordsLessThanOneThousand[millions] + 1;
+        }
+        if (hundredThousands != 0) {
+            letters += lettersLessThanOneThousand[hundredThousands] + "thousand".length();
+            words += wordsLessThanOneThousand[hundredThousands] + 1;
+        }
+        // words are separated by one space, and a scale word without a following group keeps its trailing space
+        return letters + words - 1 + (endsWithSpace(number) ? 1 : 0);
+    }
+
+    /**
+     * Returns convert(number).trim().length() without building the words of number
+     */
+    public static int trimmedLength(long number) {
+        if (number < 0 || number > MAX_GROUPED) {
+            return convert(number).trim().length();
+        }
+        return convertedLength(number) - (endsWithSpace(number) ? 1 : 0);
+    }
+
+    private static boolean endsWithSpace(long number) {
+        return number != 0 && number % 1000 == 0;
+    }
+}
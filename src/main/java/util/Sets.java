@@ -1,9 +1,6 @@
 package util;
 
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 
 /**
  * Utility methods for Sets
@@ -46,11 +43,89 @@ public class Sets {
      */
     public static <T> Set<Set<T>> subsetsOfSize(Set<T> originalSet, int k) {
         Set<Set<T>> filteredSets = new HashSet<>();
-        for (Set<T> set : powerSet(originalSet)) {
-            if (set.size() <= k && set.size() > 0) {
-                filteredSets.add(set);
-            }
+        for (List<T> subset : combinations(new ArrayList<>(originalSet), k)) {
+            filteredSets.add(new HashSet<>(subset));
         }
         return filteredSets;
     }
+
+    /**
+     * Lazily enumerates all combinations of at least one and at most k elements of a list, smallest
+     * combinations first. Unlike subsetsOfSize(), this never materializes the power set: each combination
+     * is generated from an array of element indices when the iterator reaches it, so enumerating all
+     * combinations of n elements takes O(n^k) time and O(k) additional space.
+     *
+     * @param elements The distinct elements from which to build combinations
+     * @param k The maximum number of elements in a combination
+     * @param <T> The type of the elements
+     * @return An Iterable over all non-empty combinations with at most k elements
+     */
+    public static <T> Iterable<List<T>> combinations(final List<T> elements, final int k) {
+        return new Iterable<List<T>>() {
+            @Override
+            public Iterator<List<T>> iterator() {
+                return new CombinationIterator<>(elements, Math.min(k, elements.size()));
+            }
+        };
+    }
+
+    /**
+     * Iterates over combinations in order of increasing size, and within a size in lexicographic order
+     * of element indices.
+     */
+    private static class CombinationIterator<T> implements Iterator<List<T>> {
+        final List<T> elements;
+        final int maxSize;
+        int[] indices;
+
+        CombinationIterator(List<T> elements, int maxSize) {
+            this.elements = elements;
+            this.maxSize = maxSize;
+            this.indices = maxSize > 0 ? new int[]{0} : null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return indices != null;
+        }
+
+        @Override
+        public List<T> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            List<T> combination = new ArrayList<>(indices.length);
+            for (int i : indices) {
+                combination.add(elements.get(i));
+            }
+            advance();
+            return combination;
+        }
+
+        /**
+         * Moves indices to the next combination of the same size, or to the first combination of the next
+         * size once all combinations of the current size have been produced.
+         */
+        private void advance() {
+            int n = elements.size();
+            int size = indices.length;
+            int i = size - 1;
+            while (i >= 0 && indices[i] == n - size + i) {
+                i--;
+            }
+            if (i >= 0) {
+                indices[i]++;
+                for (int j = i + 1; j < size; j++) {
+                    indices[j] = indices[j - 1] + 1;
+                }
+            } else if (size < maxSize) {
+                indices = new int[size + 1];
+                for (int j = 0; j < indices.length; j++) {
+                    indices[j] = j;
+                }
+            } else {
+                indices = null;
+            }
+        }
+    }
 }
@@ -1,10 +1,18 @@
 package data;
 
 import junit.framework.TestCase;
+import planning.ParallelTasks;
+import planning.config.Config;
 import planning.elements.Tuple;
 import planning.elements.TupleCollection;
 import planning.elements.Value;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ThreadPoolExecutor;
+
 public class CSVConnectorTest extends TestCase {
 
     public void testBuildTupleCollectionFromCSVStringWithoutTypes() throws Exception {
@@ -108,4 +116,95 @@ public class CSVConnectorTest extends TestCase {
         assertTrue(t.valueForAttribute("att2").equals(new Value(2)));
         assertTrue(t.valueForAttribute("att3").equals(new Value(5.4)));
     }
+
+    private String restaurantsCSV(int rows) {
+        String[] prices = {"low", "medium", "high"};
+        String[] cuisines = {"Italian", "Mexican", "Thai", "American", "Diner"};
+        StringBuilder csv = new StringBuilder();
+        for (int r = 0; r < rows; r++) {
+            csv.append("Restaurant ").append(r).append(',').append((r * 7 % 50 + 1) / 10.0).append(',')
+                    .append(prices[r % prices.length]).append(',').append(cuisines[r * 3 % cuisines.length])
+                    .append('\n');
+        }
+        return csv.toString();
+    }
+
+    private Config config(int parallelism) throws Exception {
+        Config config = new Config();
+        config.setParallelism(parallelism);
+        return config;
+    }
+
+    private void assertSameTuples(TupleCollection expected, TupleCollection actual) {
+        assertEquals(expected.tupleCount(), actual.tupleCount());
+        for (int a = 0; a < expected.attributeCount(); a++) {
+            assertEquals(expected.distinctValueCountForAttribute(a), actual.distinctValueCountForAttribute(a));
+            for (int t = 0; t < expected.tupleCount(); t++) {
+                assertEquals(expected.getIndexOfDistinctValue(a, t), actual.getIndexOfDistinctValue(a, t));
+            }
+        }
+    }
+
+    public void testFileIsParsedInParallelChunks() throws Exception {
+        String[] header = new String[]{"restaurant:STRING", "rating:DOUBLE", "price:STRING", "cuisine:STRING"};
+        String csv = restaurantsCSV(100000);
+        assertTrue(csv.length() > 3 * CSVConnector.MIN_CHUNK_BYTES);
+        Path file = Files.createTempFile("restaurants", ".csv");
+        try {
+            Files.write(file, csv.getBytes(StandardCharsets.UTF_8));
+            CSVConnector connector = new CSVConnector();
+            TupleCollection sequential = connector.buildTupleCollectionFromCSV("Restaurants", csv, header);
+            TupleCollection parallel = connector.buildTupleCollectionFromCSVFile("Restaurants", file, config(4), header);
+            assertSameTuples(sequential, parallel);
+            assertEquals(sequential.getNumericalValueForAttributeAndTuple(1, 99999),
+                    parallel.getNumericalValueForAttributeAndTuple(1, 99999));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    public void testFileWithHeaderLineAndQuotes() throws Exception {
+        Path file = Files.createTempFile("people", ".csv");
+        try {
+            Files.write(file, ("name,age:INTEGER,hometown\n" +
+                    "Mark,21,Edina\n" +
+                    "Jack,21,\"New York\nCity\"\n").getBytes(StandardCharsets.UTF_8));
+            TupleCollection tuples = new CSVConnector().buildTupleCollectionFromCSVFile("People", file, config(4));
+
+            assertEquals(Arrays.asList("name", "age", "hometown"), tuples.getAttributes());
+            assertEquals(2, tuples.tupleCount());
+            assertTrue(tuples.getTuple(0).valueForAttribute("age").equals(new Value(21)));
+            assertTrue(tuples.getTuple(1).valueForAttribute("hometown").equals(new Value("New York\nCity")));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    public void testFileWithQuotedLineEndsIsParsedInParallelChunks() throws Exception {
+        String[] header = new String[]{"restaurant:STRING", "rating:DOUBLE", "address:STRING"};
+        StringBuilder csv = new StringBuilder();
+        for (int r = 0; r < 100000; r++) {
+            csv.append("Restaurant ").append(r).append(',').append(r % 50 / 10.0).append(",\"")
+                    .append(r).append(" College Ave\n").append(r % 3 == 0 ? "\"\"Suite\"\" 2\nIthaca" : "Ithaca")
+                    .append("\"\n");
+        }
+        assertTrue(csv.length() > 4 * CSVConnector.MIN_CHUNK_BYTES);
+        Path file = Files.createTempFile("restaurants", ".csv");
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) ParallelTasks.newExecutor(4);
+        try {
+            Files.write(file, csv.toString().getBytes(StandardCharsets.UTF_8));
+            CSVConnector connector = new CSVConnector(executor);
+            TupleCollection sequential = connector.buildTupleCollectionFromCSV("Restaurants", csv.toString(), header);
+            TupleCollection parallel = connector.buildTupleCollectionFromCSVFile("Restaurants", file, config(4), header);
+
+            assertSameTuples(sequential, parallel);
+            assertTrue(parallel.getTuple(3).valueForAttribute("address")
+                    .equals(new Value("3 College Ave\n\"Suite\" 2\nIthaca")));
+            // the quotes of 3 chunks are counted, then 4 chunks are parsed
+            assertEquals(7, executor.getTaskCount());
+        } finally {
+            executor.shutdownNow();
+            Files.delete(file);
+        }
+    }
 }
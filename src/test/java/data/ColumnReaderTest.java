@@ -0,0 +1,86 @@
+package data;
+
+import junit.framework.TestCase;
+import planning.elements.Value;
+import planning.elements.ValuePool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Types;
+
+
+public class ColumnReaderTest extends TestCase {
+
+    /**
+     * Returns a ResultSetMetaData with a single column of the given SQL type
+     */
+    private ResultSetMetaData metaData(final int type) {
+        return (ResultSetMetaData) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{ResultSetMetaData.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("getColumnType")) {
+                            return type;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    /**
+     * Returns a ResultSet whose current row holds value in every column. Only typed getters are supported, so that
+     * reading a cell through getObject fails.
+     */
+    private ResultSet row(final Object value) {
+        return (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{ResultSet.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        switch (method.getName()) {
+                            case "getInt":
+                                return value == null ? 0 : ((Number) value).intValue();
+                            case "getLong":
+                                return value == null ? 0L : ((Number) value).longValue();
+                            case "getFloat":
+                                return value == null ? 0f : ((Number) value).floatValue();
+                            case "getDouble":
+                                return value == null ? 0.0 : ((Number) value).doubleValue();
+                            case "getString":
+                                return value == null ? null : value.toString();
+                            case "wasNull":
+                                return value == null;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private Value read(int type, Object value) throws Exception {
+        return ColumnReader.forColumn(metaData(type), 1, new ValuePool()).read(row(value));
+    }
+
+    public void testNumericalColumnsAreReadWithTypedGetters() throws Exception {
+        assertEquals(new Value(42), read(Types.INTEGER, 42));
+        assertEquals(new Value(7), read(Types.SMALLINT, 7));
+        assertEquals(new Value(42.0), read(Types.BIGINT, 42L));
+        assertEquals(new Value(5000000000.0), read(Types.BIGINT, 5000000000L));
+        assertEquals(new Value(3.25), read(Types.NUMERIC, new java.math.BigDecimal("3.25")));
+        assertEquals(new Value(2.5), read(Types.DOUBLE, 2.5));
+        assertEquals(new Value(1.5f), read(Types.REAL, 1.5f));
+    }
+
+    public void testOtherColumnsAreReadAsStrings() throws Exception {
+        assertEquals(new Value("Thai"), read(Types.VARCHAR, "Thai"));
+        assertEquals(new Value("2017-03-01"), read(Types.DATE, java.sql.Date.valueOf("2017-03-01")));
+    }
+
+    public void testNullCellsAreNull() throws Exception {
+        assertNull(read(Types.INTEGER, null));
+        assertNull(read(Types.BIGINT, null));
+        assertNull(read(Types.DOUBLE, null));
+        assertNull(read(Types.VARCHAR, null));
+    }
+}
@@ -0,0 +1,127 @@
+package data;
+
+import junit.framework.TestCase;
+import planning.elements.TupleCollection;
+import planning.elements.Value;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.*;
+
+
+public class SQLConnectorTest extends TestCase {
+
+    /**
+     * A database with a single connection whose queries return the rows of a table of restaurants and prices,
+     * recording the calls made on the connection and its statements
+     */
+    private static class FakeDatabase implements InvocationHandler {
+        final List<String> calls = new ArrayList<>();
+        final Map<Integer, Object> parameters = new TreeMap<>();
+        Object[][] rows = {{"Cafe Cent Dix", 3}, {"College Town Bagels", 1}};
+        int row = -1;
+        boolean wasNull;
+        boolean autoCommit = true;
+
+        <T> T proxy(Class<T> type) {
+            return type.cast(Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{type}, this));
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            calls.add(name);
+            switch (name) {
+                case "getConnection":
+                    return proxy(Connection.class);
+                case "prepareStatement":
+                    return proxy(PreparedStatement.class);
+                case "executeQuery":
+                    return proxy(ResultSet.class);
+                case "getMetaData":
+                    return proxy(ResultSetMetaData.class);
+                case "setObject":
+                    parameters.put((Integer) args[0], args[1]);
+                    return null;
+                case "setAutoCommit":
+                    autoCommit = (Boolean) args[0];
+                    return null;
+                case "getAutoCommit":
+                    return autoCommit;
+                case "getColumnCount":
+                    return 2;
+                case "getColumnName":
+                    return (Integer) args[0] == 1 ? "restaurant" : "price";
+                case "getColumnType":
+                    return (Integer) args[0] == 1 ? Types.VARCHAR : Types.INTEGER;
+                case "next":
+                    return ++row < rows.length;
+                case "getString":
+                    Object cell = rows[row][(Integer) args[0] - 1];
+                    wasNull = cell == null;
+                    return cell;
+                case "getInt":
+                    cell = rows[row][(Integer) args[0] - 1];
+                    wasNull = cell == null;
+                    return wasNull ? 0 : cell;
+                case "wasNull":
+                    return wasNull;
+                case "setFetchSize":
+                case "commit":
+                case "rollback":
+                case "close":
+                    return null;
+            }
+            throw new UnsupportedOperationException(name);
+        }
+    }
+
+    public void testParameterisedQueryIsPreparedAndStreamed() throws Exception {
+        FakeDatabase database = new FakeDatabase();
+        SQLConnector connector = new SQLConnector(database.proxy(DataSource.class));
+
+        TupleCollection tuples = connector.buildTupleCollectionFromQuery(
+                "select restaurant, price from restaurants where price < ? limit ?", Arrays.<Object>asList(4, 10),
+                "Restaurants");
+
+        assertEquals(2, tuples.tupleCount());
+        assertEquals(Arrays.asList("restaurant", "price"), tuples.getAttributes());
+        assertTrue(tuples.getValueForAttributeAndTuple(1, 0).equals(new Value(3)));
+        assertEquals(Arrays.<Object>asList(4, 10), new ArrayList<>(database.parameters.values()));
+        assertTrue(database.calls.contains("setFetchSize"));
+        assertFalse(database.calls.contains("getObject"));
+        assertTrue(database.autoCommit);
+
+        SQLConnector.PoolStatistics statistics = connector.getPoolStatistics();
+        assertEquals(1, statistics.getBorrowedConnections());
+        assertEquals(-1, statistics.getActiveConnections());
+    }
+
+    public void testRowsWithNullValuesAreCounted() throws Exception {
+        FakeDatabase database = new FakeDatabase();
+        database.rows = new Object[][]{{"Cafe Cent Dix", 3}, {null, 2}, {"College Town Bagels", null},
+                {"Moosewood", 2}};
+        SQLConnector connector = new SQLConnector(database.proxy(DataSource.class));
+
+        TupleCollection tuples = connector.buildTupleCollectionFromQuery("select restaurant, price from restaurants");
+
+        assertEquals(2, tuples.tupleCount());
+        assertEquals(2, tuples.getSkippedRowCount());
+        assertTrue(tuples.getValueForAttributeAndTuple(0, 1).equals(new Value("Moosewood")));
+    }
+
+    public void testPooledDataSourceCachesStatements() {
+        org.apache.tomcat.jdbc.pool.DataSource pool = SQLConnector.createPooledDataSource("jdbc:postgresql://localhost/test", "user", "password");
+        try {
+            assertTrue(pool.getPoolProperties().getJdbcInterceptors().startsWith("StatementCache"));
+            SQLConnector.PoolStatistics statistics = new SQLConnector(pool).getPoolStatistics();
+            assertEquals(pool.getPoolProperties().getMaxActive(), statistics.getMaxConnections());
+            assertEquals(0, statistics.getBorrowedConnections());
+        } finally {
+            pool.close();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package planning;
+
+import junit.framework.TestCase;
+import planning.elements.Scope;
+import planning.elements.TupleCollection;
+import planning.planners.TestTupleCollections;
+import planning.planners.naive.NaiveVoicePlanner;
+
+import java.util.ArrayList;
+
+
+public class IncumbentTrackerTest extends TestCase {
+
+    public void testKeepsCheapestPlan() {
+        TupleCollection tuples = TestTupleCollections.testCollection1();
+        VoiceOutputPlan naivePlan = new NaiveVoicePlanner().plan(tuples, null);
+        VoiceOutputPlan emptyPlan = new VoiceOutputPlan(new ArrayList<Scope>());
+
+        IncumbentTracker incumbents = new IncumbentTracker();
+        assertNull(incumbents.getBest());
+        assertTrue(incumbents.offer(naivePlan, "naive"));
+        assertFalse(incumbents.offer(naivePlan, "again"));
+        assertFalse(incumbents.offer(null, "none"));
+        assertTrue(incumbents.offer(emptyPlan, "empty"));
+        assertFalse(incumbents.offer(naivePlan, "naive"));
+
+        assertSame(emptyPlan, incumbents.getBest());
+        assertEquals("empty", incumbents.getStage());
+        assertEquals(0, incumbents.getBestCost());
+        assertEquals(4, incumbents.getOfferCount());
+    }
+
+    public void testOffersArePassedToParent() {
+        TupleCollection tuples = TestTupleCollections.testCollection1();
+        VoiceOutputPlan naivePlan = new NaiveVoicePlanner().plan(tuples, null);
+        VoiceOutputPlan emptyPlan = new VoiceOutputPlan(new ArrayList<Scope>());
+
+        IncumbentTracker parent = new IncumbentTracker();
+        IncumbentTracker first = new IncumbentTracker(parent);
+        IncumbentTracker second = new IncumbentTracker(parent);
+        assertTrue(first.offer(emptyPlan, "first"));
+        assertTrue(second.offer(naivePlan, "second"));
+
+        assertSame(naivePlan, second.getBest());
+        assertSame(emptyPlan, parent.getBest());
+        assertEquals("first", parent.getStage());
+        assertEquals(2, parent.getOfferCount());
+    }
+}
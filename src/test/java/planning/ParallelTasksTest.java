@@ -0,0 +1,142 @@
+package planning;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntConsumer;
+
+
+public class ParallelTasksTest extends TestCase {
+
+    /**
+     * Runs forEachIndex on a planner thread, interrupts it once started has counted down and returns what the
+     * planner thread threw
+     */
+    private Throwable cancel(final ExecutorService executor, final IntConsumer action, CountDownLatch started)
+            throws Exception {
+        final AtomicReference<Throwable> thrown = new AtomicReference<>();
+        Thread planner = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ParallelTasks.forEachIndex(executor, 1000000, 4, action, "Test tasks");
+                } catch (Throwable t) {
+                    thrown.set(t);
+                }
+            }
+        });
+        planner.start();
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        planner.interrupt();
+        planner.join(10000);
+        assertFalse(planner.isAlive());
+        return thrown.get();
+    }
+
+    public void testRunsEveryIndexOnce() {
+        final AtomicInteger[] counts = new AtomicInteger[100];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new AtomicInteger();
+        }
+        ParallelTasks.forEachIndex(ParallelTasks.shared(), counts.length, 3, new IntConsumer() {
+            @Override
+            public void accept(int i) {
+                counts[i].incrementAndGet();
+            }
+        }, "Test tasks");
+        for (AtomicInteger count : counts) {
+            assertEquals(1, count.get());
+        }
+    }
+
+    public void testCancellationInterruptsRunningTasks() throws Exception {
+        final CountDownLatch started = new CountDownLatch(4);
+        final CountDownLatch stopped = new CountDownLatch(4);
+        IntConsumer spin = new IntConsumer() {
+            @Override
+            public void accept(int i) {
+                started.countDown();
+                try {
+                    while (true) {
+                        VoicePlanner.checkForCancellation();
+                    }
+                } finally {
+                    stopped.countDown();
+                }
+            }
+        };
+
+        ExecutorService executor = ParallelTasks.newExecutor(4);
+        try {
+            assertTrue(cancel(executor, spin, started) instanceof CancellationException);
+            assertTrue(stopped.await(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void testFailureStopsOtherTasks() throws Exception {
+        final CountDownLatch started = new CountDownLatch(4);
+        final CountDownLatch stopped = new CountDownLatch(3);
+        IntConsumer failOrSpin = new IntConsumer() {
+            @Override
+            public void accept(int i) {
+                started.countDown();
+                try {
+                    started.await();
+                    if (i == 1) {
+                        throw new IllegalStateException("Task failed");
+                    }
+                    while (true) {
+                        VoicePlanner.checkForCancellation();
+                    }
+                } catch (InterruptedException e) {
+                    throw new CancellationException();
+                } finally {
+                    if (i != 1) {
+                        stopped.countDown();
+                    }
+                }
+            }
+        };
+
+        ExecutorService executor = ParallelTasks.newExecutor(4);
+        try {
+            ParallelTasks.forEachIndex(executor, 4, 4, failOrSpin, "Test tasks");
+            fail("The failure of a task should be rethrown");
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+            assertTrue(stopped.await(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void testTasksOnForkJoinPoolStopAfterCancellation() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+        IntConsumer count = new IntConsumer() {
+            @Override
+            public void accept(int i) {
+                calls.incrementAndGet();
+                started.countDown();
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        };
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertTrue(cancel(pool, count, started) instanceof CancellationException);
+            // cancel(true) does not interrupt ForkJoinTasks, which see that the planner thread was interrupted
+            assertTrue(pool.awaitQuiescence(10, TimeUnit.SECONDS));
+            int callsAfterCancellation = calls.get();
+            Thread.sleep(50);
+            assertEquals(callsAfterCancellation, calls.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
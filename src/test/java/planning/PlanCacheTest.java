@@ -0,0 +1,208 @@
+package planning;
+
+import junit.framework.TestCase;
+import planning.config.Config;
+import planning.elements.Scope;
+import planning.elements.Tuple;
+import planning.elements.TupleCollection;
+import planning.planners.TestTupleCollections;
+import planning.planners.greedy.GreedyPlanner;
+
+import java.io.File;
+import java.nio.file.Files;
+
+
+public class PlanCacheTest extends TestCase {
+
+    /**
+     * A GreedyPlanner that counts how often it plans
+     */
+    private static class CountingPlanner extends VoicePlanner {
+        int plans;
+
+        @Override
+        protected VoiceOutputPlan plan(TupleCollection tupleCollection, Config config) {
+            plans++;
+            return new GreedyPlanner().plan(tupleCollection, config);
+        }
+
+        @Override
+        public String getPlannerIdentifier() {
+            return "counting";
+        }
+    }
+
+    /**
+     * A PlanCache whose clock is set by the test
+     */
+    private static class ManualClockCache extends PlanCache {
+        long now;
+
+        ManualClockCache(int maxEntries, long ttlMillis) {
+            super(maxEntries, ttlMillis);
+        }
+
+        @Override
+        long currentTimeMillis() {
+            return now;
+        }
+    }
+
+    private Config createConfig(int maxContextSize) throws Exception {
+        Config config = new Config();
+        config.setMaxAllowableContextSize(maxContextSize);
+        config.setMaxAllowableCategoricalDomainSize(2);
+        config.setMaxAllowableNumericalDomainWidth(1.5);
+        config.setTimeout(30);
+        return config;
+    }
+
+    public void testFingerprintDependsOnContents() throws Exception {
+        CountingPlanner planner = new CountingPlanner();
+        Config config = createConfig(2);
+        String fingerprint = PlanCache.fingerprint(planner, TestTupleCollections.randomRestaurants(20, 3), config);
+
+        assertEquals(fingerprint, PlanCache.fingerprint(planner, TestTupleCollections.randomRestaurants(20, 3), config));
+        assertFalse(fingerprint.equals(PlanCache.fingerprint(planner, TestTupleCollections.randomRestaurants(20, 4), config)));
+        assertFalse(fingerprint.equals(PlanCache.fingerprint(planner, TestTupleCollections.randomRestaurants(20, 3), createConfig(3))));
+        assertFalse(fingerprint.equals(PlanCache.fingerprint(new GreedyPlanner(), TestTupleCollections.randomRestaurants(20, 3), config)));
+    }
+
+    public void testRepeatedRequestIsNotPlannedAgain() throws Exception {
+        PlanCache cache = new PlanCache(10, 60000);
+        PlanningExecutor executor = new PlanningExecutor(1, 1);
+        try {
+            PlanningManager manager = new PlanningManager(executor, cache);
+            CountingPlanner planner = new CountingPlanner();
+            Config config = createConfig(2);
+
+            PlanningResult first = manager.buildPlan(planner, TestTupleCollections.randomRestaurants(30, 5), config);
+            TupleCollection sameTuples = TestTupleCollections.randomRestaurants(30, 5);
+            PlanningResult second = manager.buildPlan(planner, sameTuples, config);
+
+            assertEquals(1, planner.plans);
+            assertEquals(PlanningResult.COMPLETE_STAGE, first.getPlanStage());
+            assertEquals(PlanningResult.CACHED_STAGE, second.getPlanStage());
+            assertSame(sameTuples, second.getTuples());
+            assertEquals(first.getPlan().getLongForm(), second.getPlan().getLongForm());
+            // the plan in memory is rebuilt on the tuples of the request, not on those it was planned for
+            for (Scope scope : second.getPlan().getScopes()) {
+                for (Tuple tuple : scope.getTuples()) {
+                    assertTrue(sameTuples.indexOfTuple(tuple) >= 0);
+                }
+            }
+
+            PlanCache.Statistics statistics = cache.getStatistics();
+            assertEquals(1, statistics.getHits());
+            assertEquals(1, statistics.getMisses());
+            assertEquals(1, statistics.getEntries());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void testTruncatedPlanIsNotCached() throws Exception {
+        PlanCache cache = new PlanCache(10, 60000);
+        PlanningExecutor executor = new PlanningExecutor(1, 1);
+        try {
+            PlanningManager manager = new PlanningManager(executor, cache);
+            CountingPlanner planner = new CountingPlanner() {
+                @Override
+                public VoiceOutputPlan plan(TupleCollection tupleCollection, Config config,
+                                            IncumbentTracker incumbents) {
+                    incumbents.markTruncated();
+                    return super.plan(tupleCollection, config, incumbents);
+                }
+            };
+            Config config = createConfig(2);
+
+            PlanningResult first = manager.buildPlan(planner, TestTupleCollections.randomRestaurants(30, 5), config);
+            PlanningResult second = manager.buildPlan(planner, TestTupleCollections.randomRestaurants(30, 5), config);
+
+            assertEquals(2, planner.plans);
+            assertEquals(PlanningResult.COMPLETE_STAGE, first.getPlanStage());
+            assertEquals(PlanningResult.COMPLETE_STAGE, second.getPlanStage());
+            assertEquals(0, cache.getStatistics().getEntries());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void testLeastRecentlyUsedPlanIsEvicted() throws Exception {
+        PlanCache cache = new PlanCache(2, 60000);
+        Config config = createConfig(2);
+        CountingPlanner planner = new CountingPlanner();
+        TupleCollection[] collections = new TupleCollection[3];
+        String[] fingerprints = new String[3];
+        for (int i = 0; i < 3; i++) {
+            collections[i] = TestTupleCollections.randomRestaurants(10, i);
+            fingerprints[i] = PlanCache.fingerprint(planner, collections[i], config);
+        }
+
+        cache.put(fingerprints[0], collections[0], result(planner, collections[0], config));
+        cache.put(fingerprints[1], collections[1], result(planner, collections[1], config));
+        assertNotNull(cache.get(fingerprints[0], collections[0]));
+        cache.put(fingerprints[2], collections[2], result(planner, collections[2], config));
+
+        assertNotNull(cache.get(fingerprints[0], collections[0]));
+        assertNull(cache.get(fingerprints[1], collections[1]));
+        assertNotNull(cache.get(fingerprints[2], collections[2]));
+        assertEquals(1, cache.getStatistics().getEvictions());
+    }
+
+    public void testEntriesExpire() throws Exception {
+        ManualClockCache cache = new ManualClockCache(10, 1000);
+        Config config = createConfig(2);
+        CountingPlanner planner = new CountingPlanner();
+        TupleCollection tuples = TestTupleCollections.randomRestaurants(10, 7);
+        String fingerprint = PlanCache.fingerprint(planner, tuples, config);
+
+        cache.put(fingerprint, tuples, result(planner, tuples, config));
+        cache.now = 999;
+        assertNotNull(cache.get(fingerprint, tuples));
+        cache.now = 1000;
+        assertNull(cache.get(fingerprint, tuples));
+        assertEquals(1, cache.getStatistics().getExpirations());
+        assertEquals(0, cache.getStatistics().getEntries());
+    }
+
+    public void testPlansOnDiskSurviveTheCache() throws Exception {
+        File directory = Files.createTempDirectory("plans").toFile();
+        try {
+            Config config = createConfig(2);
+            CountingPlanner planner = new CountingPlanner();
+            TupleCollection tuples = TestTupleCollections.randomRestaurants(40, 9);
+            String fingerprint = PlanCache.fingerprint(planner, tuples, config);
+            PlanningResult result = result(planner, tuples, config);
+            new PlanCache(10, 60000, directory).put(fingerprint, tuples, result);
+
+            TupleCollection sameTuples = TestTupleCollections.randomRestaurants(40, 9);
+            PlanCache restarted = new PlanCache(10, 60000, directory);
+            PlanCache.Entry entry = restarted.get(fingerprint, sameTuples);
+            assertNotNull(entry);
+            assertEquals(1, restarted.getStatistics().getDiskHits());
+            assertEquals(result.getPlan().getScopes().size(), entry.getPlan().getScopes().size());
+            assertEquals(result.getPlan().getLongForm(), entry.getPlan().getLongForm());
+
+            // the rebuilt plan renders to the same text as the plan it was written from
+            VoiceOutputPlan rebuilt = new VoiceOutputPlan(entry.getPlan().getScopes());
+            assertEquals(result.getPlan().getLongForm(), rebuilt.getLongForm());
+            for (int s = 0; s < rebuilt.getScopes().size(); s++) {
+                assertEquals(sameTuples.indexOfTuple(rebuilt.getScopes().get(s).getTuples().get(0)),
+                        tuples.indexOfTuple(result.getPlan().getScopes().get(s).getTuples().get(0)));
+            }
+
+            restarted.clear();
+            assertNull(new PlanCache(10, 60000, directory).get(fingerprint, sameTuples));
+        } finally {
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+
+    private PlanningResult result(VoicePlanner planner, TupleCollection tuples, Config config) {
+        return new PlanningResult(planner.plan(tuples, config), tuples, config, planner.getPlannerIdentifier(), 0);
+    }
+}
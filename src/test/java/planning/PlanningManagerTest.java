@@ -0,0 +1,114 @@
+package planning;
+
+import junit.framework.TestCase;
+import planning.config.Config;
+import planning.elements.Scope;
+import planning.elements.TupleCollection;
+import planning.planners.TestTupleCollections;
+
+import java.util.Collections;
+import java.util.concurrent.*;
+
+
+public class PlanningManagerTest extends TestCase {
+
+    /**
+     * A planner that never finishes on its own
+     */
+    private static class SpinningPlanner extends VoicePlanner {
+        final CountDownLatch stopped = new CountDownLatch(1);
+
+        @Override
+        protected VoiceOutputPlan plan(TupleCollection tupleCollection, Config config) {
+            try {
+                while (true) {
+                    checkForCancellation();
+                }
+            } finally {
+                stopped.countDown();
+            }
+        }
+
+        @Override
+        public String getPlannerIdentifier() {
+            return "spinning";
+        }
+    }
+
+    /**
+     * A planner that offers a plan without contexts and then never finishes
+     */
+    private static class SpinningAnytimePlanner extends SpinningPlanner {
+        @Override
+        public VoiceOutputPlan plan(TupleCollection tupleCollection, Config config, IncumbentTracker incumbents) {
+            VoiceOutputPlan plan = new VoiceOutputPlan();
+            for (int t = 0; t < tupleCollection.tupleCount(); t++) {
+                plan.addScope(new Scope(null, Collections.singletonList(tupleCollection.getTuple(t)),
+                        tupleCollection.getTuplesClassName()));
+            }
+            incumbents.offer(plan, "first");
+            return plan(tupleCollection, config);
+        }
+    }
+
+    public void testTimedOutPlannerIsCancelled() throws Exception {
+        PlanningExecutor executor = new PlanningExecutor(1, 1);
+        try {
+            Config config = new Config();
+            config.setTimeout(1);
+            SpinningPlanner planner = new SpinningPlanner();
+            TupleCollection tuples = TestTupleCollections.testCollection1();
+
+            PlanningResult result = new PlanningManager(executor).buildPlan(planner, tuples, config);
+            assertEquals(1, result.getPlan().getScopes().size());
+            assertEquals(PlanningResult.NAIVE_FALLBACK_STAGE, result.getPlanStage());
+            assertTrue(planner.stopped.await(5, TimeUnit.SECONDS));
+            assertEquals(1, executor.getStatistics().getTimedOutPlans());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void testTimedOutPlannerReturnsIncumbent() throws Exception {
+        PlanningExecutor executor = new PlanningExecutor(1, 1);
+        try {
+            Config config = new Config();
+            config.setTimeout(1);
+            TupleCollection tuples = TestTupleCollections.testCollection1();
+
+            PlanningResult result = new PlanningManager(executor).buildPlan(new SpinningAnytimePlanner(), tuples, config);
+            assertEquals(tuples.tupleCount(), result.getPlan().getScopes().size());
+            assertEquals("first", result.getPlanStage());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void testPlansBeyondQueueCapacityAreRejected() throws Exception {
+        PlanningExecutor executor = new PlanningExecutor(1, 1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Callable<VoiceOutputPlan> blocked = new Callable<VoiceOutputPlan>() {
+            @Override
+            public VoiceOutputPlan call() throws Exception {
+                release.await();
+                return new VoiceOutputPlan();
+            }
+        };
+        try {
+            executor.submit(blocked);
+            executor.submit(blocked);
+            try {
+                executor.submit(blocked);
+                fail();
+            } catch (RejectedExecutionException e) {
+                // expected
+            }
+            PlanningExecutor.Statistics statistics = executor.getStatistics();
+            assertEquals(1, statistics.getRejectedPlans());
+            assertEquals(1, statistics.getQueueDepth());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+}
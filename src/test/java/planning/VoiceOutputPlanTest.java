@@ -0,0 +1,94 @@
+package planning;
+
+import junit.framework.TestCase;
+import planning.config.Config;
+import planning.elements.Scope;
+import planning.elements.TupleCollection;
+import planning.planners.TestTupleCollections;
+import planning.planners.greedy.GreedyPlanner;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+
+public class VoiceOutputPlanTest extends TestCase {
+
+    private VoiceOutputPlan plan() throws Exception {
+        Config config = new Config();
+        config.setMaxAllowableContextSize(2);
+        config.setMaxAllowableCategoricalDomainSize(2);
+        config.setMaxAllowableNumericalDomainWidth(1.5);
+        TupleCollection tuples = TestTupleCollections.randomRestaurants(40, 3);
+        return new GreedyPlanner().plan(tuples, config);
+    }
+
+    /**
+     * Returns a copy of plan without cached speech text
+     */
+    private VoiceOutputPlan copy(VoiceOutputPlan plan) {
+        List<Scope> scopes = new ArrayList<>();
+        for (Scope scope : plan.getScopes()) {
+            scopes.add(new Scope(scope.getContext(), scope.getTuples(), "Restaurants"));
+        }
+        return new VoiceOutputPlan(scopes);
+    }
+
+    public void testWrittenSpeechTextMatchesSpeechText() throws Exception {
+        VoiceOutputPlan plan = plan();
+        assertTrue(plan.getScopes().size() > 1);
+        for (boolean inLongForm : new boolean[] {true, false}) {
+            StringBuilder streamed = new StringBuilder();
+            copy(plan).writeSpeechText(streamed, inLongForm);
+            assertEquals(plan.toSpeechText(inLongForm), streamed.toString());
+
+            StringBuilder cached = new StringBuilder();
+            plan.writeSpeechText(cached, inLongForm);
+            assertEquals(plan.toSpeechText(inLongForm), cached.toString());
+        }
+    }
+
+    public void testWriterIsFlushedAfterEveryScope() throws Exception {
+        VoiceOutputPlan plan = copy(plan());
+        final List<String> flushed = new ArrayList<>();
+        StringWriter writer = new StringWriter() {
+            @Override
+            public void flush() {
+                flushed.add(toString());
+            }
+        };
+        plan.writeSpeechText(writer, true);
+
+        assertEquals(plan.getScopes().size(), flushed.size());
+        assertEquals(plan.toSpeechText(true), flushed.get(flushed.size() - 1));
+    }
+
+    public void testScopesWithoutContextAreRenderedFirst() throws Exception {
+        VoiceOutputPlan plan = copy(plan());
+        // move the scope without a context to the end
+        for (int s = 0; s < plan.getScopes().size(); s++) {
+            if (plan.getScopes().get(s).getContext() == null) {
+                plan.getScopes().add(plan.getScopes().remove(s));
+                break;
+            }
+        }
+
+        final List<Scope> rendered = new ArrayList<>();
+        final StringBuilder joined = new StringBuilder();
+        plan.renderScopes(new ScopeSink() {
+            @Override
+            public void scopeRendered(Scope scope, String speechText) throws IOException {
+                if (scope.getContext() != null && joined.length() > 0) {
+                    joined.append(" ");
+                }
+                joined.append(speechText);
+                rendered.add(scope);
+            }
+        }, true);
+
+        assertEquals(plan.getScopes().size(), rendered.size());
+        assertNull(rendered.get(0).getContext());
+        assertEquals(plan.toSpeechText(true), joined.toString());
+    }
+}
@@ -97,4 +97,20 @@ public class ConfigTest extends TestCase {
         config.setTimeout(1);
         config.setTimeout(120);
     }
+
+    public void testParallelismMustBePositive() {
+        boolean thrown = false;
+        try {
+            config.setParallelism(0);
+        } catch (Config.InvalidConfigValueException e) {
+            thrown = true;
+        }
+        assertTrue(thrown);
+    }
+
+    public void testAcceptableParallelism() throws Config.InvalidConfigValueException {
+        config.setParallelism(1);
+        config.setParallelism(16);
+        assertEquals(16, (int) config.getParallelism());
+    }
 }
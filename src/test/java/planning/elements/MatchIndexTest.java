@@ -0,0 +1,69 @@
+package planning.elements;
+
+import junit.framework.TestCase;
+import planning.planners.TestTupleCollections;
+
+import java.util.*;
+
+
+public class MatchIndexTest extends TestCase {
+
+    public void testDomainMatchesAgreeWithContains() {
+        TupleCollection tuples = TestTupleCollections.randomRestaurants(50, 13);
+        MatchIndex matchIndex = tuples.getMatchIndex();
+        for (ValueDomain d : tuples.candidateAssignmentSet(2, 1.5)) {
+            int a = tuples.indexOfAttribute(d.getAttribute());
+            BitSet matches = matchIndex.matches(d);
+            for (int t = 0; t < tuples.tupleCount(); t++) {
+                assertEquals(d.contains(tuples.getValueForAttributeAndTuple(a, t)), matches.get(t));
+            }
+        }
+    }
+
+    public void testContextMatchesAgreeWithContext() {
+        TupleCollection tuples = TestTupleCollections.randomRestaurants(50, 17);
+        MatchIndex matchIndex = tuples.getMatchIndex();
+        Map<Integer, Set<ValueDomain>> candidates = tuples.candidateAssignments(2, 1.5);
+        for (ValueDomain price : candidates.get(2)) {
+            for (ValueDomain cuisine : candidates.get(3)) {
+                Context c = new Context(new HashSet<>(Arrays.asList(price, cuisine)));
+                BitSet matches = matchIndex.matches(c);
+                int count = 0;
+                for (int t = 0; t < tuples.tupleCount(); t++) {
+                    boolean expected = c.matches(tuples.getTuple(t));
+                    assertEquals(expected, matches.get(t));
+                    assertEquals(expected, matchIndex.matches(c, t));
+                    if (expected) {
+                        count++;
+                    }
+                }
+                assertEquals(count, matchIndex.matchCount(c));
+            }
+        }
+    }
+
+    public void testEmptyContextMatchesEveryTuple() {
+        TupleCollection tuples = TestTupleCollections.testCollection1();
+        assertEquals(tuples.tupleCount(), tuples.getMatchIndex().matchCount(new Context()));
+    }
+
+    public void testEqualDomainsOfDifferentAttributes() {
+        List<String> attributes = Arrays.asList("name", "color", "trim");
+        TupleCollection tuples = new TupleCollection(attributes);
+        Tuple t1 = new Tuple(attributes);
+        t1.addValueAssignment("name", new Value("a"));
+        t1.addValueAssignment("color", new Value("red"));
+        t1.addValueAssignment("trim", new Value("blue"));
+        Tuple t2 = new Tuple(attributes);
+        t2.addValueAssignment("name", new Value("b"));
+        t2.addValueAssignment("color", new Value("blue"));
+        t2.addValueAssignment("trim", new Value("red"));
+        tuples.addTuple(t1);
+        tuples.addTuple(t2);
+
+        MatchIndex matchIndex = tuples.getMatchIndex();
+        assertTrue(matchIndex.matches(new CategoricalValueDomain("color", new Value("red"))).get(0));
+        assertTrue(matchIndex.matches(new CategoricalValueDomain("trim", new Value("red"))).get(1));
+        assertFalse(matchIndex.matches(new CategoricalValueDomain("trim", new Value("red"))).get(0));
+    }
+}
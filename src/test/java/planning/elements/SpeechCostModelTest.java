@@ -0,0 +1,69 @@
+package planning.elements;
+
+import junit.framework.TestCase;
+import planning.planners.TestTupleCollections;
+
+import java.util.*;
+
+
+public class SpeechCostModelTest extends TestCase {
+
+    public void testTupleCostMatchesRenderedSpeech() {
+        TupleCollection tuples = TestTupleCollections.randomRestaurants(30, 5);
+        SpeechCostModel costModel = tuples.getCostModel();
+        for (int t = 0; t < tuples.tupleCount(); t++) {
+            assertEquals(tuples.getTuple(t).toSpeechText(true).length(), costModel.tupleCost(t));
+        }
+    }
+
+    public void testSavingsMatchRenderedSpeech() {
+        TupleCollection tuples = TestTupleCollections.randomRestaurants(30, 9);
+        SpeechCostModel costModel = tuples.getCostModel();
+        Map<Integer, Set<ValueDomain>> candidates = tuples.candidateAssignments(2, 1.5);
+
+        List<Context> contexts = new ArrayList<>();
+        for (ValueDomain rating : candidates.get(1)) {
+            for (ValueDomain cuisine : candidates.get(3)) {
+                contexts.add(new Context(new HashSet<>(Arrays.asList(rating, cuisine))));
+            }
+        }
+        // a context fixing the first attribute changes which attribute is spoken without its name
+        for (int t = 0; t < 3; t++) {
+            ValueDomain restaurant = new CategoricalValueDomain("restaurant", tuples.getValueForAttributeAndTuple(0, t));
+            contexts.add(new Context(Collections.singleton(restaurant)));
+        }
+
+        for (Context c : contexts) {
+            for (int t = 0; t < tuples.tupleCount(); t++) {
+                Tuple tuple = tuples.getTuple(t);
+                int expected = tuple.toSpeechText(true).length() - tuple.toSpeechText(c, true).length();
+                assertEquals(expected, costModel.savings(t, c));
+            }
+        }
+    }
+
+    public void testContextCost() {
+        TupleCollection tuples = TestTupleCollections.testCollection1();
+        Context c = new Context();
+        c.addCategoricalValueAssignment("price", new Value("low"));
+        assertEquals(c.toSpeechText(true).length() + Scope.contextOverheadCost("Restaurants"),
+                tuples.getCostModel().contextCost(c));
+    }
+
+    public void testCostModelIsRebuiltAfterAddingTuples() {
+        TupleCollection tuples = TestTupleCollections.testCollection1();
+        SpeechCostModel before = tuples.getCostModel();
+        assertSame(before, tuples.getCostModel());
+
+        Tuple t = new Tuple(tuples.getAttributes());
+        t.addValueAssignment("restaurant", new Value("Noodle Bar"));
+        t.addValueAssignment("price", new Value("medium"));
+        t.addValueAssignment("cuisine", new Value("Thai"));
+        tuples.addTuple(t);
+
+        SpeechCostModel after = tuples.getCostModel();
+        assertNotSame(before, after);
+        assertEquals(tuples.tupleCount(), after.tupleCount());
+        assertEquals(t.toSpeechText(true).length(), after.tupleCost(tuples.tupleCount() - 1));
+    }
+}
@@ -0,0 +1,93 @@
+package planning.elements;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+
+public class TupleCollectionSnapshotTest extends TestCase {
+    private Path file;
+
+    @Override
+    protected void setUp() throws Exception {
+        file = Files.createTempFile("tuples", ".snapshot");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    private TupleCollection tupleCollection() {
+        List<String> attributes = Arrays.asList("name", "age", "height", "weight");
+        TupleCollection tC = new TupleCollection(attributes, "person");
+        tC.addRow(new Value[] {new Value("Ann"), new Value(34), new Value(1.72), new Value(61.5f)});
+        tC.addRow(new Value[] {new Value("Bob"), new Value(1234), new Value(1.80), new Value(80.0f)});
+        tC.addRow(new Value[] {new Value("Ann"), new Value(34), new Value(1.65), new Value(58.25f)});
+        return tC;
+    }
+
+    public void testRoundTrip() throws IOException {
+        TupleCollection tC = tupleCollection();
+        TupleCollectionSnapshot.write(tC, file);
+        TupleCollection loaded = TupleCollectionSnapshot.read(file);
+
+        assertEquals(tC.getAttributes(), loaded.getAttributes());
+        assertEquals("person", loaded.getTuplesClassName());
+        assertEquals(tC.tupleCount(), loaded.tupleCount());
+        for (int a = 0; a < tC.attributeCount(); a++) {
+            assertEquals(tC.attributeIsCategorical(a), loaded.attributeIsCategorical(a));
+            // includes the rounded values of numerical attributes
+            assertEquals(tC.distinctValueCountForAttribute(a), loaded.distinctValueCountForAttribute(a));
+            for (int v = 0; v < tC.distinctValueCountForAttribute(a); v++) {
+                assertEquals(tC.getDistinctValue(a, v), loaded.getDistinctValue(a, v));
+            }
+            for (int t = 0; t < tC.tupleCount(); t++) {
+                assertEquals(tC.getIndexOfDistinctValue(a, t), loaded.getIndexOfDistinctValue(a, t));
+                assertEquals(tC.getValueForAttributeAndTuple(a, t), loaded.getValueForAttributeAndTuple(a, t));
+                if (tC.attributeIsNumerical(a)) {
+                    assertEquals(tC.getNumericalValueForAttributeAndTuple(a, t),
+                            loaded.getNumericalValueForAttributeAndTuple(a, t));
+                }
+            }
+        }
+        assertEquals(tC.getTuple(1).toSpeechText(true), loaded.getTuple(1).toSpeechText(true));
+        assertEquals(tC.getIndexOfDistinctValue(0, new Value("Bob")), loaded.getIndexOfDistinctValue(0, new Value("Bob")));
+    }
+
+    public void testAddRowAfterRead() throws IOException {
+        TupleCollectionSnapshot.write(tupleCollection(), file);
+        TupleCollection loaded = TupleCollectionSnapshot.read(file);
+        loaded.addRow(new Value[] {new Value("Cid"), new Value(34), new Value(1.90), new Value(90.0f)});
+
+        assertEquals(4, loaded.tupleCount());
+        assertEquals(loaded.getIndexOfDistinctValue(1, 0), loaded.getIndexOfDistinctValue(1, 3));
+        assertEquals(1.90, loaded.getNumericalValueForAttributeAndTuple(2, 3));
+        assertEquals(1.72, loaded.getNumericalValueForAttributeAndTuple(2, 0));
+        assertEquals(new Value("Cid"), loaded.getValueForAttributeAndTuple(0, 3));
+    }
+
+    public void testEmptyCollection() throws IOException {
+        TupleCollection tC = new TupleCollection(Arrays.asList("a0", "a1"));
+        TupleCollectionSnapshot.write(tC, file);
+        TupleCollection loaded = TupleCollectionSnapshot.read(file);
+
+        assertEquals(0, loaded.tupleCount());
+        assertEquals(tC.getTuplesClassName(), loaded.getTuplesClassName());
+        assertEquals(tC.getAttributes(), loaded.getAttributes());
+    }
+
+    public void testRejectsOtherFiles() throws IOException {
+        Files.write(file, "name,age\nAnn,34\n".getBytes("UTF-8"));
+        try {
+            TupleCollectionSnapshot.read(file);
+            fail("Only snapshots can be read");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
@@ -221,4 +221,160 @@ public class TupleCollectionTest extends TestCase {
 
         assertTrue(tuplesWithRedundancy.entropy(2.0) < tuplesWithoutRedundancy.entropy(2.0));
     }
-}
\ No newline at end of file
+
+    public void testColumnarValueLookup() {
+        TupleCollection tC = tupleCollection1();
+
+        assertTrue(tC.getValueForAttributeAndTuple(1, 1).equals(new Value("stringValue1")));
+        assertTrue(tC.getValueForAttributeAndTuple(2, 2).equals(new Value(3.5)));
+        assertEquals(3.0, tC.getNumericalValueForAttributeAndTuple(2, 1));
+
+        // tuples sharing a categorical value share the same dictionary entry
+        assertEquals(tC.getIndexOfDistinctValue(1, 0), tC.getIndexOfDistinctValue(1, 1));
+        assertFalse(tC.getIndexOfDistinctValue(1, 0) == tC.getIndexOfDistinctValue(1, 2));
+        for (int t = 0; t < tC.tupleCount(); t++) {
+            int v = tC.getIndexOfDistinctValue(2, t);
+            assertTrue(tC.getDistinctValue(2, v).equals(tC.getValueForAttributeAndTuple(2, t)));
+        }
+
+        assertTrue(tC.attributeIsCategorical(1));
+        assertTrue(tC.attributeIsNumerical(2));
+    }
+
+    public void testTuplesAreViewsOnColumns() {
+        TupleCollection tC = tupleCollection1();
+        Tuple t = tC.getTuple(2);
+
+        assertTrue(t.valueForAttribute("a0").equals(new Value(3)));
+        assertTrue(t.valueForAttribute("a1").equals(new Value("stringValue2")));
+        assertEquals("3, stringValue2 a1, 3.5 a2", t.toSpeechText(false));
+        assertNull(tC.getTuple(3));
+
+        try {
+            t.addValueAssignment("a1", new Value("other"));
+            fail("Tuples of a TupleCollection should be read-only");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    public void testTupleViewsAreReused() {
+        TupleCollection tC = tupleCollection1();
+        Tuple t = tC.getTuple(2);
+        String speechText = t.toSpeechText(true);
+
+        assertSame(t, tC.getTuple(2));
+        assertSame(speechText, tC.getTuple(2).toSpeechText(true));
+
+        tC.addTuple(tC.getTuple(0));
+        assertSame(t, tC.getTuple(2));
+        assertEquals(3, tC.indexOfTuple(tC.getTuple(3)));
+        assertEquals(tC.getTuple(0).toSpeechText(true), tC.getTuple(3).toSpeechText(true));
+    }
+
+    public void testIndexOfDistinctValueLookup() {
+        TupleCollection tC = tupleCollection1();
+
+        for (int a = 0; a < tC.attributeCount(); a++) {
+            for (int v = 0; v < tC.distinctValueCountForAttribute(a); v++) {
+                assertEquals(v, tC.getIndexOfDistinctValue(a, tC.getDistinctValue(a, v)));
+            }
+        }
+
+        // rounded values are distinct values as well
+        assertTrue(tC.getIndexOfDistinctValue(2, new Value(4.0)) >= 0);
+        assertEquals(-1, tC.getIndexOfDistinctValue(1, new Value("stringValue3")));
+    }
+
+    public void testAddRowMatchesAddTuple() {
+        TupleCollection tC = tupleCollection1();
+        TupleCollection rows = new TupleCollection(tC.getAttributes());
+        for (int t = 0; t < tC.tupleCount(); t++) {
+            Value[] row = new Value[tC.attributeCount()];
+            for (int a = 0; a < tC.attributeCount(); a++) {
+                row[a] = tC.getValueForAttributeAndTuple(a, t);
+            }
+            rows.addRow(row);
+        }
+
+        assertEquals(tC.tupleCount(), rows.tupleCount());
+        for (int a = 0; a < tC.attributeCount(); a++) {
+            assertEquals(tC.distinctValueCountForAttribute(a), rows.distinctValueCountForAttribute(a));
+            for (int t = 0; t < tC.tupleCount(); t++) {
+                assertEquals(tC.getIndexOfDistinctValue(a, t), rows.getIndexOfDistinctValue(a, t));
+            }
+        }
+
+        try {
+            rows.addRow(new Value[] {new Value(4)});
+            fail("Rows must have one value per attribute");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testAddAllMatchesAddTuple() {
+        TupleCollection tC = tupleCollection1();
+        TupleCollection merged = new TupleCollection(tC.getAttributes());
+        TupleCollection first = new TupleCollection(tC.getAttributes());
+        TupleCollection second = new TupleCollection(tC.getAttributes());
+        first.addTuple(tC.getTuple(0));
+        second.addTuple(tC.getTuple(1));
+        second.addTuple(tC.getTuple(2));
+        merged.addAll(first);
+        merged.addAll(second);
+
+        assertEquals(tC.tupleCount(), merged.tupleCount());
+        for (int a = 0; a < tC.attributeCount(); a++) {
+            assertEquals(tC.distinctValueCountForAttribute(a), merged.distinctValueCountForAttribute(a));
+            for (int t = 0; t < tC.tupleCount(); t++) {
+                assertEquals(tC.getIndexOfDistinctValue(a, t), merged.getIndexOfDistinctValue(a, t));
+            }
+        }
+        assertEquals(3.0, merged.getNumericalValueForAttributeAndTuple(2, 1));
+        assertTrue(merged.attributeIsNumerical(2));
+    }
+
+    public TupleCollection tupleCollectionWithSignedValues() {
+        List<String> attributes = Arrays.asList("a0", "a1");
+        TupleCollection tC = new TupleCollection(attributes);
+        double[] values = {-12.5, -3.0, 0.0, 0.0, 0.4, 1.0, 2.5, 3.7, 8.0, 15.0, 42.0, 130.0};
+        for (int i = 0; i < values.length; i++) {
+            Tuple t = new Tuple(attributes);
+            t.addValueAssignment("a0", new Value(i));
+            t.addValueAssignment("a1", new Value(values[i]));
+            tC.addTuple(t);
+        }
+        return tC;
+    }
+
+    public void testNumericalCandidatesMatchPairwiseEnumeration() {
+        TupleCollection tC = tupleCollectionWithSignedValues();
+        for (double mW : new double[] {0.5, 1.0, 1.5, 3.0, 20.0}) {
+            Set<ValueDomain> expected = new HashSet<>();
+            for (int b1 = 0; b1 < tC.distinctValueCountForAttribute(1); b1++) {
+                for (int b2 = b1; b2 < tC.distinctValueCountForAttribute(1); b2++) {
+                    NumericalValueDomain d = new NumericalValueDomain("a1", tC.getDistinctValue(1, b1), tC.getDistinctValue(1, b2));
+                    if (d.getWidth() <= mW) {
+                        expected.add(d);
+                    }
+                }
+            }
+            assertEquals(expected, tC.candidateAssignments(2, mW).get(1));
+        }
+    }
+
+    public void testNumericalRangeMatches() {
+        TupleCollection tC = tupleCollectionWithSignedValues();
+        MatchIndex matchIndex = tC.getMatchIndex();
+        for (int b1 = 0; b1 < tC.distinctValueCountForAttribute(1); b1++) {
+            for (int b2 = 0; b2 < tC.distinctValueCountForAttribute(1); b2++) {
+                NumericalValueDomain d = new NumericalValueDomain("a1", tC.getDistinctValue(1, b1), tC.getDistinctValue(1, b2));
+                BitSet matches = matchIndex.matches(d);
+                for (int t = 0; t < tC.tupleCount(); t++) {
+                    assertEquals(d.contains(tC.getValueForAttributeAndTuple(1, t)), matches.get(t));
+                }
+            }
+        }
+    }
+}
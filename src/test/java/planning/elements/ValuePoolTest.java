@@ -0,0 +1,39 @@
+package planning.elements;
+
+import junit.framework.TestCase;
+
+public class ValuePoolTest extends TestCase {
+
+    public void testRepeatedStringsShareOneValue() {
+        ValuePool pool = new ValuePool();
+        Value v1 = pool.intern(new String("Seattle"));
+        Value v2 = pool.intern(new String("Seattle"));
+        Value v3 = pool.intern("Portland");
+
+        assertSame(v1, v2);
+        assertEquals(new Value("Seattle"), v1);
+        assertNotSame(v1, v3);
+        assertSame(v1, pool.intern(new Value("Seattle")));
+        assertEquals(2, pool.size());
+    }
+
+    public void testNumbersAreInternedByTypeAndValue() {
+        ValuePool pool = new ValuePool();
+        Value i = pool.intern(new Value(3));
+
+        assertSame(i, pool.intern(new Value(3)));
+        assertNotSame(i, pool.intern(new Value(3.0)));
+        assertEquals(2, pool.size());
+    }
+
+    public void testFullPoolReturnsNewValues() {
+        ValuePool pool = new ValuePool(1);
+        Value a = pool.intern("a");
+        Value b = pool.intern("b");
+
+        assertSame(a, pool.intern("a"));
+        assertNotSame(b, pool.intern("b"));
+        assertEquals(new Value("b"), pool.intern("b"));
+        assertEquals(1, pool.size());
+    }
+}
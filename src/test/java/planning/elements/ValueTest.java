@@ -4,6 +4,7 @@ import junit.framework.TestCase;
 
 import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
 
 public class ValueTest extends TestCase {
 
@@ -128,4 +129,44 @@ public class ValueTest extends TestCase {
         assertTrue(values.get(1).equals(new Value(new Float(10000.0))));
     }
 
-}
\ No newline at end of file
+    public void testMixedTypesAreOrderedByType() {
+        assertTrue(new Value(10).compareTo(new Value(1.0)) < 0);
+        assertTrue(new Value("a").compareTo(new Value(1.0f)) > 0);
+        assertFalse(new Value(1).equals(new Value(1.0)));
+    }
+
+    public void testPrimitiveValuesMatchBoxedValues() {
+        assertEquals(new Value(Integer.valueOf(7)), new Value(7));
+        assertEquals(Integer.valueOf(7).hashCode(), new Value(7).hashCode());
+        assertEquals(Double.valueOf(2.5).hashCode(), new Value(2.5).hashCode());
+        assertEquals(Float.valueOf(2.5f).hashCode(), new Value(2.5f).hashCode());
+        assertEquals(Integer.valueOf(7), new Value(7).getValue());
+        assertEquals(Float.valueOf(2.5f), new Value(2.5f).getValue());
+        assertEquals("2.5", new Value(2.5f).toString());
+        assertEquals("7", new Value(7).toSpeechText(false));
+        assertEquals("seven", new Value(7).toSpeechText(true));
+        assertEquals("two point five", new Value(2.5f).toSpeechText(true));
+    }
+
+    public void testTimes() {
+        assertEquals(new Value(3), new Value(2).times(1.5));
+        assertEquals(new Value(3.0), new Value(2.0).times(1.5));
+        assertEquals(new Value(3.0f), new Value(2.0f).times(1.5));
+        assertEquals(new Value("a"), new Value("a").times(1.5));
+    }
+
+    public void testSpeechCostIsLengthOfLongForm() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            int n = random.nextInt(2000000) - 1000;
+            double d = random.nextDouble() * Math.pow(10, random.nextInt(11)) - 10;
+            Value[] values = {new Value(n), new Value(d), new Value((float) d), new Value(n * 1000),
+                    new Value(n + 0.5), new Value(n * 1000.0)};
+            for (Value v : values) {
+                assertEquals(v.toString(), v.toSpeechText(true).length(), v.speechCost());
+            }
+        }
+        assertEquals(new Value("  padded ").toSpeechText(true).length(), new Value("  padded ").speechCost());
+    }
+
+}
@@ -11,14 +11,24 @@ import planning.planners.hybrid.TupleCoveringPruner;
 import planning.planners.linear.LinearProgrammingPlanner;
 import planning.planners.naive.NaiveVoicePlanner;
 
+import javax.sql.DataSource;
+
 /**
  * Base class for writing VoicePlanningTest. Provides utility methods for test setup
  */
 public class PlannerTestBase extends TestCase {
+    /**
+     * The connection pool of all planner tests, to the database given by the environment variables JDBC_DATABASE_URL,
+     * JDBC_DATABASE_USERNAME and JDBC_DATABASE_PASSWORD
+     */
+    private static final DataSource dataSource = SQLConnector.createPooledDataSource(System.getenv("JDBC_DATABASE_URL"),
+            System.getenv("JDBC_DATABASE_USERNAME"), System.getenv("JDBC_DATABASE_PASSWORD"));
+
     protected PlanningManager planningManager = new PlanningManager();
-    protected SQLConnector sqlConnector = new SQLConnector();
+    protected SQLConnector sqlConnector = new SQLConnector(dataSource);
     protected NaiveVoicePlanner naivePlanner = new NaiveVoicePlanner();
     protected LinearProgrammingPlanner linearPlanner = new LinearProgrammingPlanner();
+    protected LinearProgrammingPlanner linearPlannerWithGreedyStart = new LinearProgrammingPlanner(new GreedyPlanner());
     protected HybridPlanner hybridPlannerTop10 = new HybridPlanner(new TopKPruner(10));
     protected HybridPlanner hybridPlannerTupleCovering = new HybridPlanner(new TupleCoveringPruner(10));
     protected GreedyPlanner greedyPlanner = new GreedyPlanner();
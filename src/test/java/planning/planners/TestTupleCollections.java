@@ -5,7 +5,9 @@ import planning.elements.TupleCollection;
 import planning.elements.Value;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 /**
  * Convenience constructors for test data sets
@@ -42,4 +44,27 @@ public class TestTupleCollections {
         return tuples;
     }
 
+    /**
+     * Builds a collection of restaurants with random ratings, prices, and cuisines
+     * @param tupleCount The number of restaurants
+     * @param seed The seed for the random values, so that tests are reproducible
+     */
+    public static TupleCollection randomRestaurants(int tupleCount, long seed) {
+        List<String> atts = Arrays.asList("restaurant", "rating", "price", "cuisine");
+        String[] prices = {"low", "medium", "high"};
+        String[] cuisines = {"Italian", "Mexican", "Thai", "American", "Diner"};
+        Random random = new Random(seed);
+
+        TupleCollection tuples = new TupleCollection(atts, "Restaurants");
+        for (int t = 0; t < tupleCount; t++) {
+            Tuple tuple = new Tuple(atts);
+            tuple.addValueAssignment("restaurant", new Value("Restaurant " + t));
+            tuple.addValueAssignment("rating", new Value((random.nextInt(50) + 1) / 10.0));
+            tuple.addValueAssignment("price", new Value(prices[random.nextInt(prices.length)]));
+            tuple.addValueAssignment("cuisine", new Value(cuisines[random.nextInt(cuisines.length)]));
+            tuples.addTuple(tuple);
+        }
+        return tuples;
+    }
+
 }
@@ -1,9 +1,16 @@
 package planning.planners.greedy;
 
+import planning.IncumbentTracker;
 import planning.PlanningResult;
+import planning.VoiceOutputPlan;
 import planning.config.Config;
+import planning.elements.Context;
 import planning.elements.TupleCollection;
+import planning.elements.ValueDomain;
 import planning.planners.PlannerTestBase;
+import planning.planners.TestTupleCollections;
+
+import java.util.*;
 
 /**
  * Testing for the GreedyPlanner
@@ -16,4 +23,49 @@ public class GreedyPlannerTest extends PlannerTestBase {
         PlanningResult result = planningManager.buildPlan(greedyPlanner, tuples, config);
         assertNotNull(result.getPlan());
     }
+
+    public void testParallelDensitySweepMatchesSequential() throws Exception {
+        TupleCollection tuples = TestTupleCollections.randomRestaurants(20, 5);
+
+        Config sequential = createConfig(2, 2, 1.5, 0.1);
+        sequential.setParallelism(1);
+        Config parallel = createConfig(2, 2, 1.5, 0.1);
+        parallel.setParallelism(4);
+
+        VoiceOutputPlan sequentialPlan = greedyPlanner.plan(tuples, sequential);
+        VoiceOutputPlan parallelPlan = greedyPlanner.plan(tuples, parallel);
+
+        assertEquals(sequentialPlan.toSpeechText(true).length(), parallelPlan.toSpeechText(true).length());
+    }
+
+    public void testIncumbentsLeadToFinalPlan() throws Exception {
+        TupleCollection tuples = TestTupleCollections.randomRestaurants(20, 7);
+        Config config = createConfig(2, 2, 1.5, 0.1);
+        IncumbentTracker incumbents = new IncumbentTracker();
+
+        VoiceOutputPlan plan = greedyPlanner.plan(tuples, config, incumbents);
+        assertTrue(incumbents.getOfferCount() > 1);
+        assertTrue(incumbents.getBestCost() <= plan.getSpeechCost());
+        assertTrue(incumbents.getStage().startsWith(greedyPlanner.getPlannerIdentifier()));
+    }
+
+    public void testPlanCostMatchesRenderedPlan() throws Exception {
+        TupleCollection tuples = TestTupleCollections.randomRestaurants(30, 11);
+        Map<Integer, Set<ValueDomain>> candidates = tuples.candidateAssignments(2, 1.5);
+        List<Context> contexts = new ArrayList<>();
+        for (ValueDomain rating : candidates.get(1)) {
+            for (ValueDomain cuisine : candidates.get(3)) {
+                contexts.add(new Context(new HashSet<>(Arrays.asList(rating, cuisine))));
+            }
+            contexts.add(new Context(Collections.singleton(rating)));
+        }
+
+        Random random = new Random(3);
+        for (int i = 0; i < 50; i++) {
+            Collections.shuffle(contexts, random);
+            List<Context> chosen = contexts.subList(0, 1 + random.nextInt(3));
+            assertEquals(greedyPlanner.minTimePlan(chosen, tuples).getSpeechCost(),
+                    greedyPlanner.minTimePlanCost(chosen, tuples));
+        }
+    }
 }
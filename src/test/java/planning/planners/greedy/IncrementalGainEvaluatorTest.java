@@ -0,0 +1,67 @@
+package planning.planners.greedy;
+
+import junit.framework.TestCase;
+import planning.elements.*;
+import planning.planners.TestTupleCollections;
+
+import java.util.*;
+
+/**
+ * Testing for the IncrementalGainEvaluator
+ */
+public class IncrementalGainEvaluatorTest extends TestCase {
+
+    /**
+     * The time gain as computed by rendering every tuple with and without the Context
+     */
+    private int renderedTimeGain(TupleCollection tuples, Set<ValueDomain> domains) {
+        if (domains.isEmpty()) {
+            return 0;
+        }
+        Context c = new Context(domains);
+        int savings = 0;
+        for (Tuple t : tuples) {
+            savings += t.toSpeechText(true).length() - t.toSpeechText(c, true).length();
+        }
+        return savings - c.toSpeechText(true).length();
+    }
+
+    public void testTimeGainMatchesRenderedSpeech() {
+        TupleCollection tuples = TestTupleCollections.randomRestaurants(40, 7);
+        IncrementalGainEvaluator evaluator = new IncrementalGainEvaluator(tuples);
+        Map<Integer, Set<ValueDomain>> candidates = tuples.candidateAssignments(2, 1.5);
+
+        for (ValueDomain rating : candidates.get(1)) {
+            assertEquals(renderedTimeGain(tuples, Collections.singleton(rating)), evaluator.timeGain(rating));
+            for (ValueDomain price : candidates.get(2)) {
+                for (ValueDomain cuisine : candidates.get(3)) {
+                    Set<ValueDomain> domains = new HashSet<>(Arrays.asList(rating, price, cuisine));
+                    assertEquals(renderedTimeGain(tuples, domains), evaluator.timeGain(domains));
+                }
+            }
+        }
+    }
+
+    public void testMarginalGainOfSelection() {
+        TupleCollection tuples = TestTupleCollections.randomRestaurants(25, 11);
+        IncrementalGainEvaluator evaluator = new IncrementalGainEvaluator(tuples);
+        Map<Integer, Set<ValueDomain>> candidates = tuples.candidateAssignments(2, 2.0);
+
+        ValueDomain price = candidates.get(2).iterator().next();
+        IncrementalGainEvaluator.Selection selection = evaluator.newSelection();
+        selection.add(price);
+        assertTrue(selection.fixesAttribute("price"));
+
+        for (ValueDomain cuisine : candidates.get(3)) {
+            Set<ValueDomain> withCuisine = new HashSet<>(Arrays.asList(price, cuisine));
+            int expected = renderedTimeGain(tuples, withCuisine) - renderedTimeGain(tuples, Collections.singleton(price));
+            assertEquals(expected, selection.marginalGain(cuisine));
+        }
+    }
+
+    public void testEmptySetHasNoGain() {
+        TupleCollection tuples = TestTupleCollections.randomRestaurants(5, 3);
+        IncrementalGainEvaluator evaluator = new IncrementalGainEvaluator(tuples);
+        assertEquals(0, evaluator.timeGain(new HashSet<ValueDomain>()));
+    }
+}
@@ -0,0 +1,157 @@
+package planning.planners.hybrid;
+
+import junit.framework.TestCase;
+import planning.config.Config;
+import planning.elements.*;
+import planning.planners.TestTupleCollections;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Testing for the Apriori context generation of the HybridPlanner and the pruning of ContextNodes
+ */
+public class ContextGenerationTest extends TestCase {
+
+    private Config createConfig(int maxContextSize) throws Exception {
+        Config config = new Config();
+        config.setMaxAllowableContextSize(maxContextSize);
+        config.setMaxAllowableCategoricalDomainSize(2);
+        config.setMaxAllowableNumericalDomainWidth(1.5);
+        return config;
+    }
+
+    public void testChildrenOfAllParentsSurvive() throws Exception {
+        TupleCollection tuples = TestTupleCollections.randomRestaurants(30, 21);
+        HybridPlanner planner = new HybridPlanner(new TopKPruner(5));
+        List<ContextNode> nodes = planner.generateContextCandidates(tuples, createConfig(2));
+
+        Set<Map<String, ValueDomain>> parents = new HashSet<>();
+        for (ContextNode node : nodes) {
+            Map<String, ValueDomain> domains = node.getContext().getValueDomains();
+            if (domains.size() == 2) {
+                for (String attribute : domains.keySet()) {
+                    Map<String, ValueDomain> parent = new HashMap<>(domains);
+                    parent.remove(attribute);
+                    parents.add(parent);
+                }
+            }
+        }
+        // the pairs among the top 5 contexts of size 2 are built from more than one context of size 1
+        assertTrue(parents.size() > 1);
+    }
+
+    public void testMatchSetsAreIntersectedFromParents() throws Exception {
+        TupleCollection tuples = TestTupleCollections.randomRestaurants(30, 23);
+        HybridPlanner planner = new HybridPlanner(new UsefulPruner());
+        List<ContextNode> nodes = planner.generateContextCandidates(tuples, createConfig(3));
+
+        for (ContextNode node : nodes) {
+            Context c = node.getContext();
+            assertEquals(tuples.getMatchIndex().matches(c), node.getMatches());
+            assertFalse(new UsefulPruner().useless(c, tuples));
+        }
+    }
+
+    public void testLevelsOnlyExtendSurvivingSubsets() throws Exception {
+        TupleCollection tuples = TestTupleCollections.randomRestaurants(30, 25);
+        HybridPlanner planner = new HybridPlanner(new TupleCoveringPruner(4));
+        List<ContextNode> nodes = planner.generateContextCandidates(tuples, createConfig(2));
+
+        Set<Map<String, ValueDomain>> generated = new HashSet<>();
+        for (ContextNode node : nodes) {
+            generated.add(node.getContext().getValueDomains());
+        }
+        for (ContextNode node : nodes) {
+            Map<String, ValueDomain> domains = node.getContext().getValueDomains();
+            for (String attribute : domains.keySet()) {
+                Map<String, ValueDomain> subset = new HashMap<>(domains);
+                subset.remove(attribute);
+                assertTrue(subset.isEmpty() || generated.contains(subset));
+            }
+        }
+    }
+
+    public void testPruneNodesAgreesWithPrune() {
+        TupleCollection tuples = TestTupleCollections.randomRestaurants(40, 27);
+        List<Context> contexts = new ArrayList<>();
+        for (ValueDomain d : tuples.candidateAssignmentSet(2, 1.5)) {
+            contexts.add(new Context(Collections.singleton(d)));
+        }
+
+        for (TopKPruner pruner : Arrays.asList(new TopKPruner(10), new TupleCoveringPruner(10))) {
+            List<ContextNode> nodes = pruner.contextNodes(contexts, tuples, 1);
+            List<Context> fromNodes = new ArrayList<>();
+            for (ContextNode node : pruner.pruneNodes(nodes, tuples, 1)) {
+                fromNodes.add(node.getContext());
+            }
+            assertEquals(new ArrayList<>(pruner.prune(contexts, tuples)), fromNodes);
+        }
+    }
+
+    private List<Context> pairContexts(TupleCollection tuples) {
+        Map<Integer, Set<ValueDomain>> candidates = tuples.candidateAssignments(2, 1.5);
+        List<Context> contexts = new ArrayList<>();
+        for (ValueDomain price : candidates.get(2)) {
+            contexts.add(new Context(Collections.singleton(price)));
+            for (ValueDomain cuisine : candidates.get(3)) {
+                contexts.add(new Context(new HashSet<>(Arrays.asList(price, cuisine))));
+            }
+        }
+        return contexts;
+    }
+
+    public void testParallelScoringMatchesSequential() throws Exception {
+        TupleCollection tuples = TestTupleCollections.randomRestaurants(60, 29);
+        List<Context> contexts = pairContexts(tuples);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (TopKPruner pruner : Arrays.asList(new TopKPruner(10), new TupleCoveringPruner(10))) {
+                pruner.setScoringExecutor(executor);
+                List<ContextNode> sequential = pruner.pruneNodes(pruner.contextNodes(contexts, tuples, 1), tuples, 1);
+                List<ContextNode> parallel = pruner.pruneNodes(pruner.contextNodes(contexts, tuples, 4), tuples, 4);
+                assertEquals(sequential.size(), parallel.size());
+                for (int i = 0; i < sequential.size(); i++) {
+                    assertSame(sequential.get(i).getContext(), parallel.get(i).getContext());
+                }
+            }
+
+            UsefulPruner useful = new UsefulPruner();
+            useful.setScoringExecutor(executor);
+            List<ContextNode> nodes = new TopKPruner(0).contextNodes(contexts, tuples, 1);
+            assertEquals(useful.pruneNodes(nodes, tuples, 1), useful.pruneNodes(nodes, tuples, 4));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testTupleCoveringSelectsGreedily() {
+        TupleCollection tuples = TestTupleCollections.randomRestaurants(60, 31);
+        List<Context> contexts = pairContexts(tuples);
+        TupleCoveringPruner pruner = new TupleCoveringPruner(8);
+        List<ContextNode> nodes = pruner.contextNodes(contexts, tuples, 1);
+
+        // recount the coverage of every remaining candidate before each selection
+        List<Context> expected = new ArrayList<>();
+        List<ContextNode> remaining = new ArrayList<>(nodes);
+        BitSet uncovered = tuples.getMatchIndex().allTuples();
+        while (expected.size() < 8 && !uncovered.isEmpty() && !remaining.isEmpty()) {
+            ContextNode best = null;
+            int bestCount = -1;
+            for (ContextNode node : remaining) {
+                BitSet matches = (BitSet) node.getMatches().clone();
+                matches.and(uncovered);
+                if (matches.cardinality() > bestCount) {
+                    best = node;
+                    bestCount = matches.cardinality();
+                }
+            }
+            remaining.remove(best);
+            expected.add(best.getContext());
+            uncovered.andNot(best.getMatches());
+        }
+
+        assertEquals(expected, new ArrayList<>(pruner.prune(contexts, tuples)));
+    }
+}
@@ -0,0 +1,128 @@
+package planning.planners.incremental;
+
+import junit.framework.TestCase;
+import planning.VoiceOutputPlan;
+import planning.VoicePlanner;
+import planning.config.Config;
+import planning.elements.Scope;
+import planning.elements.Tuple;
+import planning.elements.TupleCollection;
+import planning.planners.TestTupleCollections;
+import planning.planners.greedy.GreedyPlanner;
+import planning.planners.naive.NaiveVoicePlanner;
+
+import java.util.BitSet;
+
+
+public class IncrementalPlannerTest extends TestCase {
+
+    private Config createConfig() throws Exception {
+        Config config = new Config();
+        config.setMaxAllowableContextSize(2);
+        config.setMaxAllowableCategoricalDomainSize(2);
+        config.setMaxAllowableNumericalDomainWidth(1.5);
+        return config;
+    }
+
+    /**
+     * Appends the tuples from index from to index to of a larger collection with the same seed
+     */
+    private void append(TupleCollection tuples, int from, int to, long seed) {
+        TupleCollection more = TestTupleCollections.randomRestaurants(to, seed);
+        for (int t = from; t < to; t++) {
+            tuples.addTuple(more.getTuple(t));
+        }
+    }
+
+    private void assertOutputsEveryTupleOnce(IncrementalPlan plan, TupleCollection tuples) {
+        BitSet output = new BitSet();
+        for (Scope scope : plan.getPlan().getScopes()) {
+            for (Tuple tuple : scope.getTuples()) {
+                int t = tuples.indexOfTuple(tuple);
+                assertTrue(t >= 0);
+                assertFalse(output.get(t));
+                output.set(t);
+                if (scope.getContext() != null) {
+                    assertTrue(scope.getContext().matches(tuple));
+                }
+            }
+        }
+        assertEquals(tuples.tupleCount(), output.cardinality());
+    }
+
+    public void testNewTuplesJoinMatchingScopes() throws Exception {
+        TupleCollection tuples = TestTupleCollections.randomRestaurants(40, 51);
+        Config config = createConfig();
+        IncrementalPlanner planner = new IncrementalPlanner(new GreedyPlanner(), 1.0);
+        IncrementalPlan plan = planner.plan(tuples, config);
+        assertSame(plan, planner.update(plan, tuples, config));
+
+        append(tuples, 40, 50, 51);
+        IncrementalPlan updated = planner.update(plan, tuples, config);
+        assertEquals(50, updated.getTupleCount());
+        assertEquals(1, updated.getUpdatesSinceFullPlan());
+        assertOutputsEveryTupleOnce(updated, tuples);
+        int previousTuples = 0;
+        for (Scope scope : plan.getPlan().getScopes()) {
+            previousTuples += scope.numberTuples();
+        }
+        assertEquals(40, previousTuples);
+
+        // the scopes of the previous plan keep their tuples
+        for (int s = 0; s < plan.getPlan().getScopes().size(); s++) {
+            Scope scope = plan.getPlan().getScopes().get(s);
+            assertTrue(updated.getPlan().getScopes().get(s).getTuples().containsAll(scope.getTuples()));
+        }
+    }
+
+    public void testCostDriftTriggersFullPlan() throws Exception {
+        TupleCollection tuples = TestTupleCollections.randomRestaurants(30, 53);
+        Config config = createConfig();
+        IncrementalPlan plan = new IncrementalPlanner(new GreedyPlanner(), -1.0).plan(tuples, config);
+        append(tuples, 30, 40, 53);
+
+        IncrementalPlan replanned = new IncrementalPlanner(new GreedyPlanner(), -1.0).update(plan, tuples, config);
+        assertEquals(0, replanned.getUpdatesSinceFullPlan());
+        assertEquals(0.0, replanned.getCostDrift(), 1e-9);
+        assertEquals(new GreedyPlanner().plan(tuples, config).getSpeechCost(), replanned.getPlan().getSpeechCost());
+        assertOutputsEveryTupleOnce(replanned, tuples);
+    }
+
+    public void testNaiveCostMatchesNaivePlan() throws Exception {
+        TupleCollection tuples = TestTupleCollections.randomRestaurants(30, 57);
+        Config config = createConfig();
+        IncrementalPlanner planner = new IncrementalPlanner(new GreedyPlanner(), 1.0);
+        IncrementalPlan plan = planner.plan(tuples, config);
+        assertEquals(new NaiveVoicePlanner().plan(tuples, config).getSpeechCost(), plan.naiveCost);
+
+        append(tuples, 30, 40, 57);
+        IncrementalPlan updated = planner.update(plan, tuples, config);
+        assertEquals(1, updated.getUpdatesSinceFullPlan());
+        assertEquals(new NaiveVoicePlanner().plan(tuples, config).getSpeechCost(), updated.naiveCost);
+    }
+
+    public void testPlannerWithoutPlanFallsBackToNaivePlans() throws Exception {
+        VoicePlanner noPlan = new VoicePlanner() {
+            @Override
+            protected VoiceOutputPlan plan(TupleCollection tupleCollection, Config config) {
+                return null;
+            }
+
+            @Override
+            public String getPlannerIdentifier() {
+                return "none";
+            }
+        };
+        TupleCollection tuples = TestTupleCollections.randomRestaurants(20, 59);
+        Config config = createConfig();
+        IncrementalPlanner planner = new IncrementalPlanner(noPlan, 1.0);
+
+        IncrementalPlan plan = planner.plan(tuples, config);
+        assertEquals(new NaiveVoicePlanner().plan(tuples, config).getSpeechCost(), plan.getPlan().getSpeechCost());
+        assertEquals(1.0, plan.getCostRatio(), 1e-9);
+
+        append(tuples, 20, 30, 59);
+        IncrementalPlan updated = planner.update(plan, tuples, config);
+        assertOutputsEveryTupleOnce(updated, tuples);
+    }
+}
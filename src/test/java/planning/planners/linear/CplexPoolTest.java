@@ -0,0 +1,44 @@
+package planning.planners.linear;
+
+import ilog.concert.IloException;
+import ilog.cplex.IloCplex;
+import junit.framework.TestCase;
+
+import java.util.concurrent.TimeUnit;
+
+
+public class CplexPoolTest extends TestCase {
+
+    public void testPermitsAreReturnedWhetherOrNotSolversStart() throws Exception {
+        CplexPool pool = new CplexPool(1, 1);
+        for (int i = 0; i < 3; i++) {
+            IloCplex cplex = null;
+            try {
+                cplex = pool.acquire(1, TimeUnit.SECONDS);
+                assertNotNull(cplex);
+                assertEquals(1, pool.getOccupancy().getActiveSolvers());
+            } catch (IloException | UnsatisfiedLinkError e) {
+                // without the native CPLEX library no solver can be created
+            } finally {
+                pool.release(cplex);
+            }
+        }
+
+        CplexPool.Occupancy occupancy = pool.getOccupancy();
+        assertEquals(0, occupancy.getActiveSolvers());
+        assertEquals(0, occupancy.getWaitingRequests());
+        assertTrue(occupancy.getIdleSolvers() <= 1);
+        assertEquals(occupancy.getCreatedSolvers(), occupancy.getIdleSolvers() + occupancy.getEndedSolvers());
+        pool.close();
+        assertEquals(0, pool.getOccupancy().getIdleSolvers());
+    }
+
+    public void testRejectsInvalidSizes() {
+        try {
+            new CplexPool(0, 0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -1,9 +1,11 @@
 package planning.planners.linear;
 
 import planning.PlanningResult;
+import planning.VoiceOutputPlan;
 import planning.config.Config;
 import planning.elements.TupleCollection;
 import planning.planners.PlannerTestBase;
+import planning.planners.TestTupleCollections;
 
 /**
  * Testing for the LinearProgrammingPlanner
@@ -16,4 +18,14 @@ public class LinearProgrammingPlannerTest extends PlannerTestBase {
         PlanningResult result = planningManager.buildPlan(linearPlanner, tuples, config);
         assertNotNull(result.getPlan());
     }
+
+    public void testGreedyWarmStartIsAtLeastAsGoodAsGreedy() throws Exception {
+        TupleCollection tuples = TestTupleCollections.randomRestaurants(20, 3);
+        Config config = createConfig(2, 2, 2.0);
+        VoiceOutputPlan greedyPlan = greedyPlanner.plan(tuples, config);
+        VoiceOutputPlan plan = linearPlannerWithGreedyStart.plan(tuples, config);
+        assertNotNull(plan);
+        assertTrue(plan.getSpeechCost() <= greedyPlan.getSpeechCost());
+        assertEquals("linear-greedy", linearPlannerWithGreedyStart.getPlannerIdentifier());
+    }
 }
@@ -0,0 +1,96 @@
+package planning.planners.linear;
+
+import junit.framework.TestCase;
+import planning.VoiceOutputPlan;
+import planning.config.Config;
+import planning.elements.*;
+import planning.planners.TestTupleCollections;
+import planning.planners.greedy.GreedyPlanner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+
+public class ModelPresolveTest extends TestCase {
+
+    private Config createConfig(double maxWidth) throws Exception {
+        Config config = new Config();
+        config.setMaxAllowableContextSize(2);
+        config.setMaxAllowableCategoricalDomainSize(2);
+        config.setMaxAllowableNumericalDomainWidth(maxWidth);
+        return config;
+    }
+
+    public void testBoundCandidatesExcludeNegativeValues() throws Exception {
+        List<String> attributes = Arrays.asList("a0", "a1");
+        TupleCollection tuples = new TupleCollection(attributes);
+        double[] values = {-12.5, -3.0, 0.0, 0.4, 1.0, 2.5, 8.0};
+        for (int i = 0; i < values.length; i++) {
+            Tuple t = new Tuple(attributes);
+            t.addValueAssignment("a0", new Value(i));
+            t.addValueAssignment("a1", new Value(values[i]));
+            tuples.addTuple(t);
+        }
+
+        ModelPresolve presolve = new ModelPresolve(tuples, createConfig(2.0));
+        for (int v = 0; v < tuples.distinctValueCountForAttribute(1); v++) {
+            boolean negative = tuples.getDistinctValue(1, v).linearProgrammingCoefficient() < 0;
+            assertEquals(!negative, presolve.lowerBoundCandidates[1][v]);
+            assertEquals(!negative, presolve.upperBoundCandidates[1][v]);
+        }
+        assertEquals(0, presolve.lowerBoundCandidates[0].length);
+    }
+
+    public void testBoundCandidatesMatchPairwiseComparison() throws Exception {
+        List<String> attributes = Arrays.asList("a0", "a1");
+        Random random = new Random(3);
+        for (double maxWidth : new double[]{0.0, 0.5, 1.0, 2.0}) {
+            TupleCollection tuples = new TupleCollection(attributes);
+            for (int i = 0; i < 60; i++) {
+                Tuple t = new Tuple(attributes);
+                t.addValueAssignment("a0", new Value(i));
+                t.addValueAssignment("a1", new Value(random.nextInt(400) / 10.0 - 20));
+                tuples.addTuple(t);
+            }
+
+            ModelPresolve presolve = new ModelPresolve(tuples, createConfig(maxWidth));
+            int valueCount = tuples.distinctValueCountForAttribute(1);
+            boolean[] lower = new boolean[valueCount];
+            boolean[] upper = new boolean[valueCount];
+            for (int l = 0; l < valueCount; l++) {
+                double lowerValue = tuples.getDistinctValue(1, l).linearProgrammingCoefficient();
+                for (int u = 0; u < valueCount; u++) {
+                    double upperValue = tuples.getDistinctValue(1, u).linearProgrammingCoefficient();
+                    if (lowerValue <= upperValue && upperValue <= 1.01 * maxWidth * lowerValue) {
+                        lower[l] = true;
+                        upper[u] = true;
+                    }
+                }
+            }
+            assertTrue(Arrays.equals(lower, presolve.lowerBoundCandidates[1]));
+            assertTrue(Arrays.equals(upper, presolve.upperBoundCandidates[1]));
+        }
+    }
+
+    public void testContextSlotsCoverProfitableGreedyContexts() throws Exception {
+        TupleCollection tuples = TestTupleCollections.randomRestaurants(40, 7);
+        Config config = createConfig(2.0);
+        ModelPresolve presolve = new ModelPresolve(tuples, config);
+        VoiceOutputPlan greedyPlan = new GreedyPlanner().plan(tuples, config);
+
+        int profitable = 0;
+        for (Scope scope : greedyPlan.getScopes()) {
+            if (presolve.objective(new VoiceOutputPlan(Collections.singletonList(scope))) < 0) {
+                profitable++;
+            }
+        }
+        int objective = presolve.objective(greedyPlan);
+        assertTrue(objective <= 0);
+        int slots = presolve.contextSlots(objective);
+        assertTrue(slots >= profitable);
+        assertTrue(slots <= presolve.contextSlots(0));
+        assertTrue(slots <= tuples.tupleCount() / 2);
+    }
+}
@@ -0,0 +1,180 @@
+package planning.planners.portfolio;
+
+import junit.framework.TestCase;
+import planning.IncumbentTracker;
+import planning.PlanCache;
+import planning.PlannerRun;
+import planning.VoiceOutputPlan;
+import planning.VoicePlanner;
+import planning.config.Config;
+import planning.elements.TupleCollection;
+import planning.planners.TestTupleCollections;
+import planning.planners.greedy.GreedyPlanner;
+import planning.planners.hybrid.TopKPruner;
+import planning.planners.hybrid.TupleCoveringPruner;
+import planning.planners.naive.NaiveVoicePlanner;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+
+public class PortfolioPlannerTest extends TestCase {
+
+    /**
+     * A planner that returns the naive plan and claims that it is optimal, once another planner started
+     */
+    private static class OptimalPlanner extends NaiveVoicePlanner {
+        final CountDownLatch otherStarted;
+
+        OptimalPlanner(CountDownLatch otherStarted) {
+            this.otherStarted = otherStarted;
+        }
+
+        @Override
+        public VoiceOutputPlan plan(TupleCollection tupleCollection, Config config, IncumbentTracker incumbents) {
+            try {
+                otherStarted.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            VoiceOutputPlan plan = super.plan(tupleCollection, config, incumbents);
+            incumbents.markOptimal();
+            return plan;
+        }
+
+        @Override
+        public String getPlannerIdentifier() {
+            return "optimal";
+        }
+    }
+
+    /**
+     * A planner that never finishes on its own
+     */
+    private static class SpinningPlanner extends NaiveVoicePlanner {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch stopped = new CountDownLatch(1);
+
+        @Override
+        public VoiceOutputPlan plan(TupleCollection tupleCollection, Config config, IncumbentTracker incumbents) {
+            started.countDown();
+            try {
+                while (true) {
+                    checkForCancellation();
+                }
+            } finally {
+                stopped.countDown();
+            }
+        }
+
+        @Override
+        public String getPlannerIdentifier() {
+            return "spinning";
+        }
+    }
+
+    private Config createConfig(int timeout) throws Exception {
+        Config config = new Config();
+        config.setMaxAllowableContextSize(2);
+        config.setMaxAllowableCategoricalDomainSize(2);
+        config.setMaxAllowableNumericalDomainWidth(1.5);
+        config.setTimeout(timeout);
+        return config;
+    }
+
+    public void testCheapestPlanWins() throws Exception {
+        TupleCollection tuples = TestTupleCollections.randomRestaurants(30, 41);
+        Config config = createConfig(30);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            List<VoicePlanner> planners = Arrays.asList(new NaiveVoicePlanner(), new GreedyPlanner());
+            IncumbentTracker incumbents = new IncumbentTracker();
+            VoiceOutputPlan plan = new PortfolioPlanner(planners, executor).plan(tuples, config, incumbents);
+
+            int naiveCost = new NaiveVoicePlanner().plan(tuples, config).getSpeechCost();
+            int greedyCost = new GreedyPlanner().plan(tuples, config).getSpeechCost();
+            assertEquals(Math.min(naiveCost, greedyCost), plan.getSpeechCost());
+            assertEquals(plan.getSpeechCost(), incumbents.getBestCost());
+
+            List<PlannerRun> runs = incumbents.getPlannerRuns();
+            assertEquals(2, runs.size());
+            assertEquals("naive", runs.get(0).getPlannerIdentifier());
+            assertEquals(Integer.valueOf(naiveCost), runs.get(0).getSpeechCost());
+            assertEquals(Integer.valueOf(greedyCost), runs.get(1).getSpeechCost());
+            for (PlannerRun run : runs) {
+                assertEquals(PlannerRun.COMPLETE, run.getOutcome());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void testOptimalPlanCancelsOtherPlanners() throws Exception {
+        TupleCollection tuples = TestTupleCollections.testCollection1();
+        Config config = createConfig(60);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            SpinningPlanner spinning = new SpinningPlanner();
+            List<VoicePlanner> planners = Arrays.asList(spinning, new OptimalPlanner(spinning.started));
+            IncumbentTracker incumbents = new IncumbentTracker();
+
+            long start = System.currentTimeMillis();
+            VoiceOutputPlan plan = new PortfolioPlanner(planners, executor).plan(tuples, config, incumbents);
+            assertTrue(System.currentTimeMillis() - start < 30000);
+            assertNotNull(plan);
+            assertTrue(spinning.stopped.await(5, TimeUnit.SECONDS));
+
+            List<PlannerRun> runs = incumbents.getPlannerRuns();
+            assertEquals(PlannerRun.CANCELLED, runs.get(0).getOutcome());
+            assertNull(runs.get(0).getSpeechCost());
+            assertEquals(PlannerRun.OPTIMAL, runs.get(1).getOutcome());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void testShortTimeoutLeavesTimeToPlan() throws Exception {
+        TupleCollection tuples = TestTupleCollections.testCollection1();
+        Config config = createConfig(1);
+        assertTrue(PortfolioPlanner.deadlineMargin(1000) < 1000);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            List<VoicePlanner> planners = Arrays.asList(new NaiveVoicePlanner(), new GreedyPlanner());
+            IncumbentTracker incumbents = new IncumbentTracker();
+            VoiceOutputPlan plan = new PortfolioPlanner(planners, executor).plan(tuples, config, incumbents);
+
+            assertNotNull(plan);
+            for (PlannerRun run : incumbents.getPlannerRuns()) {
+                assertEquals(PlannerRun.COMPLETE, run.getOutcome());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void testPortfoliosOfDifferentPlannersHaveDifferentFingerprints() throws Exception {
+        TupleCollection tuples = TestTupleCollections.testCollection1();
+        Config config = createConfig(30);
+        PortfolioPlanner topK = new PortfolioPlanner(new TopKPruner(10));
+        PortfolioPlanner tupleCovering = new PortfolioPlanner(new TupleCoveringPruner(10));
+
+        assertEquals("portfolio(greedy-FANTOM,hybrid-top10,linear)", topK.getPlannerIdentifier());
+        assertFalse(topK.getPlannerIdentifier().equals(tupleCovering.getPlannerIdentifier()));
+        assertFalse(PlanCache.fingerprint(topK, tuples, config).equals(
+                PlanCache.fingerprint(tupleCovering, tuples, config)));
+        assertEquals(PlanCache.fingerprint(topK, tuples, config),
+                PlanCache.fingerprint(new PortfolioPlanner(new TopKPruner(10)), tuples, config));
+    }
+
+    public void testSharedExecutorIsBounded() {
+        PortfolioPlanner.ExecutorStatistics statistics = PortfolioPlanner.getSharedExecutorStatistics();
+        assertEquals(PortfolioPlanner.DEFAULT_PLANNER_COUNT * Runtime.getRuntime().availableProcessors(),
+                statistics.getThreadCount());
+        assertTrue(statistics.getActiveThreads() <= statistics.getThreadCount());
+        assertTrue(statistics.getQueueDepth() >= 0);
+    }
+}
@@ -0,0 +1,39 @@
+package util;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+public class EnglishNumberToWordsTest extends TestCase {
+
+    private static void assertLengths(long number) {
+        String words = EnglishNumberToWords.convert(number);
+        assertEquals(words, words.length(), EnglishNumberToWords.convertedLength(number));
+        assertEquals(words, words.trim().length(), EnglishNumberToWords.trimmedLength(number));
+    }
+
+    public void testConvert() {
+        assertEquals("zero", EnglishNumberToWords.convert(0));
+        assertEquals("one hundred twenty three", EnglishNumberToWords.convert(123));
+        assertEquals("two million three thousand four", EnglishNumberToWords.convert(2003004));
+        assertEquals("one thousand ", EnglishNumberToWords.convert(1000));
+    }
+
+    public void testLengthsOfSmallNumbers() {
+        for (long n = 0; n < 100000; n++) {
+            assertLengths(n);
+        }
+    }
+
+    public void testLengthsOfLargeNumbers() {
+        long[] numbers = {1000000, 1000001, 1001000, 1000000000, 1000000001, 1001000000, 999999999999L,
+                1000000000000L, 123456789012345L, Long.MAX_VALUE, -1, -12, -1000};
+        for (long n : numbers) {
+            assertLengths(n);
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            assertLengths((long) (random.nextDouble() * 1000000000000L));
+        }
+    }
+}
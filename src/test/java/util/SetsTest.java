@@ -2,7 +2,10 @@ package util;
 
 import junit.framework.TestCase;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 public class SetsTest extends TestCase {
@@ -28,6 +31,56 @@ public class SetsTest extends TestCase {
         assertTrue(powerSet.contains(setWithInteger1));
     }
 
-    // TODO: unit tests for subsetOfSize() method
+    public void testSubsetsOfSize() {
+        Set<Integer> testSet = new HashSet<>(Arrays.asList(1, 2, 3, 4));
+
+        Set<Set<Integer>> subsets = Sets.subsetsOfSize(testSet, 2);
+
+        // 4 singletons and 6 pairs, but not the empty set
+        assertEquals(10, subsets.size());
+        assertTrue(subsets.contains(new HashSet<>(Arrays.asList(3))));
+        assertTrue(subsets.contains(new HashSet<>(Arrays.asList(2, 4))));
+        assertFalse(subsets.contains(new HashSet<Integer>()));
+        assertFalse(subsets.contains(new HashSet<>(Arrays.asList(1, 2, 3))));
+    }
+
+    public void testCombinationsOrderedBySize() {
+        List<String> elements = Arrays.asList("a", "b", "c");
+
+        List<List<String>> combinations = new ArrayList<>();
+        for (List<String> combination : Sets.combinations(elements, 3)) {
+            combinations.add(combination);
+        }
+
+        assertEquals(7, combinations.size());
+        assertEquals(Arrays.asList("a"), combinations.get(0));
+        assertEquals(Arrays.asList("c"), combinations.get(2));
+        assertEquals(Arrays.asList("a", "b"), combinations.get(3));
+        assertEquals(Arrays.asList("b", "c"), combinations.get(5));
+        assertEquals(Arrays.asList("a", "b", "c"), combinations.get(6));
+    }
+
+    public void testCombinationsOfLargeSetAreLazy() {
+        List<Integer> elements = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            elements.add(i);
+        }
+
+        // 40 + 40 choose 2 combinations, while the power set would have 2^40 elements
+        int count = 0;
+        for (List<Integer> combination : Sets.combinations(elements, 2)) {
+            count++;
+        }
+        assertEquals(40 + 780, count);
+    }
+
+    public void testCombinationsWithBoundLargerThanSet() {
+        int count = 0;
+        for (List<Integer> combination : Sets.combinations(Arrays.asList(1, 2), 5)) {
+            count++;
+        }
+        assertEquals(3, count);
+        assertFalse(Sets.combinations(Arrays.asList(1, 2), 0).iterator().hasNext());
+    }
 
 }